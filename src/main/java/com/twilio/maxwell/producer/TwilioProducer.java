@@ -1,6 +1,8 @@
 package com.twilio.maxwell.producer;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import com.twilio.domain.account.Account;
 import com.twilio.maxwell.service.ClientService;
@@ -11,55 +13,223 @@ import com.twilio.piedpiper.protocol.exceptions.PayloadParseException;
 import com.twilio.piedpiper.protocol.exceptions.PiedPiperProducerMaxAttempt;
 import com.twilio.piedpiper.protocol.exceptions.PiedPiperRecordTooLarge;
 import com.zendesk.maxwell.MaxwellContext;
-import com.zendesk.maxwell.monitoring.MaxwellDiagnostic;
+import com.zendesk.maxwell.producer.AbstractAsyncProducer;
 import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import com.zendesk.maxwell.util.StoppableTaskState;
 
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static com.twilio.coreutil.Futures.fromGuavaFuture;
-
+/**
+ * Sends inserted rows to PiedPiper as debug events.
+ *
+ * Rows are queued and handled by a worker thread, which collects them for up to
+ * {@code lingerMS} (or {@code batchSize} rows), looks up each distinct account in the batch
+ * once, resolving the ones that aren't cached in parallel, and then sends the rows in order,
+ * each as soon as its own account is available.
+ *
+ * Built records are handed to PiedPiper in groups of up to {@code sendBatchSize}; each group
+ * gets a single completion, which settles its rows in order.
+ *
+ * At most {@code maxInflight} sends are awaiting acknowledgement at once, and the stored
+ * position only moves past a row once it and every row before it have been handled.
+ *
+ * Only inserts are sent; run with {@code filter_row_types=insert} so the replicator drops
+ * other rows before decoding them.
+ */
 public class TwilioProducer extends AbstractProducer {
 
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	public static final long DEFAULT_LINGER_MS = 5;
+	public static final int DEFAULT_RESOLVER_THREADS = 8;
+	public static final int DEFAULT_MAX_INFLIGHT = 1000;
+	public static final int DEFAULT_SEND_BATCH_SIZE = 100;
+
+	private final ArrayBlockingQueue<RowMap> queue;
+	private final TwilioProducerWorker worker;
+
+	public TwilioProducer(MaxwellContext context, ClientService clientService, TwilioRowMapService rowMapService, PiedPiperProducer piedPiperProducer) {
+		this(context, clientService, rowMapService, piedPiperProducer, DEFAULT_BATCH_SIZE, DEFAULT_LINGER_MS, DEFAULT_RESOLVER_THREADS, DEFAULT_MAX_INFLIGHT);
+	}
+
+	public TwilioProducer(MaxwellContext context, ClientService clientService, TwilioRowMapService rowMapService, PiedPiperProducer piedPiperProducer,
+						  int batchSize, long lingerMS, int resolverThreads, int maxInflight) {
+		this(context, clientService, rowMapService, piedPiperProducer, batchSize, lingerMS, resolverThreads, maxInflight, DEFAULT_SEND_BATCH_SIZE);
+	}
+
+	public TwilioProducer(MaxwellContext context, ClientService clientService, TwilioRowMapService rowMapService, PiedPiperProducer piedPiperProducer,
+						  int batchSize, long lingerMS, int resolverThreads, int maxInflight, int sendBatchSize) {
+		super(context);
+		this.queue = new ArrayBlockingQueue<>(batchSize * 2);
+		this.worker = new TwilioProducerWorker(context, clientService, rowMapService, piedPiperProducer,
+				queue, batchSize, lingerMS, resolverThreads, maxInflight, sendBatchSize);
+
+		Thread thread = new Thread(this.worker, "maxwell-twilio-worker");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void push(RowMap r) throws Exception {
+		queue.put(r);
+	}
+
+	@Override
+	public boolean completesRows() {
+		return worker.completesRows();
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return worker;
+	}
+}
+
+class TwilioProducerWorker extends AbstractAsyncProducer implements Runnable, StoppableTask {
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(TwilioProducer.class);
 
+	private static final int CALLBACK_THREADS = 4;
+	// with debug logging on, one in this many sent records is logged
+	private static final int LOG_SAMPLE_RATE = 100;
+
+	private static class PendingSend {
+		final DebugEventRecord record;
+		final CallbackCompleter cc;
+
+		PendingSend(DebugEventRecord record, CallbackCompleter cc) {
+			this.record = record;
+			this.cc = cc;
+		}
+	}
 
 	private final ClientService clientService;
 	private final TwilioRowMapService rowMapService;
 	private final PiedPiperProducer piedPiperProducer;
+	private final int batchSize;
+	private final long lingerMS;
+	private final int sendBatchSize;
 
-	private final ExecutorService kafkaExecutor = Executors.newCachedThreadPool();
+	private final ArrayBlockingQueue<RowMap> queue;
+	private final ExecutorService resolverExecutor;
+	private final ExecutorService callbackExecutor;
+	private final StoppableTaskState taskState;
+	private final AtomicLong sentCount = new AtomicLong();
+	private Map<String, CompletableFuture<Account>> accounts;
+	private List<PendingSend> pending;
+	private Thread thread;
 
-	public TwilioProducer(MaxwellContext context, ClientService clientService, TwilioRowMapService rowMapService, PiedPiperProducer piedPiperProducer) {
-		super(context);
+	TwilioProducerWorker(MaxwellContext context, ClientService clientService, TwilioRowMapService rowMapService, PiedPiperProducer piedPiperProducer,
+						 ArrayBlockingQueue<RowMap> queue, int batchSize, long lingerMS, int resolverThreads, int maxInflight, int sendBatchSize) {
+		super(context, maxInflight);
 		this.clientService = clientService;
 		this.rowMapService = rowMapService;
 		this.piedPiperProducer = piedPiperProducer;
+		this.queue = queue;
+		this.batchSize = batchSize;
+		this.lingerMS = lingerMS;
+		// pending rows hold in-flight slots, so a group may never need more slots than there are
+		this.sendBatchSize = Math.max(1, Math.min(sendBatchSize, maxInflight));
+		this.pending = new ArrayList<>(this.sendBatchSize);
+
+		this.resolverExecutor = Executors.newFixedThreadPool(resolverThreads,
+				new ThreadFactoryBuilder().setNameFormat("maxwell-twilio-resolver-%d").setDaemon(true).build());
+		// the in-flight window bounds the callbacks waiting here
+		this.callbackExecutor = Executors.newFixedThreadPool(CALLBACK_THREADS,
+				new ThreadFactoryBuilder().setNameFormat("maxwell-twilio-callback-%d").setDaemon(true).build());
+		this.taskState = new StoppableTaskState("TwilioProducerWorker");
+	}
+
+	@Override
+	public void run() {
+		this.thread = Thread.currentThread();
+		List<RowMap> batch = new ArrayList<>(batchSize);
+		while (true) {
+			try {
+				RowMap first = queue.take();
+				if (!taskState.isRunning()) {
+					taskState.stopped();
+					return;
+				}
+
+				batch.add(first);
+				long deadline = System.currentTimeMillis() + lingerMS;
+				while (batch.size() < batchSize) {
+					long wait = deadline - System.currentTimeMillis();
+					RowMap r = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+					if (r == null)
+						break;
+					batch.add(r);
+				}
+
+				this.accounts = resolveAccounts(batch);
+				for (RowMap r : batch)
+					this.push(r);
+				flush();
+				batch.clear();
+			} catch (Exception e) {
+				taskState.stopped();
+				context.terminate(e);
+				return;
+			}
+		}
 	}
 
+	/* one lookup per distinct account in the batch; cache hits don't leave this thread */
+	private Map<String, CompletableFuture<Account>> resolveAccounts(List<RowMap> batch) {
+		Map<String, CompletableFuture<Account>> accounts = new HashMap<>();
+		for (RowMap r : batch) {
+			if (rowMapService.isNotInsert(r))
+				continue;
+
+			String accountSid = rowMapService.getAccountSid(r);
+			if (accounts.containsKey(accountSid))
+				continue;
+
+			Account cached = clientService.getCachedAccount(accountSid);
+			if (cached != null) {
+				accounts.put(accountSid, CompletableFuture.completedFuture(cached));
+			} else {
+				accounts.put(accountSid, CompletableFuture.supplyAsync(() -> clientService.getAccount(accountSid), resolverExecutor));
+			}
+		}
+		return accounts;
+	}
 
 	@Override
-	public void push(RowMap r) throws Exception {
+	public void sendAsync(RowMap r, CallbackCompleter cc) throws Exception {
 
 		if (rowMapService.isNotInsert(r)) {
-			LOGGER.debug(String.format("Skipping %s - %s", rowMapService.getType(r), rowMapService.toTwilioJson(r)));
-			context.setPosition(r);
+			if (LOGGER.isDebugEnabled())
+				LOGGER.debug("Skipping {} - {}", rowMapService.getType(r), rowMapService.toTwilioJson(r));
+			cc.markCompleted();
 			return;
 		}
 		Account account;
 
 		try {
-			account = clientService.getAccount(rowMapService.getAccountSid(r));
+			account = accounts.get(rowMapService.getAccountSid(r)).join();
 		} catch (Exception e) {
-			LOGGER.error(String.format("Error while getting account info for record %s", r.toJSON()), e);
+			LOGGER.error("Error while getting account info for record {}", r.toJSON(), e);
 			// no way to recover probably?
-			context.setPosition(r);
 			markFailure();
+			cc.markCompleted();
 			return;
 		}
 
@@ -68,55 +238,75 @@ public class TwilioProducer extends AbstractProducer {
 		try {
 			debugEventRecord = rowMapService.buildDebugEventRecord(r, account);
 		} catch (Exception e) {
-			LOGGER.error(String.format("Error while building debug payload from %s", r.toJSON()), e);
+			LOGGER.error("Error while building debug payload from {}", r.toJSON(), e);
 			// no way to recover probably?
-			context.setPosition(r);
 			markFailure();
+			cc.markCompleted();
 			return;
 		}
 
-		push(debugEventRecord,r);
+		pending.add(new PendingSend(debugEventRecord, cc));
+		if (pending.size() >= sendBatchSize)
+			flush();
 	}
 
+	/* hand the pending records to PiedPiper, with one completion for the whole group */
+	private void flush() {
+		if (pending.isEmpty())
+			return;
+
+		List<PendingSend> sent = new ArrayList<>(pending.size());
+		List<ListenableFuture<RecordMetadata>> futures = new ArrayList<>(pending.size());
+		for (PendingSend p : pending) {
+			ListenableFuture<RecordMetadata> lf = send(p.record);
+			if (lf == null) {
+				markFailure();
+				p.cc.markCompleted();
+			} else {
+				sent.add(p);
+				futures.add(lf);
+			}
+		}
+		pending = new ArrayList<>(sendBatchSize);
+
+		if (sent.isEmpty())
+			return;
+
+		// successfulAsList never fails; it completes once every send has, and each is then checked
+		Futures.successfulAsList(futures).addListener(() -> complete(sent, futures), callbackExecutor);
+	}
 
-	private void push(DebugEventRecord record, RowMap r) {
-		final ListenableFuture<RecordMetadata> lf;
-		String sid = record.getSid().toString();
-		String accountSid = record.getAccountSid().toString();
+	/* null if PiedPiper refused the record outright */
+	private ListenableFuture<RecordMetadata> send(DebugEventRecord record) {
 		try {
-			lf = piedPiperProducer.send(record);
+			return piedPiperProducer.send(record);
 		} catch (final PiedPiperRecordTooLarge e) {
-			LOGGER.warn("[{}] [{}] Unexpected payload is too large exception from a db, record size is {}", sid, accountSid, e.getSize());
-			markFailure();
-			return;
+			LOGGER.warn("[{}] [{}] Unexpected payload is too large exception from a db, record size is {}", record.getSid(), record.getAccountSid(), e.getSize());
 		} catch (final PayloadParseException e) {
-			LOGGER.warn("[{}] [{}] Failed to parse db row into DebugEventRecord", sid, accountSid);
-			markFailure();
-			return;
+			LOGGER.warn("[{}] [{}] Failed to parse db row into DebugEventRecord", record.getSid(), record.getAccountSid());
 		} catch (final PiedPiperProducerMaxAttempt e) {
-			LOGGER.warn("[{}] [{}] Maxed out retry attempts", sid, accountSid);
-			markFailure();
-			return;
+			LOGGER.warn("[{}] [{}] Maxed out retry attempts", record.getSid(), record.getAccountSid());
 		} catch (Exception e) {
-			LOGGER.warn("[{}] [{}] Exception while sending debug event: {}", sid, accountSid, e);
-			markFailure();
-			return;
+			LOGGER.warn("[{}] [{}] Exception while sending debug event: {}", record.getSid(), record.getAccountSid(), e);
 		}
+		return null;
+	}
 
-		fromGuavaFuture(lf)
-				.thenAcceptAsync(recordMetadata -> {
-
-					context.setPosition(r);
-					LOGGER.info("[{}] [{}] successfully sent debug event to piedPiper {}", sid, accountSid, record);
-					markSuccess();
-
-				}, kafkaExecutor)
-				.exceptionally(e -> {
-
-					LOGGER.error("[{}] [{}] failed to send debug event to piedPiper: {}", sid, accountSid, e);
-					markFailure();
-					return null;
-				});
+	private void complete(List<PendingSend> sent, List<ListenableFuture<RecordMetadata>> futures) {
+		for (int i = 0; i < sent.size(); i++) {
+			PendingSend p = sent.get(i);
+			try {
+				futures.get(i).get();
+				markSuccess();
+				if (LOGGER.isDebugEnabled() && sentCount.incrementAndGet() % LOG_SAMPLE_RATE == 0)
+					LOGGER.debug("[{}] [{}] successfully sent debug event to piedPiper {}", p.record.getSid(), p.record.getAccountSid(), p.record);
+			} catch (Exception e) {
+				Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+				LOGGER.error("[{}] [{}] failed to send debug event to piedPiper: {}", p.record.getSid(), p.record.getAccountSid(), cause);
+				markFailure();
+			}
+			p.cc.markCompleted();
+		}
 	}
 
 	private void markSuccess() {
@@ -129,4 +319,20 @@ public class TwilioProducer extends AbstractProducer {
 		failedMessageMeter.mark();
 	}
 
+	@Override
+	public void requestStop() {
+		taskState.requestStop();
+		resolverExecutor.shutdown();
+		callbackExecutor.shutdown();
+	}
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException {
+		taskState.awaitStop(thread, timeout);
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this;
+	}
 }
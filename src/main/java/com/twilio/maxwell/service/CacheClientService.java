@@ -1,54 +1,149 @@
 package com.twilio.maxwell.service;
 
 import static com.google.common.base.Throwables.*;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import com.twilio.client.account.AccountClient;
 import com.twilio.domain.account.Account;
 import com.twilio.sids.AccountSid;
+import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Caches accounts by sid.
+ *
+ * The cache is bounded, and entries expire {@code expireAfterWriteMS} after they were loaded.
+ * Entries older than {@code refreshAfterWriteMS} are reloaded in the background on their next
+ * read, which keeps returning the old account until the reload completes, so flag changes are
+ * picked up without stalling the producer.  Sids the account service doesn't know are
+ * remembered for {@code negativeTtlMS}, and reported as null.
+ */
 public class CacheClientService implements ClientService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(CacheClientService.class);
 
-	private final AccountClient accountClient;
+	public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+	public static final long DEFAULT_EXPIRE_AFTER_WRITE_MS = TimeUnit.HOURS.toMillis(1);
+	public static final long DEFAULT_REFRESH_AFTER_WRITE_MS = TimeUnit.MINUTES.toMillis(5);
+	public static final long DEFAULT_NEGATIVE_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+	public static final int DEFAULT_LOADER_THREADS = 4;
+
+	private static class UnknownAccountException extends RuntimeException {
+		UnknownAccountException(String id) {
+			super("unknown account " + id);
+		}
+	}
 
-	private final LoadingCache<String,Account> cache = CacheBuilder.newBuilder()
-			.build(new CacheLoader<String, Account>() {
-				@Override
-				public Account load(String id) throws Exception {
-					return getAccountNoCache(id);
-				}
-			});
+	private final AccountClient accountClient;
+	private final ExecutorService loaderExecutor;
+	private final LoadingCache<String,Account> cache;
+	private final Cache<String,Boolean> unknownAccounts;
+	private final Timer loadTimer;
 
 	public CacheClientService(AccountClient accountClient) {
+		this(accountClient, new NoOpMetrics());
+	}
+
+	public CacheClientService(AccountClient accountClient, Metrics metrics) {
+		this(accountClient, metrics, DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_WRITE_MS,
+			DEFAULT_REFRESH_AFTER_WRITE_MS, DEFAULT_NEGATIVE_TTL_MS, DEFAULT_LOADER_THREADS);
+	}
+
+	public CacheClientService(AccountClient accountClient, Metrics metrics, long maximumSize,
+							  long expireAfterWriteMS, long refreshAfterWriteMS, long negativeTtlMS, int loaderThreads) {
 		this.accountClient = accountClient;
+		this.loaderExecutor = Executors.newFixedThreadPool(loaderThreads,
+			new ThreadFactoryBuilder().setNameFormat("account-cache-loader-%d").setDaemon(true).build());
+
+		CacheLoader<String,Account> loader = new CacheLoader<String, Account>() {
+			@Override
+			public Account load(String id) throws Exception {
+				return getAccountNoCache(id);
+			}
+		};
+
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWriteMS, TimeUnit.MILLISECONDS)
+				.refreshAfterWrite(refreshAfterWriteMS, TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build(CacheLoader.asyncReloading(loader, loaderExecutor));
+
+		this.unknownAccounts = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(negativeTtlMS, TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build();
+
+		this.loadTimer = metrics.getRegistry().timer(metrics.metricName("account_cache", "load", "time"));
+		metrics.register(metrics.metricName("account_cache", "size"), (Gauge<Long>) cache::size);
+		metrics.register(metrics.metricName("account_cache", "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+		metrics.register(metrics.metricName("account_cache", "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+		metrics.register(metrics.metricName("account_cache", "load_failures"), (Gauge<Long>) () -> cache.stats().loadExceptionCount());
+		metrics.register(metrics.metricName("account_cache", "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+		metrics.register(metrics.metricName("account_cache", "unknown_hits"), (Gauge<Long>) () -> unknownAccounts.stats().hitCount());
 	}
 
 	@Override
 	public Account getAccount(String id) {
+		if (unknownAccounts.getIfPresent(id) != null) {
+			return null;
+		}
+
 		try {
 			return cache.get(id);
-		} catch (ExecutionException e) {
+		} catch (ExecutionException|UncheckedExecutionException e) {
+			if (e.getCause() instanceof UnknownAccountException) {
+				unknownAccounts.put(id, Boolean.TRUE);
+				return null;
+			}
 			LOGGER.error("Error while getting account data",e);
 			throw propagate(e);
 		}
 	}
 
+	@Override
+	public Account getCachedAccount(String id) {
+		if (id == null || cache.getIfPresent(id) == null) {
+			return null;
+		}
+		// getIfPresent doesn't schedule refreshes, get does; on a cached entry it returns at once
+		return getAccount(id);
+	}
+
 	private Account getAccountNoCache(String id) {
-		final AccountSid acSid = AccountSid.parse(id);
+		final AccountSid acSid;
 		try {
-			return accountClient.get(acSid).get();
+			acSid = AccountSid.parse(id);
+		} catch (IllegalArgumentException e) {
+			throw new UnknownAccountException(id);
+		}
+
+		final Account account;
+		try (Timer.Context ignored = loadTimer.time()) {
+			account = accountClient.get(acSid).get();
 		} catch (InterruptedException|ExecutionException e) {
 			throw propagate(e);
 		}
+
+		if (account == null) {
+			throw new UnknownAccountException(id);
+		}
+		return account;
 	}
 }
@@ -4,6 +4,16 @@ import com.twilio.domain.account.Account;
 
 public interface ClientService {
 
+	/**
+	 * @return the account with this sid, or null if there's no such account
+	 */
 	Account getAccount(String id);
 
+	/**
+	 * @return the account with this sid if it can be had without a remote call, or null
+	 */
+	default Account getCachedAccount(String id) {
+		return null;
+	}
+
 }
@@ -22,9 +22,12 @@ import com.zendesk.maxwell.row.RowMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.time.Instant;
-import java.util.Date;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -33,6 +36,24 @@ public class TwilioRowMapServiceImpl implements TwilioRowMapService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TwilioRowMapServiceImpl.class);
 
+	// both are immutable and thread-safe once built
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final DateTimeFormatter MYSQL_DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	// product names by the first two letters of a sid, indexed by productIndex()
+	private static final String[] PRODUCT_NAMES = new String[26 * 26];
+
+	static {
+		PRODUCT_NAMES[productIndex("SM")] = "Programmable SMS";
+		PRODUCT_NAMES[productIndex("CA")] = "Programmable Voice";
+		PRODUCT_NAMES[productIndex("MM")] = "Programmable SMS";
+		PRODUCT_NAMES[productIndex("RU")] = "API";
+		PRODUCT_NAMES[productIndex("RQ")] = "API";
+		PRODUCT_NAMES[productIndex("XR")] = "Add-ons";
+		PRODUCT_NAMES[productIndex("NO")] = "Notification";
+		PRODUCT_NAMES[productIndex("PV")] = "Voice Service";
+	}
+
 	private Logger getLogger() {
 		return LOGGER;
 	}
@@ -59,11 +80,11 @@ public class TwilioRowMapServiceImpl implements TwilioRowMapService {
 		try {
 			// If we don't have an epoch, let's try to set one
 			// Since we're only worried about MySQL we can use a naive date format
-			if (!data.get("datecreated").toString().matches("\\d+")) {
-				SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd kk:mm:ss");
-				Date date = sdf.parse(data.get("datecreated").toString());
-				long millis = date.getTime();
-				data.put("datecreated", millis / 1000);
+			String dateCreated = data.get("datecreated").toString();
+			if (!isDigits(dateCreated)) {
+				// like SimpleDateFormat.parse, ignores anything after the seconds (eg fractions)
+				TemporalAccessor parsed = MYSQL_DATETIME.parse(dateCreated, new ParsePosition(0));
+				data.put("datecreated", LocalDateTime.from(parsed).atZone(ZoneId.systemDefault()).toEpochSecond());
 			}
 
 			if (data.get("@id") == null && data.get("sid") != null) {
@@ -73,7 +94,7 @@ public class TwilioRowMapServiceImpl implements TwilioRowMapService {
 			LOGGER.error("Failed to set datecreated", ex);
 		}
 		try {
-			return new ObjectMapper().writeValueAsString(data);
+			return MAPPER.writeValueAsString(data);
 		} catch (Exception e) {
 			throw Throwables.propagate(e);
 		}
@@ -103,9 +124,9 @@ public class TwilioRowMapServiceImpl implements TwilioRowMapService {
 		Optional<AccountSid> parent = AccountHelper.parentAccountSid(account);
 
 		if (parent.isPresent()) {
-			LOGGER.info(String.format("Found parent account [%s] from child [%s]", parent.get().getValue(), account.getSid().getValue()));
-		} else {
-			LOGGER.debug(String.format("%s is the parent account", account.getSid().getValue()));
+			LOGGER.info("Found parent account [{}] from child [{}]", parent.get().getValue(), account.getSid().getValue());
+		} else if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("{} is the parent account", account.getSid().getValue());
 		}
 
 		return DebugEventRecord.builder()
@@ -190,32 +211,9 @@ public class TwilioRowMapServiceImpl implements TwilioRowMapService {
 			messageDateInstant = Util.parseDate(dateCreated.toString());
 		}
 
-		Integer flagsInt = null;
-		if (flags != null) {
-			try {
-				flagsInt = (int) (long) flags;
-			} catch (Exception e) {
-				getLogger().warn("[{}] [{}] failed to parse flag {}: {}", getSid(r), getAccountSid(r), flags, e);
-			}
-		}
-
-		Integer errorCodeInt = null;
-		if (errorCode != null) {
-			try {
-				errorCodeInt = (int) (long) errorCode;
-			} catch (Exception e) {
-				getLogger().warn("[{}] [{}] failed to parse errorCode {}: {}", getSid(r), getAccountSid(r), errorCode, e);
-			}
-		}
-
-		Integer logInt = null;
-		if (log != null) {
-			try {
-				logInt = (int) (long) log;
-			} catch (Exception e) {
-				getLogger().warn("[{}] [{}] failed to parse log {}: {}", getSid(r), getAccountSid(r), log, e);
-			}
-		}
+		Integer flagsInt = toInt(r, "flag", flags);
+		Integer errorCodeInt = toInt(r, "errorCode", errorCode);
+		Integer logInt = toInt(r, "log", log);
 
 		final ClassicRequest request = ClassicRequest.builder()
 				.withHeaders(requestHeader == null ? null : Util.queryParamsToMap(requestHeader.toString()))
@@ -249,28 +247,48 @@ public class TwilioRowMapServiceImpl implements TwilioRowMapService {
 			return null;
 		}
 
-		switch (sid.toString().substring(0, 2).toUpperCase()) {
-			case "SM":
-				return "Programmable SMS";
-			case "CA":
-				return "Programmable Voice";
-			case "MM":
-				return "Programmable SMS";
-			case "RU":
-				return "API";
-			case "RQ":
-				return "API";
-			case "XR":
-				return "Add-ons";
-			case "NO":
-				return "Notification";
-			case "PV":
-				return "Voice Service";
+		int index = productIndex(sid.toString());
+		return index < 0 ? null : PRODUCT_NAMES[index];
+	}
+
+	/* index of a sid's (case-insensitive) two letter prefix, or -1 */
+	private static int productIndex(String sid) {
+		if (sid.length() < 2) {
+			return -1;
+		}
+		int a = Character.toUpperCase(sid.charAt(0)) - 'A';
+		int b = Character.toUpperCase(sid.charAt(1)) - 'A';
+		if (a < 0 || a >= 26 || b < 0 || b >= 26) {
+			return -1;
 		}
+		return a * 26 + b;
+	}
 
+	/* integer columns arrive as Long; anything else is logged and dropped, without throwing */
+	private Integer toInt(RowMap r, String name, Object value) {
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof Long) {
+			return (int) (long) (Long) value;
+		}
+		getLogger().warn("[{}] [{}] failed to parse {} {}: not a long but {}", getSid(r), getAccountSid(r), name, value, value.getClass().getName());
 		return null;
 	}
 
+	private static boolean isDigits(String s) {
+		if (s.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
 
 
 
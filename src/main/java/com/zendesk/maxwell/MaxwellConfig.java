@@ -6,11 +6,17 @@ import com.github.shyiko.mysql.binlog.network.SSLMode;
 import com.zendesk.maxwell.filtering.Filter;
 import com.zendesk.maxwell.filtering.InvalidFilterException;
 import com.zendesk.maxwell.monitoring.MaxwellDiagnosticContext;
+import com.zendesk.maxwell.producer.EncryptionCipher;
 import com.zendesk.maxwell.producer.EncryptionMode;
 import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import com.zendesk.maxwell.producer.ProducerFactory;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.JsonRowSerializer;
+import com.zendesk.maxwell.row.RowSerializer;
+import com.zendesk.maxwell.row.protobuf.FileSchemaRegistry;
+import com.zendesk.maxwell.row.protobuf.ProtobufRowEncoder;
+import com.zendesk.maxwell.row.protobuf.SchemaRegistry;
 import com.zendesk.maxwell.scripting.Scripting;
 import com.zendesk.maxwell.util.AbstractConfig;
 import joptsimple.BuiltinHelpFormatter;
@@ -22,6 +28,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -41,6 +49,7 @@ public class MaxwellConfig extends AbstractConfig {
 
 	public String includeDatabases, excludeDatabases, includeTables, excludeTables, excludeColumns, blacklistDatabases, blacklistTables, includeColumnValues;
 	public String filterList;
+	public String filterRowTypes;
 
 	public ProducerFactory producerFactory; // producerFactory has precedence over producerType
 	public final Properties customProducerProperties;
@@ -54,7 +63,17 @@ public class MaxwellConfig extends AbstractConfig {
 	public String kafkaPartitionKey;
 	public String kafkaPartitionColumns;
 	public String kafkaPartitionFallback;
+	public int kafkaPartitionWorkers;
+	public Long kafkaMetadataRefreshInterval;
+	public boolean kafkaTransactional;
+	public String kafkaPositionTopic;
+	public int kafkaTransactionBatchSize;
+	public Long kafkaTransactionMaxMS;
 	public String bootstrapperType;
+	public long bootstrapChunkSize;
+	public int bootstrapThreads;
+	public int bootstrapConcurrency;
+	public String bootstrapDumpDir;
 	public int bufferedProducerSize;
 
 	public String producerPartitionKey;
@@ -63,17 +82,42 @@ public class MaxwellConfig extends AbstractConfig {
 
 	public String kinesisStream;
 	public boolean kinesisMd5Keys;
+	public String kinesisKeyHash;
+	public long kinesisMaxOutstandingRecords;
+	public Boolean kinesisAggregationEnabled;
+	public Long kinesisAggregationMaxCount;
+	public Long kinesisAggregationMaxSize;
+	public Long kinesisRecordMaxBufferedTimeMS;
 
 	public String sqsQueueUri;
+	public int sqsBatchSize;
+	public Long sqsLingerMS;
 
 	public String pubsubProjectId;
 	public String pubsubTopic;
+	public long pubsubBatchElementCount;
+	public long pubsubBatchBytes;
+	public long pubsubBatchDelayMS;
+	public long pubsubFlowControlMaxMessages;
+	public long pubsubFlowControlMaxBytes;
+	public int pubsubSerializerThreads;
+	public boolean pubsubOrderingKey;
 	public String ddlPubsubTopic;
 
 	public Long producerAckTimeout;
 
 	public String outputFile;
+	public long fileSyncIntervalMS;
+	public long fileRotateBytes;
+	public long fileRotateIntervalMS;
+	public String fileCompression;
 	public MaxwellOutputConfig outputConfig;
+	public String outputFormat;
+	public String schemaRegistryType;
+	public String schemaRegistryDir;
+	public String payloadCompression;
+	public int payloadCompressionThreshold;
+	public SchemaRegistry schemaRegistry;
 	public String log_level;
 
 	public MetricRegistry metricRegistry;
@@ -116,6 +160,8 @@ public class MaxwellConfig extends AbstractConfig {
 	public String rabbitmqRoutingKeyTemplate;
 	public boolean rabbitmqMessagePersistent;
 	public boolean rabbitmqDeclareExchange;
+	public boolean rabbitmqPublisherConfirms;
+	public int rabbitmqChannels;
 
 	public String redisHost;
 	public int redisPort;
@@ -124,6 +170,18 @@ public class MaxwellConfig extends AbstractConfig {
 	public String redisPubChannel;
 	public String redisListKey;
 	public String redisType;
+	public int redisBatchSize;
+	public Long redisLingerMS;
+
+	public String ringFile;
+	public long ringSize;
+	public List<String> ringReaders;
+
+	public String grpcTarget;
+	public int grpcStreams;
+	public int grpcBatchSize;
+	public long grpcLingerMS;
+	public boolean grpcTls;
 	public String javascriptFile;
 	public Scripting scripting;
 
@@ -182,12 +240,16 @@ public class MaxwellConfig extends AbstractConfig {
 
 		parser.accepts("__separator_3");
 
-		parser.accepts( "producer", "producer type: stdout|file|kafka|kinesis|pubsub|sqs|rabbitmq|redis" ).withRequiredArg();
+		parser.accepts( "producer", "producer type: stdout|file|kafka|kinesis|pubsub|sqs|rabbitmq|redis|ring|grpc" ).withRequiredArg();
 		parser.accepts( "custom_producer.factory", "fully qualified custom producer factory class" ).withRequiredArg();
 		parser.accepts( "producer_ack_timeout", "producer message acknowledgement timeout" ).withRequiredArg();
 		parser.accepts( "javascript", "file containing per-row javascript to execute" ).withRequiredArg();
 
 		parser.accepts( "output_file", "output file for 'file' producer" ).withRequiredArg();
+		parser.accepts( "file_sync_interval_ms", "how often, in ms, the file producer fsyncs and stores its position; 0 to sync every transaction. default: 1000" ).withRequiredArg();
+		parser.accepts( "file_rotate_bytes", "rotate output_file once it holds this many (uncompressed) bytes; 0 to never rotate by size. default: 0" ).withRequiredArg();
+		parser.accepts( "file_rotate_interval_ms", "rotate output_file once it's this old; 0 to never rotate by age. default: 0" ).withRequiredArg();
+		parser.accepts( "file_compression", "none|gzip|lz4, compression of the file producer's output. default: none" ).withRequiredArg();
 
 		parser.accepts( "producer_partition_by", "database|table|primary_key|transaction_id|column, kafka/kinesis producers will partition by this value").withRequiredArg();
 		parser.accepts("producer_partition_columns",
@@ -203,13 +265,34 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "kafka_partition_hash", "default|murmur3, hash function for partitioning" ).withRequiredArg();
 		parser.accepts( "kafka_topic", "optionally provide a topic name to push to. default: maxwell" ).withRequiredArg();
 		parser.accepts( "kafka_key_format", "how to format the kafka key; array|hash" ).withRequiredArg();
+		parser.accepts( "kafka_partition_workers", "number of threads sending to kafka, sharded by partition. default: 1" ).withRequiredArg();
+		parser.accepts( "kafka_metadata_refresh_interval", "how often, in ms, to refresh cached topic partition counts; 0 to never refresh. default: 60000" ).withRequiredArg();
+		parser.accepts( "kafka_transactional", "use kafka's transactional producer and store the binlog position in kafka; requires kafka >= 0.11. default: false" ).withOptionalArg();
+		parser.accepts( "kafka_position_topic", "with kafka_transactional, topic the binlog position is committed to. default: maxwell_positions" ).withRequiredArg();
+		parser.accepts( "kafka_transaction_batch_size", "with kafka_transactional, max number of mysql transactions per kafka transaction. default: 100" ).withRequiredArg();
+		parser.accepts( "kafka_transaction_max_ms", "with kafka_transactional, max time in ms a kafka transaction is kept open. default: 100" ).withRequiredArg();
 
 		parser.accepts( "kinesis_stream", "kinesis stream name" ).withOptionalArg();
+		parser.accepts( "kinesis_key_hash", "none|md5|murmur3, hash partition keys before sending them to kinesis. default: none (md5 with kinesis_md5_keys)" ).withRequiredArg();
+		parser.accepts( "kinesis_max_outstanding_records", "pause producing while the KPL has more than this many records outstanding; 0 to never pause. default: 5000" ).withRequiredArg();
+		parser.accepts( "kinesis_aggregation_enabled", "enable KPL record aggregation. default: from kinesis-producer-library.properties" ).withOptionalArg();
+		parser.accepts( "kinesis_aggregation_max_count", "max number of records in an aggregated record. default: from kinesis-producer-library.properties" ).withRequiredArg();
+		parser.accepts( "kinesis_aggregation_max_size", "max size in bytes of an aggregated record. default: from kinesis-producer-library.properties" ).withRequiredArg();
+		parser.accepts( "kinesis_record_max_buffered_time_ms", "max time in ms the KPL buffers a record before sending it. default: from kinesis-producer-library.properties" ).withRequiredArg();
 		parser.accepts( "sqs_queue_uri", "SQS Queue uri" ).withRequiredArg();
+		parser.accepts( "sqs_batch_size", "max number of records sent to SQS in one SendMessageBatch call, 1-10. default: 10" ).withRequiredArg();
+		parser.accepts( "sqs_linger_ms", "max time in ms a record waits for its SQS batch to fill up. default: 0" ).withRequiredArg();
 
 		parser.accepts( "pubsub_project_id", "provide a google cloud platform project id associated with the pubsub topic" ).withRequiredArg();
 		parser.accepts( "pubsub_topic", "optionally provide a pubsub topic to push to. default: maxwell" ).withRequiredArg();
 		parser.accepts( "ddl_pubsub_topic", "optionally provide an alternate pubsub topic to push DDL records to. default: pubsub_topic" ).withRequiredArg();
+		parser.accepts( "pubsub_batch_element_count", "max number of messages in a pubsub publish request. default: 100" ).withRequiredArg();
+		parser.accepts( "pubsub_batch_bytes", "max size in bytes of a pubsub publish request. default: 1000" ).withRequiredArg();
+		parser.accepts( "pubsub_batch_delay_ms", "max time in ms a message waits for its publish request to fill up. default: 1" ).withRequiredArg();
+		parser.accepts( "pubsub_flow_control_max_messages", "max number of unacknowledged messages before publishing blocks; 0 for no limit. default: 0" ).withRequiredArg();
+		parser.accepts( "pubsub_flow_control_max_bytes", "max bytes of unacknowledged messages before publishing blocks; 0 for no limit. default: 0" ).withRequiredArg();
+		parser.accepts( "pubsub_serializer_threads", "number of threads serializing and publishing messages. Rows are sharded by producer_partition_by, so per-key ordering is kept. default: 1" ).withRequiredArg();
+		parser.accepts( "pubsub_ordering_key", "add an 'ordering_key' attribute, derived from producer_partition_by, to each message. default: false" ).withOptionalArg();
 
 		parser.accepts("__separator_4");
 
@@ -228,10 +311,20 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "ddl_kafka_topic", "optionally provide an alternate topic to push DDL records to. default: kafka_topic" ).withRequiredArg();
 		parser.accepts("secret_key", "The secret key for the AES encryption" ).withRequiredArg();
 		parser.accepts("encrypt", "encryption mode: [none|data|all]. default: none" ).withRequiredArg();
+		parser.accepts("encrypt_cipher", "encryption cipher: [cbc|gcm]. default: cbc" ).withRequiredArg();
+		parser.accepts( "output_format", "format of produced records: [json|protobuf], or a fully qualified RowSerializer class. default: json" ).withRequiredArg();
+		parser.accepts( "schema_registry", "with output_format=protobuf, where record schemas are registered: 'file' or a fully qualified SchemaRegistry class. default: file" ).withRequiredArg();
+		parser.accepts( "schema_registry_dir", "with schema_registry=file, directory to store schemas in. default: schemas" ).withRequiredArg();
+		parser.accepts( "payload_compression", "compress record payloads: [none|lz4|gzip]. default: none" ).withRequiredArg();
+		parser.accepts( "payload_compression_threshold", "only compress payloads of at least this many bytes. default: 1024" ).withRequiredArg();
 
 		parser.accepts( "__separator_5" );
 
 		parser.accepts( "bootstrapper", "bootstrapper type: async|sync|none. default: async" ).withRequiredArg();
+		parser.accepts( "bootstrap_chunk_size", "bootstrap tables with an integer primary key in key ranges of this size, resumably. default: 0 (off)" ).withRequiredArg();
+		parser.accepts( "bootstrap_threads", "with bootstrap_chunk_size or bootstrap_dump_dir, how many key ranges or dump files to read at once. default: 4" ).withRequiredArg();
+		parser.accepts( "bootstrap_concurrency", "with the async bootstrapper, how many tables to bootstrap at once. default: 1" ).withRequiredArg();
+		parser.accepts( "bootstrap_dump_dir", "bootstrap tables from the csv/tsv files of a mydumper or mysqldump dump in this directory, instead of selecting them" ).withRequiredArg();
 
 		parser.accepts( "__separator_6" );
 
@@ -256,6 +349,7 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "blacklist_tables", "[deprecated]" ).withRequiredArg();
 		parser.accepts( "filter", "filter specs.  specify like \"include:db.*, exclude:*.tbl, include: foo./.*bar$/, exclude:foo.bar.baz=reject\"").withRequiredArg();
 		parser.accepts( "include_column_values", "[deprecated]" ).withRequiredArg();
+		parser.accepts( "filter_row_types", "only output these row types, comma separated: insert,update,delete. default: all" ).withRequiredArg();
 
 		parser.accepts( "__separator_8" );
 
@@ -271,6 +365,8 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "rabbitmq_routing_key_template", "A string template for the routing key, '%db%' and '%table%' will be substituted. Default is '%db%.%table%'." ).withRequiredArg();
 		parser.accepts( "rabbitmq_message_persistent", "Message persistence. Defaults to false" ).withOptionalArg();
 		parser.accepts( "rabbitmq_declare_exchange", "Should declare the exchange for rabbitmq publisher. Defaults to true" ).withOptionalArg();
+		parser.accepts( "rabbitmq_publisher_confirms", "Only advance the binlog position once rabbitmq confirms each message. Defaults to false" ).withOptionalArg();
+		parser.accepts( "rabbitmq_channels", "With rabbitmq_publisher_confirms, number of channels to publish over. Defaults to 1" ).withRequiredArg();
 
 		parser.accepts( "__separator_9" );
 
@@ -281,6 +377,18 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "redis_pub_channel", "Redis Pub/Sub channel for publishing records" ).withRequiredArg();
 		parser.accepts( "redis_list_key", "Redis LPUSH List Key for adding to a queue" ).withRequiredArg();
 		parser.accepts( "redis_type", "[pubsub|lpush] Selects either Redis Pub/Sub or LPUSH. Defaults to 'pubsub'" ).withRequiredArg();
+		parser.accepts( "redis_batch_size", "max number of records sent to Redis in one pipeline. default: 100" ).withRequiredArg();
+		parser.accepts( "redis_linger_ms", "max time in ms a record waits for its pipeline to fill up. default: 0" ).withRequiredArg();
+
+		parser.accepts( "ring_file", "path of the memory-mapped ring file the 'ring' producer writes to, eg /dev/shm/maxwell.ring" ).withRequiredArg();
+		parser.accepts( "ring_size", "size in bytes of the ring's data region. default: 67108864" ).withRequiredArg();
+		parser.accepts( "ring_readers", "comma separated names of the readers whose acks the 'ring' producer waits for; empty to not wait. default: default" ).withRequiredArg();
+
+		parser.accepts( "grpc_target", "host:port (or any grpc target) of the RowStream service the 'grpc' producer streams to" ).withRequiredArg();
+		parser.accepts( "grpc_streams", "number of concurrent streams; rows are routed to them by producer_partition_by. default: 4" ).withRequiredArg();
+		parser.accepts( "grpc_batch_size", "max number of rows sent in one batch on a stream. default: 100" ).withRequiredArg();
+		parser.accepts( "grpc_linger_ms", "max time in ms a row waits for its batch to fill up. default: 0" ).withRequiredArg();
+		parser.accepts( "grpc_tls", "connect to grpc_target over TLS. default: false" ).withOptionalArg();
 
 		parser.accepts( "__separator_10" );
 
@@ -368,6 +476,10 @@ public class MaxwellConfig extends AbstractConfig {
 		this.producerType       = fetchOption("producer", options, properties, "stdout");
 		this.producerAckTimeout = fetchLongOption("producer_ack_timeout", options, properties, 0L);
 		this.bootstrapperType   = fetchOption("bootstrapper", options, properties, "async");
+		this.bootstrapChunkSize = fetchLongOption("bootstrap_chunk_size", options, properties, 0L);
+		this.bootstrapThreads   = Integer.parseInt(fetchOption("bootstrap_threads", options, properties, "4"));
+		this.bootstrapConcurrency = Integer.parseInt(fetchOption("bootstrap_concurrency", options, properties, "1"));
+		this.bootstrapDumpDir   = fetchOption("bootstrap_dump_dir", options, properties, null);
 		this.clientID           = fetchOption("client_id", options, properties, "maxwell");
 		this.replicaServerID    = fetchLongOption("replica_server_id", options, properties, 6379L);
 		this.javascriptFile         = fetchOption("javascript", options, properties, null);
@@ -380,10 +492,23 @@ public class MaxwellConfig extends AbstractConfig {
 
 		this.kafkaPartitionHash 	= fetchOption("kafka_partition_hash", options, properties, "default");
 		this.ddlKafkaTopic 		    = fetchOption("ddl_kafka_topic", options, properties, this.kafkaTopic);
+		this.kafkaPartitionWorkers  = Integer.parseInt(fetchOption("kafka_partition_workers", options, properties, "1"));
+		this.kafkaMetadataRefreshInterval = fetchLongOption("kafka_metadata_refresh_interval", options, properties, 60000L);
+		this.kafkaTransactional     = fetchBooleanOption("kafka_transactional", options, properties, false);
+		this.kafkaPositionTopic     = fetchOption("kafka_position_topic", options, properties, "maxwell_positions");
+		this.kafkaTransactionBatchSize = Integer.parseInt(fetchOption("kafka_transaction_batch_size", options, properties, "100"));
+		this.kafkaTransactionMaxMS  = fetchLongOption("kafka_transaction_max_ms", options, properties, 100L);
 
 		this.pubsubProjectId = fetchOption("pubsub_project_id", options, properties, null);
 		this.pubsubTopic 		 = fetchOption("pubsub_topic", options, properties, "maxwell");
 		this.ddlPubsubTopic  = fetchOption("ddl_pubsub_topic", options, properties, this.pubsubTopic);
+		this.pubsubBatchElementCount = fetchLongOption("pubsub_batch_element_count", options, properties, 100L);
+		this.pubsubBatchBytes        = fetchLongOption("pubsub_batch_bytes", options, properties, 1000L);
+		this.pubsubBatchDelayMS      = fetchLongOption("pubsub_batch_delay_ms", options, properties, 1L);
+		this.pubsubFlowControlMaxMessages = fetchLongOption("pubsub_flow_control_max_messages", options, properties, 0L);
+		this.pubsubFlowControlMaxBytes    = fetchLongOption("pubsub_flow_control_max_bytes", options, properties, 0L);
+		this.pubsubSerializerThreads = Integer.parseInt(fetchOption("pubsub_serializer_threads", options, properties, "1"));
+		this.pubsubOrderingKey       = fetchBooleanOption("pubsub_ordering_key", options, properties, false);
 
 		this.rabbitmqHost           		= fetchOption("rabbitmq_host", options, properties, "localhost");
 		this.rabbitmqPort 			= Integer.parseInt(fetchOption("rabbitmq_port", options, properties, "5672"));
@@ -397,6 +522,8 @@ public class MaxwellConfig extends AbstractConfig {
 		this.rabbitmqRoutingKeyTemplate   	= fetchOption("rabbitmq_routing_key_template", options, properties, "%db%.%table%");
 		this.rabbitmqMessagePersistent    	= fetchBooleanOption("rabbitmq_message_persistent", options, properties, false);
 		this.rabbitmqDeclareExchange		= fetchBooleanOption("rabbitmq_declare_exchange", options, properties, true);
+		this.rabbitmqPublisherConfirms		= fetchBooleanOption("rabbitmq_publisher_confirms", options, properties, false);
+		this.rabbitmqChannels			= Integer.parseInt(fetchOption("rabbitmq_channels", options, properties, "1"));
 
 		this.redisHost			= fetchOption("redis_host", options, properties, "localhost");
 		this.redisPort			= Integer.parseInt(fetchOption("redis_port", options, properties, "6379"));
@@ -405,6 +532,22 @@ public class MaxwellConfig extends AbstractConfig {
 		this.redisPubChannel	= fetchOption("redis_pub_channel", options, properties, "maxwell");
 		this.redisListKey		= fetchOption("redis_list_key", options, properties, "maxwell");
 		this.redisType			= fetchOption("redis_type", options, properties, "pubsub");
+		this.redisBatchSize		= Integer.parseInt(fetchOption("redis_batch_size", options, properties, "100"));
+		this.redisLingerMS		= fetchLongOption("redis_linger_ms", options, properties, 0L);
+
+		this.ringFile = fetchOption("ring_file", options, properties, null);
+		this.ringSize = fetchLongOption("ring_size", options, properties, 64L * 1024 * 1024);
+		this.ringReaders = new ArrayList<>();
+		for ( String reader : fetchOption("ring_readers", options, properties, "default").split(",") ) {
+			if ( !reader.trim().isEmpty() )
+				this.ringReaders.add(reader.trim());
+		}
+
+		this.grpcTarget = fetchOption("grpc_target", options, properties, null);
+		this.grpcStreams = Integer.parseInt(fetchOption("grpc_streams", options, properties, "4"));
+		this.grpcBatchSize = Integer.parseInt(fetchOption("grpc_batch_size", options, properties, "100"));
+		this.grpcLingerMS = fetchLongOption("grpc_linger_ms", options, properties, 0L);
+		this.grpcTls = fetchBooleanOption("grpc_tls", options, properties, false);
 
 		String kafkaBootstrapServers = fetchOption("kafka.bootstrap.servers", options, properties, null);
 		if ( kafkaBootstrapServers != null )
@@ -430,10 +573,24 @@ public class MaxwellConfig extends AbstractConfig {
 
 		this.kinesisStream  = fetchOption("kinesis_stream", options, properties, null);
 		this.kinesisMd5Keys = fetchBooleanOption("kinesis_md5_keys", options, properties, false);
+		this.kinesisKeyHash = fetchOption("kinesis_key_hash", options, properties, this.kinesisMd5Keys ? "md5" : "none");
+		this.kinesisMaxOutstandingRecords = fetchLongOption("kinesis_max_outstanding_records", options, properties, 5000L);
+		// left null when unset, so the KPL properties file decides
+		if ( (options != null && options.has("kinesis_aggregation_enabled")) || (properties != null && properties.containsKey("kinesis_aggregation_enabled")) )
+			this.kinesisAggregationEnabled = fetchBooleanOption("kinesis_aggregation_enabled", options, properties, true);
+		this.kinesisAggregationMaxCount = fetchLongOption("kinesis_aggregation_max_count", options, properties, null);
+		this.kinesisAggregationMaxSize = fetchLongOption("kinesis_aggregation_max_size", options, properties, null);
+		this.kinesisRecordMaxBufferedTimeMS = fetchLongOption("kinesis_record_max_buffered_time_ms", options, properties, null);
 
 		this.sqsQueueUri = fetchOption("sqs_queue_uri", options, properties, null);
+		this.sqsBatchSize = Integer.parseInt(fetchOption("sqs_batch_size", options, properties, "10"));
+		this.sqsLingerMS = fetchLongOption("sqs_linger_ms", options, properties, 0L);
 
 		this.outputFile = fetchOption("output_file", options, properties, null);
+		this.fileSyncIntervalMS = fetchLongOption("file_sync_interval_ms", options, properties, 1000L);
+		this.fileRotateBytes = fetchLongOption("file_rotate_bytes", options, properties, 0L);
+		this.fileRotateIntervalMS = fetchLongOption("file_rotate_interval_ms", options, properties, 0L);
+		this.fileCompression = fetchOption("file_compression", options, properties, "none");
 
 		this.metricsPrefix = fetchOption("metrics_prefix", options, properties, "MaxwellMetrics");
 		this.metricsReportingType = fetchOption("metrics_type", options, properties, null);
@@ -472,6 +629,7 @@ public class MaxwellConfig extends AbstractConfig {
 		this.blacklistDatabases  = fetchOption("blacklist_dbs", options, properties, null);
 		this.blacklistTables     = fetchOption("blacklist_tables", options, properties, null);
 		this.filterList          = fetchOption("filter", options, properties, null);
+		this.filterRowTypes      = fetchOption("filter_row_types", options, properties, null);
 		this.includeColumnValues = fetchOption("include_column_values", options, properties, null);
 
 		if ( options != null && options.has("init_position")) {
@@ -538,6 +696,25 @@ public class MaxwellConfig extends AbstractConfig {
 			outputConfig.secretKey = fetchOption("secret_key", options, properties, null);
 		}
 
+		String encryptionCipher = fetchOption("encrypt_cipher", options, properties, "cbc");
+		switch (encryptionCipher) {
+			case "cbc":
+				outputConfig.encryptionCipher = EncryptionCipher.AES_CBC;
+				break;
+			case "gcm":
+				outputConfig.encryptionCipher = EncryptionCipher.AES_GCM;
+				break;
+			default:
+				usage("Unknown encryption cipher: " + encryptionCipher);
+				break;
+		}
+
+		this.outputFormat = fetchOption("output_format", options, properties, "json");
+		this.schemaRegistryType = fetchOption("schema_registry", options, properties, "file");
+		this.schemaRegistryDir = fetchOption("schema_registry_dir", options, properties, "schemas");
+		this.payloadCompression = fetchOption("payload_compression", options, properties, "none");
+		this.payloadCompressionThreshold = Integer.parseInt(fetchOption("payload_compression_threshold", options, properties, "1024"));
+
 	}
 
 	private Properties parseFile(String filename, Boolean abortOnMissing) {
@@ -609,6 +786,9 @@ public class MaxwellConfig extends AbstractConfig {
 					this.filter = new Filter(this.databaseName, "");
 				}
 			}
+
+			if ( this.filterRowTypes != null )
+				this.filter.setRowTypes(this.filterRowTypes);
 		} catch (InvalidFilterException e) {
 			usageForOptions("Invalid filter options: " + e.getLocalizedMessage(), "filter");
 		}
@@ -633,13 +813,71 @@ public class MaxwellConfig extends AbstractConfig {
 			if ( !this.kafkaKeyFormat.equals("hash") && !this.kafkaKeyFormat.equals("array") )
 				usageForOptions("invalid kafka_key_format: " + this.kafkaKeyFormat, "kafka_key_format");
 
-		} else if ( this.producerType.equals("file")
-				&& this.outputFile == null) {
-			usageForOptions("please specify --output_file=FILE to use the file producer", "--producer", "--output_file");
-		} else if ( this.producerType.equals("kinesis") && this.kinesisStream == null) {
-			usageForOptions("please specify a stream name for kinesis", "kinesis_stream");
-		} else if (this.producerType.equals("sqs") && this.sqsQueueUri == null) {
-			usageForOptions("please specify a queue uri for sqs", "sqs_queue_uri");
+			if ( this.kafkaPartitionWorkers < 1 )
+				usageForOptions("please specify --kafka_partition_workers=N where N >= 1", "kafka_partition_workers");
+
+			if ( this.kafkaTransactional ) {
+				if ( this.kafkaPartitionWorkers > 1 )
+					usageForOptions("kafka_transactional can't be combined with kafka_partition_workers", "kafka_transactional", "kafka_partition_workers");
+
+				if ( this.kafkaTransactionBatchSize < 1 || this.kafkaTransactionMaxMS < 1 )
+					usageForOptions("kafka_transaction_batch_size and kafka_transaction_max_ms must be positive", "kafka_transaction");
+			}
+
+		} else if ( this.producerType.equals("file") ) {
+			if ( this.outputFile == null )
+				usageForOptions("please specify --output_file=FILE to use the file producer", "--producer", "--output_file");
+			if ( this.fileSyncIntervalMS < 0 || this.fileRotateBytes < 0 || this.fileRotateIntervalMS < 0 )
+				usageForOptions("file_sync_interval_ms, file_rotate_bytes and file_rotate_interval_ms can't be negative", "file_");
+			if ( !this.fileCompression.equals("none") && !this.fileCompression.equals("gzip") && !this.fileCompression.equals("lz4") )
+				usageForOptions("please specify --file_compression=none|gzip|lz4", "file_compression");
+		} else if ( this.producerType.equals("kinesis") ) {
+			if ( this.kinesisStream == null )
+				usageForOptions("please specify a stream name for kinesis", "kinesis_stream");
+			if ( !this.kinesisKeyHash.equals("none") && !this.kinesisKeyHash.equals("md5") && !this.kinesisKeyHash.equals("murmur3") )
+				usageForOptions("please specify --kinesis_key_hash=none|md5|murmur3", "kinesis_key_hash");
+			if ( this.kinesisMaxOutstandingRecords < 0 )
+				usageForOptions("kinesis_max_outstanding_records can't be negative", "kinesis_max_outstanding_records");
+		} else if ( this.producerType.equals("sqs") ) {
+			if ( this.sqsQueueUri == null )
+				usageForOptions("please specify a queue uri for sqs", "sqs_queue_uri");
+			// SendMessageBatch takes at most 10 entries
+			if ( this.sqsBatchSize < 1 || this.sqsBatchSize > 10 )
+				usageForOptions("please specify --sqs_batch_size=N where 1 <= N <= 10", "sqs_batch_size");
+			if ( this.sqsLingerMS < 0 )
+				usageForOptions("sqs_linger_ms can't be negative", "sqs_linger_ms");
+		} else if ( this.producerType.equals("pubsub") ) {
+			if ( this.pubsubBatchElementCount < 1 || this.pubsubBatchBytes < 1 )
+				usageForOptions("pubsub_batch_element_count and pubsub_batch_bytes must be positive", "pubsub_batch");
+			if ( this.pubsubBatchDelayMS < 1 )
+				usageForOptions("pubsub_batch_delay_ms must be positive", "pubsub_batch_delay_ms");
+			if ( this.pubsubFlowControlMaxMessages < 0 || this.pubsubFlowControlMaxBytes < 0 )
+				usageForOptions("pubsub_flow_control_max_messages and pubsub_flow_control_max_bytes can't be negative", "pubsub_flow_control");
+			if ( this.pubsubSerializerThreads < 1 )
+				usageForOptions("please specify --pubsub_serializer_threads=N where N >= 1", "pubsub_serializer_threads");
+		} else if ( this.producerType.equals("rabbitmq") && this.rabbitmqChannels < 1 ) {
+			usageForOptions("please specify --rabbitmq_channels=N where N >= 1", "rabbitmq_channels");
+		} else if ( this.producerType.equals("redis") ) {
+			// a batch can't be larger than the number of messages allowed in flight
+			if ( this.redisBatchSize < 1 || this.redisBatchSize > 10000 )
+				usageForOptions("please specify --redis_batch_size=N where 1 <= N <= 10000", "redis_batch_size");
+			if ( this.redisLingerMS < 0 )
+				usageForOptions("redis_linger_ms can't be negative", "redis_linger_ms");
+		} else if ( this.producerType.equals("ring") ) {
+			if ( this.ringFile == null )
+				usageForOptions("please specify --ring_file=FILE to use the ring producer", "ring_file");
+			if ( this.ringSize < 1024 || this.ringSize % 8 != 0 || this.ringSize > Integer.MAX_VALUE - 4096 )
+				usageForOptions("ring_size must be a multiple of 8 between 1024 and 2GB", "ring_size");
+		} else if ( this.producerType.equals("grpc") ) {
+			if ( this.grpcTarget == null )
+				usageForOptions("please specify --grpc_target=HOST:PORT to use the grpc producer", "grpc_target");
+			if ( this.grpcStreams < 1 )
+				usageForOptions("please specify --grpc_streams=N where N >= 1", "grpc_streams");
+			// a batch can't be larger than the number of messages allowed in flight
+			if ( this.grpcBatchSize < 1 || this.grpcBatchSize > 10000 )
+				usageForOptions("please specify --grpc_batch_size=N where 1 <= N <= 10000", "grpc_batch_size");
+			if ( this.grpcLingerMS < 0 )
+				usageForOptions("grpc_linger_ms can't be negative", "grpc_linger_ms");
 		}
 
 		if ( !this.bootstrapperType.equals("async")
@@ -648,6 +886,16 @@ public class MaxwellConfig extends AbstractConfig {
 			usageForOptions("please specify --bootstrapper=async|sync|none", "--bootstrapper");
 		}
 
+		if ( this.bootstrapChunkSize < 0 ) {
+			usageForOptions("bootstrap_chunk_size can't be negative", "--bootstrap_chunk_size");
+		} else if ( this.bootstrapThreads < 1 ) {
+			usageForOptions("please specify --bootstrap_threads=N where N >= 1", "--bootstrap_threads");
+		} else if ( this.bootstrapConcurrency < 1 ) {
+			usageForOptions("please specify --bootstrap_concurrency=N where N >= 1", "--bootstrap_concurrency");
+		} else if ( this.bootstrapDumpDir != null && !new File(this.bootstrapDumpDir).isDirectory() ) {
+			usageForOptions("bootstrap_dump_dir " + this.bootstrapDumpDir + " is not a directory", "--bootstrap_dump_dir");
+		}
+
 		if (this.maxwellMysql.sslMode == null) {
 			this.maxwellMysql.sslMode = SSLMode.DISABLED;
 		}
@@ -722,6 +970,25 @@ public class MaxwellConfig extends AbstractConfig {
 		if (outputConfig.encryptionEnabled() && outputConfig.secretKey == null)
 			usage("--secret_key required");
 
+		if ( this.outputFormat.equals("protobuf") ) {
+			if ( outputConfig.encryptionEnabled() )
+				usageForOptions("output_format=protobuf can't be combined with encryption", "--output_format", "--encrypt");
+
+			this.schemaRegistry = fetchSchemaRegistry();
+		} else if ( !this.outputFormat.equals("json") ) {
+			try {
+				if ( !RowSerializer.class.isAssignableFrom(Class.forName(this.outputFormat)) )
+					usageForOptions("Invalid value for output_format, " + this.outputFormat + " is not a RowSerializer", "--output_format");
+			} catch ( ClassNotFoundException e ) {
+				usageForOptions("please specify --output_format=json|protobuf or a RowSerializer class", "--output_format");
+			}
+		}
+
+		if ( !this.payloadCompression.equals("none") && !this.payloadCompression.equals("lz4") && !this.payloadCompression.equals("gzip") )
+			usageForOptions("please specify --payload_compression=none|lz4|gzip", "--payload_compression");
+		if ( this.payloadCompressionThreshold < 0 )
+			usageForOptions("payload_compression_threshold can't be negative", "--payload_compression_threshold");
+
 		if ( !maxwellMysql.sameServerAs(replicationMysql) && !this.bootstrapperType.equals("none") ) {
 			LOGGER.warn("disabling bootstrapping; not available when using a separate replication host.");
 			this.bootstrapperType = "none";
@@ -770,4 +1037,45 @@ public class MaxwellConfig extends AbstractConfig {
 			return null;
 		}
 	}
+
+	/* custom serializers may take the output config in their constructor */
+	public RowSerializer buildRowSerializer(MaxwellOutputConfig outputConfig) {
+		switch ( this.outputFormat ) {
+			case "json":
+				return new JsonRowSerializer(outputConfig);
+			case "protobuf":
+				return new ProtobufRowEncoder(this.schemaRegistry, outputConfig);
+			default:
+				try {
+					Class<?> clazz = Class.forName(this.outputFormat);
+					try {
+						return RowSerializer.class.cast(clazz.getConstructor(MaxwellOutputConfig.class).newInstance(outputConfig));
+					} catch ( NoSuchMethodException e ) {
+						return RowSerializer.class.cast(clazz.newInstance());
+					}
+				} catch ( ReflectiveOperationException | ClassCastException e ) {
+					throw new RuntimeException("Couldn't instantiate output_format " + this.outputFormat, e);
+				}
+		}
+	}
+
+	protected SchemaRegistry fetchSchemaRegistry() {
+		if ( this.schemaRegistryType.equals("file") ) {
+			try {
+				return new FileSchemaRegistry(this.schemaRegistryDir);
+			} catch ( IOException e ) {
+				usageForOptions("Couldn't open schema registry in " + this.schemaRegistryDir + ": " + e.getMessage(), "--schema_registry_dir");
+			}
+		} else {
+			try {
+				Class<?> clazz = Class.forName(this.schemaRegistryType);
+				return SchemaRegistry.class.cast(clazz.newInstance());
+			} catch ( ClassNotFoundException e ) {
+				usageForOptions("Invalid value for schema_registry, class not found", "--schema_registry");
+			} catch ( IllegalAccessException | InstantiationException | ClassCastException e) {
+				usageForOptions("Invalid value for schema_registry, class instantiation error", "--schema_registry");
+			}
+		}
+		return null; // unreached
+	}
 }
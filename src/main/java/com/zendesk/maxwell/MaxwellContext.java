@@ -360,11 +360,20 @@ public class MaxwellContext {
 				this.producer = new BufferedProducer(this, this.config.bufferedProducerSize);
 				break;
 			case "rabbitmq":
-				this.producer = new RabbitmqProducer(this);
+				if ( this.config.rabbitmqPublisherConfirms )
+					this.producer = new RabbitmqAsyncProducer(this);
+				else
+					this.producer = new RabbitmqProducer(this);
 				break;
 			case "redis":
 				this.producer = new MaxwellRedisProducer(this, this.config.redisPubChannel, this.config.redisListKey, this.config.redisType);
 				break;
+			case "ring":
+				this.producer = new MaxwellRingProducer(this);
+				break;
+			case "grpc":
+				this.producer = new MaxwellGrpcProducer(this);
+				break;
 			case "none":
 				this.producer = null;
 				break;
@@ -5,7 +5,7 @@ import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.replication.Replicator;
 import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.row.RowMap;
-import com.zendesk.maxwell.row.RowMapBufferByTable;
+import com.zendesk.maxwell.row.RowMapBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,23 +14,69 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Queue;
 
+/**
+ * Bootstraps tables in background threads, up to {@code bootstrap_concurrency} tables at once,
+ * while the main thread keeps replicating.
+ *
+ * Replicated rows of a table that is being (or waiting to be) bootstrapped are held back in
+ * that bootstrap's own buffer and output once it completes.  Requests beyond the concurrency
+ * limit, and repeated requests for a table that is already being bootstrapped, wait their turn.
+ */
 public class AsynchronousBootstrapper extends AbstractBootstrapper {
 
 	static final Logger LOGGER = LoggerFactory.getLogger(Replicator.class);
 
-	private Thread thread = null;
-	private Queue<RowMap> queue = new LinkedList<>();
-	private RowMap bootstrappedRow = null;
-	private RowMapBufferByTable skippedRows = null;
+	private static final long MAX_SKIPPED_ROWS_IN_MEMORY = 10000;
+
+	/* one bootstrap request and the rows held back for it */
+	private class BootstrapJob {
+		final RowMap startRow;
+		final RowMapBuffer skippedRows;
+		// started the bootstrap and keeps its state, which its completion needs
+		SynchronousBootstrapper bootstrapper;
+		Thread thread;
+
+		BootstrapJob(RowMap startRow) {
+			this.startRow = startRow;
+			// concurrent bootstraps split what a single one would keep in memory
+			this.skippedRows = new RowMapBuffer(
+				Math.max(1, MAX_SKIPPED_ROWS_IN_MEMORY / maxConcurrentBootstraps),
+				(long) (Runtime.getRuntime().maxMemory() * 0.25) / maxConcurrentBootstraps
+			);
+		}
+
+		Long id() {
+			return ( Long ) startRow.getData("id");
+		}
+
+		String database() {
+			return bootstrapDatabase(startRow);
+		}
+
+		String table() {
+			return bootstrapTable(startRow);
+		}
+	}
+
+	private final int maxConcurrentBootstraps;
+	// database -> table -> requests, oldest first.  Only the oldest request for a table may run.
+	private final Map<String, Map<String, LinkedList<BootstrapJob>>> jobsByTable = new HashMap<>();
+	private final LinkedList<BootstrapJob> queue = new LinkedList<>();
+	private final Map<Long, BootstrapJob> running = new LinkedHashMap<>();
 	private SynchronousBootstrapper synchronousBootstrapper = getSynchronousBootstrapper();
 
 	public AsynchronousBootstrapper( MaxwellContext context ) throws IOException {
 		super(context);
-		skippedRows = new RowMapBufferByTable();
+		this.maxConcurrentBootstraps = Math.max(1, context.getConfig().bootstrapConcurrency);
 	}
 
 	protected SynchronousBootstrapper getSynchronousBootstrapper( ) {
@@ -38,100 +84,123 @@ public class AsynchronousBootstrapper extends AbstractBootstrapper {
 	}
 
 	@Override
-	public boolean shouldSkip(RowMap row) throws SQLException, IOException {
-		// The main replication thread skips rows of the currently bootstrapped
-		// table and the tables that are queued for bootstrap. The bootstrap thread replays them at
-		// the end of the bootstrap. If maxwell is stopped these skipped rows will be lost;
-		// however, at next startup resume() restarts the bootstrap process from the
-		// beginning which restores the consistency of the replication stream.
-		if ( bootstrappedRow != null && haveSameTable(row, bootstrappedRow) ) {
-			skippedRows.add(row);
-			return true;
-		}
-		for ( RowMap queuedRow : queue ) {
-			if ( haveSameTable(row, queuedRow) ) {
-				skippedRows.add(row);
-				return true;
-			}
-		}
-		return false;
+	public synchronized boolean shouldSkip(RowMap row) throws SQLException, IOException {
+		// The main replication thread skips rows of the tables being bootstrapped and queued
+		// for bootstrap. They are replayed at the end of the table's bootstrap. If maxwell is
+		// stopped these skipped rows will be lost; however, at next startup resume() restarts
+		// the bootstrap process which restores the consistency of the replication stream.
+		Map<String, LinkedList<BootstrapJob>> tables = jobsByTable.get(row.getDatabase());
+		if ( tables == null )
+			return false;
+
+		LinkedList<BootstrapJob> jobs = tables.get(row.getTable());
+		if ( jobs == null )
+			return false;
+
+		jobs.getFirst().skippedRows.add(row);
+		return true;
+	}
+
+	@Override
+	public synchronized void startBootstrap(final RowMap bootstrapStartRow, final AbstractProducer producer, final Replicator replicator) throws Exception {
+		BootstrapJob job = new BootstrapJob(bootstrapStartRow);
+		jobsByTable.computeIfAbsent(job.database(), k -> new HashMap<>())
+			.computeIfAbsent(job.table(), k -> new LinkedList<>())
+			.add(job);
+		queue.add(job);
+
+		startQueuedBootstraps(producer, replicator);
+		if ( job.thread == null )
+			LOGGER.info(String.format("async bootstrapping: queued table %s.%s for bootstrapping", job.database(), job.table()));
 	}
 
-	private boolean haveSameTable(RowMap row, RowMap bootstrapStartRow) {
-		String databaseName = bootstrapDatabase(bootstrapStartRow);
-		String tableName = bootstrapTable(bootstrapStartRow);
-		return row.getDatabase().equals(databaseName) && row.getTable().equals(tableName);
+	private void startQueuedBootstraps(AbstractProducer producer, Replicator replicator) {
+		Iterator<BootstrapJob> iterator = queue.iterator();
+		while ( running.size() < maxConcurrentBootstraps && iterator.hasNext() ) {
+			BootstrapJob job = iterator.next();
+			if ( jobsByTable.get(job.database()).get(job.table()).getFirst() != job )
+				continue; // an earlier request for this table hasn't completed yet
+
+			iterator.remove();
+			run(job, producer, replicator);
+		}
 	}
 
-	@Override
-	public void startBootstrap(final RowMap bootstrapStartRow, final AbstractProducer producer, final Replicator replicator) throws Exception {
-		if (thread == null) {
-			bootstrappedRow = bootstrapStartRow;
-			thread = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						synchronousBootstrapper.startBootstrap(bootstrapStartRow, producer, replicator);
-					} catch ( NoSuchElementException e ) {
-						LOGGER.warn(String.format("async bootstrapping cancelled for table %s.%s", bootstrapDatabase(bootstrapStartRow), bootstrapTable(bootstrapStartRow)));
-						cancelBootstrap(bootstrapStartRow, producer, replicator);
-					} catch ( Exception e ) {
-						e.printStackTrace();
-						System.exit(1);
-					}
+	private void run(final BootstrapJob job, final AbstractProducer producer, final Replicator replicator) {
+		// each bootstrap gets its own, SynchronousBootstrapper keeps per-bootstrap state
+		job.bootstrapper = getSynchronousBootstrapper();
+
+		running.put(job.id(), job);
+		job.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					job.bootstrapper.startBootstrap(job.startRow, producer, replicator);
+				} catch ( NoSuchElementException e ) {
+					LOGGER.warn(String.format("async bootstrapping cancelled for table %s.%s", job.database(), job.table()));
+					cancelBootstrap(job.startRow, producer, replicator);
+				} catch ( Exception e ) {
+					e.printStackTrace();
+					System.exit(1);
 				}
-			});
-			thread.start();
-		} else {
-			queueRow(bootstrapStartRow);
-		}
+			}
+		}, "maxwell-bootstrap-" + job.database() + "." + job.table());
+		job.thread.start();
 	}
 
-	private void queueRow(RowMap row) {
-		queue.add(row);
-		LOGGER.info(String.format("async bootstrapping: queued table %s.%s for bootstrapping", bootstrapDatabase(row), bootstrapTable(row)));
+	/* a job is done with once its skipped rows are replayed */
+	private void finish(BootstrapJob job) {
+		Map<String, LinkedList<BootstrapJob>> tables = jobsByTable.get(job.database());
+		LinkedList<BootstrapJob> jobs = tables.get(job.table());
+		jobs.remove(job);
+		if ( jobs.isEmpty() ) {
+			tables.remove(job.table());
+			if ( tables.isEmpty() )
+				jobsByTable.remove(job.database());
+		}
 	}
 
 	@Override
-	public void completeBootstrap(RowMap bootstrapCompleteRow, AbstractProducer producer, Replicator replicator) throws Exception {
+	public synchronized void completeBootstrap(RowMap bootstrapCompleteRow, AbstractProducer producer, Replicator replicator) throws Exception {
 		String databaseName = bootstrapDatabase(bootstrapCompleteRow);
 		String tableName = bootstrapTable(bootstrapCompleteRow);
 
 		try {
-			replaySkippedRows(databaseName, tableName, producer, bootstrapCompleteRow);
-			synchronousBootstrapper.completeBootstrap(bootstrapCompleteRow, producer, replicator);
+			BootstrapJob job = running.remove(( Long ) bootstrapCompleteRow.getData("id"));
+			if ( job != null ) {
+				replaySkippedRows(job, producer, bootstrapCompleteRow);
+				finish(job);
+			}
+			// a bootstrap resumed after a restart was started by the shared one
+			SynchronousBootstrapper bootstrapper = job != null ? job.bootstrapper : synchronousBootstrapper;
+			bootstrapper.completeBootstrap(bootstrapCompleteRow, producer, replicator);
 			LOGGER.info(String.format("async bootstrapping ended for %s.%s", databaseName, tableName));
 		} catch ( Exception e ) {
 			e.printStackTrace();
 			System.exit(1);
-		} finally {
-			thread = null;
-			bootstrappedRow = null;
-		}
-		if ( !queue.isEmpty() ) {
-			startBootstrap(queue.remove(), producer, replicator);
 		}
+		startQueuedBootstraps(producer, replicator);
 	}
 
-	public void cancelBootstrap(RowMap bootstrapStartRow, AbstractProducer producer, Replicator replicator) {
+	public synchronized void cancelBootstrap(RowMap bootstrapStartRow, AbstractProducer producer, Replicator replicator) {
 		try {
-			replaySkippedRows(bootstrapDatabase(bootstrapStartRow), bootstrapTable(bootstrapStartRow), producer, bootstrapStartRow);
-			thread = null;
-			bootstrappedRow = null;
-			if ( !queue.isEmpty() ) {
-				startBootstrap(queue.remove(), producer, replicator);
+			BootstrapJob job = running.remove(( Long ) bootstrapStartRow.getData("id"));
+			if ( job != null ) {
+				replaySkippedRows(job, producer, bootstrapStartRow);
+				finish(job);
 			}
+			startQueuedBootstraps(producer, replicator);
 		} catch ( Exception e ) {
 			e.printStackTrace();
 		}
 	}
 
-	private void replaySkippedRows(String databaseName, String tableName, AbstractProducer producer, RowMap bootstrapCompleteRow) throws Exception {
+	private void replaySkippedRows(BootstrapJob job, AbstractProducer producer, RowMap bootstrapCompleteRow) throws Exception {
 		BinlogPosition bootstrapStartBinlogPosition = getBootstrapStartBinlogPosition(bootstrapCompleteRow);
-		LOGGER.info("async bootstrapping: replaying " + skippedRows.size(databaseName, tableName) + " skipped rows...");
-		skippedRows.flushToDisk(databaseName, tableName);
-		while ( skippedRows.size(databaseName, tableName) > 0 ) {
-			RowMap row = skippedRows.removeFirst(databaseName, tableName);
+		LOGGER.info("async bootstrapping: replaying " + job.skippedRows.size() + " skipped rows...");
+		job.skippedRows.flushToDisk();
+		while ( job.skippedRows.size() > 0 ) {
+			RowMap row = job.skippedRows.removeFirst();
 			if ( bootstrapStartBinlogPosition == null || row.getPosition().getBinlogPosition().newerThan(bootstrapStartBinlogPosition) )
 				producer.push(row);
 		}
@@ -158,18 +227,23 @@ public class AsynchronousBootstrapper extends AbstractBootstrapper {
 	}
 
 	public void join() throws InterruptedException {
-		if ( thread != null ) {
-			thread.join();
+		List<Thread> threads = new ArrayList<>();
+		synchronized(this) {
+			for ( BootstrapJob job : running.values() )
+				threads.add(job.thread);
 		}
+		// outside the lock: a cancelled bootstrap needs it to finish
+		for ( Thread thread : threads )
+			thread.join();
 	}
 
 	@Override
-	public boolean isRunning() {
-		return thread != null || queue.size() > 0;
+	public synchronized boolean isRunning() {
+		return !running.isEmpty() || !queue.isEmpty();
 	}
 
 	@Override
-	public void work(RowMap row, AbstractProducer producer, Replicator replicator) throws Exception {
+	public synchronized void work(RowMap row, AbstractProducer producer, Replicator replicator) throws Exception {
 		if ( isStartBootstrapRow(row) ) {
 			startBootstrap(row, producer, replicator);
 		} else if ( isCompleteBootstrapRow(row) ) {
@@ -177,4 +251,3 @@ public class AsynchronousBootstrapper extends AbstractBootstrapper {
 		}
 	}
 }
-
@@ -0,0 +1,134 @@
+package com.zendesk.maxwell.bootstrap;
+
+import com.zendesk.maxwell.replication.BinlogPosition;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A logical dump of the server in a local directory, which tables can be bootstrapped from
+ * instead of being read from mysql.
+ *
+ * The binlog position the dump was taken at is read from its `metadata` file, as written by
+ * mydumper (`Log:` / `Pos:` / `GTID:`, or `File =` / `Position =` / `Executed_Gtid_Set =`) or by
+ * `mysqldump --master-data` (`CHANGE MASTER TO MASTER_LOG_FILE='...', MASTER_LOG_POS=...`).
+ *
+ * A table's rows are read from `DB.TABLE.csv`, `DB.TABLE.tsv` or `DB.TABLE.txt`, or from chunks
+ * named like `DB.TABLE.00001.csv`, or, as `mysqldump --tab` leaves them in a directory per
+ * database, from `DB/TABLE.txt`.
+ */
+class BootstrapDump {
+	static final String METADATA_FILE = "metadata";
+
+	// matched within a line; a key with no value is missing, rather than taking the next line's, or the replica's
+	private static final Pattern FILE = Pattern.compile("^[ \\t]*(?:Log|File)[ \\t]*[:=][ \\t]*(\\S*)[ \\t]*$", Pattern.MULTILINE);
+	private static final Pattern OFFSET = Pattern.compile("^[ \\t]*(?:Pos|Position)[ \\t]*[:=][ \\t]*(\\d*)[ \\t]*$", Pattern.MULTILINE);
+	private static final Pattern GTID = Pattern.compile("^[ \\t]*(?:GTID|Executed_Gtid_Set)[ \\t]*[:=][ \\t]*(\\S*)[ \\t]*$", Pattern.MULTILINE);
+	private static final Pattern CHANGE_MASTER_FILE = Pattern.compile("MASTER_LOG_FILE\\s*=\\s*'([^']+)'");
+	private static final Pattern CHANGE_MASTER_OFFSET = Pattern.compile("MASTER_LOG_POS\\s*=\\s*(\\d+)");
+
+	private final File dir;
+	private final BinlogPosition binlogPosition;
+
+	BootstrapDump(File dir, BinlogPosition binlogPosition) {
+		this.dir = dir;
+		this.binlogPosition = binlogPosition;
+	}
+
+	static BootstrapDump open(String path, boolean gtidMode) throws IOException {
+		File dir = new File(path);
+		File metadata = new File(dir, METADATA_FILE);
+		if ( !metadata.isFile() )
+			throw new IOException("no " + METADATA_FILE + " file in bootstrap dump " + path);
+
+		String s = new String(Files.readAllBytes(metadata.toPath()), StandardCharsets.UTF_8);
+		return new BootstrapDump(dir, parseBinlogPosition(s, gtidMode, metadata.getPath()));
+	}
+
+	static BinlogPosition parseBinlogPosition(String metadata, boolean gtidMode, String name) throws IOException {
+		// mydumper lists the master's position before any replica's, so the first match is the one
+		String file = firstMatch(FILE, metadata);
+		if ( file == null )
+			file = firstMatch(CHANGE_MASTER_FILE, metadata);
+
+		String offset = firstMatch(OFFSET, metadata);
+		if ( offset == null )
+			offset = firstMatch(CHANGE_MASTER_OFFSET, metadata);
+
+		if ( file == null || offset == null )
+			throw new IOException("couldn't find a binlog position in " + name);
+
+		if ( !gtidMode )
+			return BinlogPosition.at(Long.parseLong(offset), file);
+
+		String gtidSet = firstMatch(GTID, metadata);
+		if ( gtidSet == null )
+			throw new IOException("gtid_mode is on, but " + name + " has no GTID set");
+		return BinlogPosition.at(gtidSet, Long.parseLong(offset), file);
+	}
+
+	/* null if there's no match, or it's empty */
+	private static String firstMatch(Pattern pattern, String s) {
+		Matcher m = pattern.matcher(s);
+		return m.find() && !m.group(1).isEmpty() ? m.group(1) : null;
+	}
+
+	BinlogPosition getBinlogPosition() {
+		return binlogPosition;
+	}
+
+	/* the data files holding the table's rows, in chunk order; empty if the dump doesn't have the table */
+	List<File> dataFiles(String database, String table) {
+		Pattern chunk = Pattern.compile(Pattern.quote(database + "." + table) + "((?:\\.\\d+)*)\\.(?:csv|tsv|txt)");
+		List<File> files = new ArrayList<>();
+		File[] entries = dir.listFiles();
+		if ( entries != null ) {
+			for ( File f : entries ) {
+				if ( f.isFile() && chunk.matcher(f.getName()).matches() )
+					files.add(f);
+			}
+		}
+
+		files.sort((a, b) -> compareChunks(chunkNumbers(chunk, a), chunkNumbers(chunk, b)));
+
+		if ( files.isEmpty() ) {
+			File tab = new File(new File(dir, database), table + ".txt");
+			if ( tab.isFile() )
+				files.add(tab);
+		}
+		return files;
+	}
+
+	private static long[] chunkNumbers(Pattern chunk, File f) {
+		Matcher m = chunk.matcher(f.getName());
+		m.matches();
+		String suffix = m.group(1);
+		if ( suffix.isEmpty() )
+			return new long[0];
+
+		String[] parts = suffix.substring(1).split("\\.");
+		long[] numbers = new long[parts.length];
+		for ( int i = 0; i < parts.length; i++ )
+			numbers[i] = Long.parseLong(parts[i]);
+		return numbers;
+	}
+
+	private static int compareChunks(long[] a, long[] b) {
+		for ( int i = 0; i < Math.min(a.length, b.length); i++ ) {
+			int cmp = Long.compare(a[i], b[i]);
+			if ( cmp != 0 )
+				return cmp;
+		}
+		return Integer.compare(a.length, b.length);
+	}
+
+	static boolean isCSV(File file) {
+		return file.getName().endsWith(".csv");
+	}
+}
@@ -0,0 +1,158 @@
+package com.zendesk.maxwell.bootstrap;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.BigIntColumnDef;
+import com.zendesk.maxwell.schema.columndef.BitColumnDef;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import com.zendesk.maxwell.schema.columndef.DateColumnDef;
+import com.zendesk.maxwell.schema.columndef.DateTimeColumnDef;
+import com.zendesk.maxwell.schema.columndef.DecimalColumnDef;
+import com.zendesk.maxwell.schema.columndef.FloatColumnDef;
+import com.zendesk.maxwell.schema.columndef.GeometryColumnDef;
+import com.zendesk.maxwell.schema.columndef.IntColumnDef;
+import com.zendesk.maxwell.schema.columndef.StringColumnDef;
+import com.zendesk.maxwell.schema.columndef.TimeColumnDef;
+import com.zendesk.maxwell.schema.columndef.YearColumnDef;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Copies `select *` result rows, or the records of a dump file, of a table into bootstrap RowMaps.
+ *
+ * How each column is read is worked out once per table instead of once per value; integers
+ * and strings use the typed JDBC getters, which skip the driver's generic object mapping.
+ * Instances are immutable and may be shared between threads.
+ */
+class BootstrapRowDecoder {
+	// bootstrapped values have always been converted with the default output settings
+	private static final MaxwellOutputConfig OUTPUT_CONFIG = new MaxwellOutputConfig();
+
+	private enum Getter { LONG, STRING, BYTES, TIMESTAMP, OBJECT }
+
+	private final ColumnDef[] columns;
+	private final String[] names;
+	private final Getter[] getters;
+
+	BootstrapRowDecoder(Table table) {
+		List<ColumnDef> columnList = table.getColumnList();
+		this.columns = columnList.toArray(new ColumnDef[columnList.size()]);
+		this.names = new String[columns.length];
+		this.getters = new Getter[columns.length];
+
+		for ( int i = 0; i < columns.length; i++ ) {
+			names[i] = columns[i].getName();
+			getters[i] = getterFor(columns[i]);
+		}
+	}
+
+	private static Getter getterFor(ColumnDef cd) {
+		if ( cd instanceof TimeColumnDef )
+			// need to explicitly coerce TIME into TIMESTAMP in order to preserve nanoseconds
+			return Getter.TIMESTAMP;
+		else if ( cd instanceof IntColumnDef )
+			return Getter.LONG;
+		else if ( cd instanceof BigIntColumnDef && ((BigIntColumnDef) cd).isSigned() )
+			return Getter.LONG;
+		else if ( cd instanceof StringColumnDef )
+			return "binary".equals(((StringColumnDef) cd).getCharset()) ? Getter.BYTES : Getter.STRING;
+		else
+			return Getter.OBJECT;
+	}
+
+	void decode(ResultSet resultSet, RowMap row) throws SQLException {
+		for ( int i = 0; i < columns.length; i++ ) {
+			int columnIndex = i + 1;
+			Object value;
+
+			switch ( getters[i] ) {
+				case LONG:
+					// already what IntColumnDef / BigIntColumnDef output
+					long l = resultSet.getLong(columnIndex);
+					row.putData(names[i], resultSet.wasNull() ? null : l);
+					continue;
+				case STRING:
+					value = resultSet.getString(columnIndex);
+					break;
+				case BYTES:
+					value = resultSet.getBytes(columnIndex);
+					break;
+				case TIMESTAMP:
+					value = resultSet.getTimestamp(columnIndex);
+					break;
+				default:
+					value = resultSet.getObject(columnIndex);
+			}
+
+			row.putData(names[i], value == null ? null : columns[i].asJSON(value, OUTPUT_CONFIG));
+		}
+	}
+
+	/*
+	   Dump files hold values as mysql prints them.  Each is parsed into what the JDBC driver
+	   would have returned for the column, so that asJSON outputs it just as a `select` bootstrap would.
+	*/
+	void decode(byte[][] fields, RowMap row) {
+		if ( fields.length != columns.length )
+			throw new IllegalArgumentException("expected " + columns.length + " fields, found " + fields.length);
+
+		for ( int i = 0; i < columns.length; i++ ) {
+			if ( fields[i] == null ) {
+				row.putData(names[i], null);
+				continue;
+			}
+
+			Object value = parseField(columns[i], fields[i]);
+			row.putData(names[i], columns[i].asJSON(value, OUTPUT_CONFIG));
+		}
+	}
+
+	private static Object parseField(ColumnDef cd, byte[] field) {
+		// left to the column: charsets, and binary values
+		if ( cd instanceof StringColumnDef || cd instanceof GeometryColumnDef || cd instanceof BitColumnDef )
+			return field;
+
+		String s = new String(field, StandardCharsets.UTF_8);
+		if ( cd instanceof IntColumnDef ) {
+			return Long.valueOf(s);
+		} else if ( cd instanceof BigIntColumnDef ) {
+			BigInteger b = new BigInteger(s);
+			return b.bitLength() < 64 ? (Object) b.longValue() : b;
+		} else if ( cd instanceof FloatColumnDef ) {
+			return cd.getType().equals("float") ? (Object) Float.valueOf(s) : Double.valueOf(s);
+		} else if ( cd instanceof DecimalColumnDef ) {
+			return new BigDecimal(s);
+		} else if ( cd instanceof DateColumnDef ) {
+			return s.startsWith("0000-00-00") ? (Object) Long.MIN_VALUE : Date.valueOf(s);
+		} else if ( cd instanceof DateTimeColumnDef ) {
+			return s.startsWith("0000-00-00") ? (Object) Long.MIN_VALUE : Timestamp.valueOf(s);
+		} else if ( cd instanceof TimeColumnDef ) {
+			return parseTime(s);
+		} else if ( cd instanceof YearColumnDef ) {
+			return Integer.valueOf(s);
+		} else {
+			// enum, set and json columns are output as the text itself
+			return s;
+		}
+	}
+
+	/* like getTimestamp() on a TIME column: the time on 1970-01-01, with its fraction */
+	private static Timestamp parseTime(String s) {
+		int dot = s.indexOf('.');
+		Timestamp t = new Timestamp(Time.valueOf(dot < 0 ? s : s.substring(0, dot)).getTime());
+		if ( dot >= 0 ) {
+			String fraction = (s.substring(dot + 1) + "000000000").substring(0, 9);
+			t.setNanos(Integer.parseInt(fraction));
+		}
+		return t;
+	}
+}
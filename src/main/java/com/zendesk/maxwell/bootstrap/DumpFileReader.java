@@ -0,0 +1,142 @@
+package com.zendesk.maxwell.bootstrap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the records of one delimited data file of a {@link BootstrapDump}.
+ *
+ * The format is the one `SELECT ... INTO OUTFILE`, `mysqldump --tab` and `mydumper --csv` write:
+ * records end with `\n`, special characters are escaped with `\`, and NULL is `\N`.
+ * Fields of `.csv` files are separated by `,` and may be enclosed in `"`; those of other files are
+ * separated by tabs.  Field values are returned as raw bytes, charsets are left to the column.
+ */
+class DumpFileReader implements Closeable {
+	private static final int ESCAPE = '\\';
+	private static final int NO_ENCLOSURE = -2;
+
+	private final String name;
+	private final InputStream in;
+	private final int separator;
+	private final int enclosure;
+
+	private final byte[] buffer = new byte[64 * 1024];
+	private int bufferPos, bufferLimit;
+
+	private byte[] field = new byte[256];
+	private int fieldLength;
+	private final List<byte[]> fields = new ArrayList<>();
+
+	DumpFileReader(File file) throws IOException {
+		this(file.getPath(), new FileInputStream(file), BootstrapDump.isCSV(file));
+	}
+
+	DumpFileReader(String name, InputStream in, boolean csv) {
+		this.name = name;
+		this.in = in;
+		this.separator = csv ? ',' : '\t';
+		this.enclosure = csv ? '"' : NO_ENCLOSURE;
+	}
+
+	/* the next record, with null for NULL fields, or null at the end of the file */
+	byte[][] next() throws IOException {
+		int c = read();
+		if ( c == -1 )
+			return null;
+
+		fields.clear();
+		while ( true ) {
+			fieldLength = 0;
+			boolean quoted = c == enclosure, nullMarker = false;
+			if ( quoted )
+				c = read();
+
+			while ( true ) {
+				if ( c == -1 ) {
+					if ( quoted )
+						throw new IOException("unterminated quoted field in " + name);
+					break;
+				} else if ( quoted && c == enclosure ) {
+					c = read();
+					if ( c != enclosure ) {
+						quoted = false;
+						continue;
+					}
+				} else if ( c == ESCAPE ) {
+					c = read();
+					if ( c == -1 )
+						throw new IOException("escape character at end of " + name);
+					nullMarker = c == 'N' && fieldLength == 0;
+					c = unescape(c);
+				} else if ( !quoted && (c == separator || c == '\n') ) {
+					break;
+				}
+
+				append(c);
+				c = read();
+			}
+
+			if ( nullMarker && fieldLength == 1 )
+				fields.add(null);
+			else
+				fields.add(Arrays.copyOf(field, fieldLength));
+
+			if ( c != separator )
+				return fields.toArray(new byte[fields.size()][]);
+
+			c = read();
+		}
+	}
+
+	private static int unescape(int c) {
+		switch ( c ) {
+			case '0':
+				return 0;
+			case 'b':
+				return '\b';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			case 'Z':
+				return 26;
+			default:
+				return c;
+		}
+	}
+
+	private void append(int c) {
+		if ( fieldLength == field.length )
+			field = Arrays.copyOf(field, field.length * 2);
+		field[fieldLength++] = (byte) c;
+	}
+
+	private int read() throws IOException {
+		if ( bufferPos == bufferLimit ) {
+			bufferLimit = in.read(buffer, 0, buffer.length);
+			bufferPos = 0;
+			if ( bufferLimit <= 0 ) {
+				bufferLimit = 0;
+				return -1;
+			}
+		}
+		return buffer[bufferPos++] & 0xFF;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
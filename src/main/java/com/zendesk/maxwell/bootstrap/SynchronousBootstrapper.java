@@ -1,6 +1,6 @@
 package com.zendesk.maxwell.bootstrap;
 
-import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.replication.Position;
@@ -10,23 +10,158 @@ import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.schema.Database;
 import com.zendesk.maxwell.schema.Schema;
 import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.BigIntColumnDef;
 import com.zendesk.maxwell.schema.columndef.ColumnDef;
-import com.zendesk.maxwell.schema.columndef.TimeColumnDef;
+import com.zendesk.maxwell.schema.columndef.IntColumnDef;
 import com.zendesk.maxwell.scripting.Scripting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.sql.*;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SynchronousBootstrapper extends AbstractBootstrapper {
 	static final Logger LOGGER = LoggerFactory.getLogger(SynchronousBootstrapper.class);
 	private static final long INSERTED_ROWS_UPDATE_PERIOD_MILLIS = 250;
+	private static final int CHUNK_ATTEMPTS = 3;
+	// rows are handed to scripting and the producer this many at a time
+	private static final int PUSH_BATCH_SIZE = 500;
+	// like a transaction's RowMapBuffer, chunks read ahead hold at most a quarter of the heap
+	private static final double READ_AHEAD_MEMORY_SHARE = 0.25;
+
+	private static final String UPDATE_INSERTED_ROWS_SQL =
+		"update `bootstrap` set inserted_rows = ?, binlog_file = ?, binlog_position = ? where id = ?";
+	private static final String UPDATE_CHUNK_PROGRESS_SQL =
+		"update `bootstrap` set inserted_rows = ?, last_chunk_pk = ?, binlog_file = ?, binlog_position = ? where id = ?";
+
+	/* a primary key range [lo, hi], the rows read from it, and how many of those the producer has yet to deliver */
+	private static class Chunk {
+		final long lo, hi;
+		final Future<List<RowMap>> rows;
+		int rowCount;
+		private int undelivered;
+
+		Chunk(long lo, long hi, Future<List<RowMap>> rows) {
+			this.lo = lo;
+			this.hi = hi;
+			this.rows = rows;
+		}
+
+		/* call before pushing the rows; a producer that doesn't complete rows has delivered them once push returns */
+		synchronized void track(List<RowMap> rows, boolean producerCompletesRows) {
+			rowCount = rows.size();
+			if ( !producerCompletesRows )
+				return;
+
+			undelivered = rowCount;
+			for ( RowMap row : rows )
+				row.setCompletionCallback(this::delivered);
+		}
+
+		private synchronized void delivered() {
+			if ( --undelivered == 0 )
+				notifyAll();
+		}
+
+		synchronized boolean isDelivered() {
+			return undelivered <= 0;
+		}
+
+		synchronized void awaitDelivery(MaxwellContext context) throws Exception {
+			while ( undelivered > 0 ) {
+				if ( context.getError() != null )
+					throw new IOException("producer failed before bootstrap rows were delivered", context.getError());
+				wait(1000);
+			}
+		}
+	}
+
+	/* a dump file read on a bootstrap thread, its rows handed over PUSH_BATCH_SIZE at a time as they're read */
+	private static class DumpFileRead {
+		private static final List<RowMap> END = Collections.emptyList();
+
+		final File file;
+		// shared by the reads of one bootstrap, and the lock they wait for room on
+		private final AtomicLong readAheadBytes;
+		private final long readAheadMaxBytes;
+		private final BlockingQueue<List<RowMap>> batches = new LinkedBlockingQueue<>();
+		private boolean head;
+		Future<?> task;
+
+		DumpFileRead(File file, AtomicLong readAheadBytes, long readAheadMaxBytes) {
+			this.file = file;
+			this.readAheadBytes = readAheadBytes;
+			this.readAheadMaxBytes = readAheadMaxBytes;
+		}
+
+		/* waits until the batch fits in memory; the file being output may always have one waiting, so reads ahead can't starve it */
+		void add(List<RowMap> batch, long bytes) throws InterruptedException {
+			synchronized ( readAheadBytes ) {
+				while ( readAheadBytes.get() >= readAheadMaxBytes && !(head && batches.isEmpty()) )
+					readAheadBytes.wait();
+				readAheadBytes.addAndGet(bytes);
+			}
+			batches.add(batch);
+		}
+
+		void finish() {
+			batches.add(END);
+		}
+
+		/* the next batch of the file, once it's the one being output, or null at its end */
+		List<RowMap> next() throws Exception {
+			synchronized ( readAheadBytes ) {
+				head = true;
+				readAheadBytes.notifyAll();
+			}
+
+			List<RowMap> batch;
+			while ( (batch = batches.poll(1, TimeUnit.SECONDS)) == null ) {
+				// a read that finished without failing has queued its end
+				if ( task.isDone() ) {
+					try {
+						task.get();
+					} catch ( ExecutionException e ) {
+						throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}
+			}
+
+			if ( batch == END )
+				return null;
+
+			long bytes = 0;
+			for ( RowMap row : batch )
+				bytes += row.getApproximateSize();
+			synchronized ( readAheadBytes ) {
+				readAheadBytes.addAndGet(-bytes);
+				readAheadBytes.notifyAll();
+			}
+			return batch;
+		}
+	}
 
 	private long lastInsertedRowsUpdateTimeMillis = 0;
+	// the dump each bootstrap started from, or null if it selected from mysql, by bootstrap id, until it completes
+	private final Map<Long, BootstrapDump> dumps = new HashMap<>();
 
 	public SynchronousBootstrapper(MaxwellContext context) { super(context); }
 
@@ -56,42 +191,411 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 
 		Long schemaId = replicator.getSchemaId();
 		Position position = startBootstrapRow.getPosition();
+		BootstrapDump dump = findDump(table, whereClause, position);
+		dumps.put(( Long ) startBootstrapRow.getData("id"), dump);
 		producer.push(startBootstrapRow);
-		producer.push(bootstrapStartRowMap(table, position));
-		LOGGER.info(String.format("bootstrapping started for %s.%s, binlog position is %s", databaseName, tableName, position.toString()));
-		try ( Connection connection = getConnection();
-			  Connection streamingConnection = getStreamingConnection()) {
+		if ( dump != null ) {
+			producer.push(bootstrapStartRowMap(table, dumpPosition(dump, position), position));
+			LOGGER.info(String.format("bootstrapping started for %s.%s from dump %s, dump binlog position is %s",
+				databaseName, tableName, context.getConfig().bootstrapDumpDir, dump.getBinlogPosition()));
+		} else {
+			producer.push(bootstrapStartRowMap(table, position, position));
+			LOGGER.info(String.format("bootstrapping started for %s.%s, binlog position is %s", databaseName, tableName, position.toString()));
+		}
+		try ( Connection connection = getConnection() ) {
 			setBootstrapRowToStarted(startBootstrapRow, connection);
-			ResultSet resultSet = getAllRows(databaseName, tableName, schema, whereClause, streamingConnection);
-			int insertedRows = 0;
+
+			long insertedRows;
+			BootstrapRowDecoder decoder = new BootstrapRowDecoder(table);
+			String chunkColumn = getChunkColumn(table);
+			if ( dump != null ) {
+				insertedRows = bootstrapDump(startBootstrapRow, table, decoder, dump, position, schemaId, producer, connection);
+			} else if ( context.getConfig().bootstrapChunkSize > 0 && chunkColumn != null ) {
+				insertedRows = bootstrapChunks(startBootstrapRow, table, decoder, chunkColumn, whereClause, position, schemaId, producer, connection);
+			} else {
+				if ( context.getConfig().bootstrapChunkSize > 0 )
+					LOGGER.info(String.format("%s.%s has no single integer primary key, bootstrapping it in one pass", databaseName, tableName));
+				insertedRows = bootstrapAll(startBootstrapRow, table, decoder, schema, whereClause, position, schemaId, producer, connection);
+			}
+			setBootstrapRowToCompleted(insertedRows, startBootstrapRow, connection);
+		}
+	}
+
+	private long bootstrapAll(RowMap startBootstrapRow, Table table, BootstrapRowDecoder decoder, Schema schema, String whereClause,
+							  Position position, Long schemaId, AbstractProducer producer, Connection connection) throws Exception {
+		long rowId = ( long ) startBootstrapRow.getData("id");
+		try ( Connection streamingConnection = getStreamingConnection();
+			  PreparedStatement progress = connection.prepareStatement(UPDATE_INSERTED_ROWS_SQL) ) {
+			ResultSet resultSet = getAllRows(table.getDatabase(), table.getName(), schema, whereClause, streamingConnection);
+			long insertedRows = 0;
 			lastInsertedRowsUpdateTimeMillis = 0; // ensure updateInsertedRowsColumn is called at least once
+
+			List<RowMap> batch = new ArrayList<>(PUSH_BATCH_SIZE);
 			while ( resultSet.next() ) {
-				RowMap row = bootstrapEventRowMap("bootstrap-insert", table, position);
-				setRowValues(row, resultSet, table);
+				RowMap row = bootstrapEventRowMap("bootstrap-insert", table, position, position);
+				decoder.decode(resultSet, row);
 				row.setSchemaId(schemaId);
+				batch.add(row);
+
+				if ( batch.size() >= PUSH_BATCH_SIZE ) {
+					pushRows(batch, producer);
+					insertedRows += batch.size();
+					batch.clear();
+					updateInsertedRowsColumn(insertedRows, position.getBinlogPosition(), rowId, progress);
+				}
+			}
 
-				Scripting scripting = context.getConfig().scripting;
-				if ( scripting != null )
-					scripting.invoke(row);
+			if ( !batch.isEmpty() ) {
+				pushRows(batch, producer);
+				insertedRows += batch.size();
+				updateInsertedRowsColumn(insertedRows, position.getBinlogPosition(), rowId, progress);
+			}
+			return insertedRows;
+		}
+	}
 
-				if ( LOGGER.isDebugEnabled() )
-					LOGGER.debug("bootstrapping row : " + row.toJSON());
+	/*
+	   Reads the table in primary key ranges of bootstrapChunkSize, bootstrapThreads ranges at
+	   a time, each over its own connection, and outputs them in key order.  Ranges are read
+	   ahead until they fill READ_AHEAD_MEMORY_SHARE of the heap.  Once the producer has
+	   delivered every row of a range, and of those before it, its upper bound is saved as
+	   `last_chunk_pk`; a restarted bootstrap carries on after it.
+	*/
+	private long bootstrapChunks(RowMap startBootstrapRow, Table table, BootstrapRowDecoder decoder, String chunkColumn, String whereClause,
+								 Position position, Long schemaId, AbstractProducer producer, Connection connection) throws Exception {
+		long chunkSize = context.getConfig().bootstrapChunkSize;
+		int threads = context.getConfig().bootstrapThreads;
+		long rowId = ( long ) startBootstrapRow.getData("id");
+		long readAheadMaxBytes = (long) (Runtime.getRuntime().maxMemory() * READ_AHEAD_MEMORY_SHARE);
+
+		long[] bounds = getPrimaryKeyBounds(table, chunkColumn, whereClause, connection);
+		if ( bounds == null )
+			return 0;
+
+		long next = bounds[0], max = bounds[1];
+		long insertedRows = 0;
+
+		PreparedStatement progress = connection.prepareStatement("select inserted_rows, last_chunk_pk from `bootstrap` where id = ?");
+		progress.setLong(1, rowId);
+		ResultSet progressResult = progress.executeQuery();
+		if ( progressResult.next() ) {
+			long lastChunkPK = progressResult.getLong("last_chunk_pk");
+			if ( !progressResult.wasNull() ) {
+				if ( lastChunkPK >= max )
+					return progressResult.getLong("inserted_rows");
+
+				next = Math.max(next, lastChunkPK + 1);
+				insertedRows = progressResult.getLong("inserted_rows");
+				LOGGER.info(String.format("resuming bootstrap of %s.%s after %s = %d", table.getDatabase(), table.getName(), chunkColumn, lastChunkPK));
+			}
+		}
 
-				producer.push(row);
-				++insertedRows;
-				updateInsertedRowsColumn(insertedRows, startBootstrapRow, position.getBinlogPosition(), connection);
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+			new ThreadFactoryBuilder().setNameFormat("maxwell-bootstrap-%d").setDaemon(true).build());
+		BlockingQueue<Connection> connections = new ArrayBlockingQueue<>(threads);
+		AtomicLong readAheadBytes = new AtomicLong();
+		LinkedList<Chunk> chunks = new LinkedList<>();
+		// pushed, but not yet saved as progress
+		LinkedList<Chunk> pushed = new LinkedList<>();
+		boolean producerCompletesRows = producer.completesRows();
+		try ( PreparedStatement updateProgress = connection.prepareStatement(UPDATE_CHUNK_PROGRESS_SQL) ) {
+			for ( int i = 0; i < threads; i++ )
+				connections.add(getStreamingConnection());
+
+			boolean exhausted = false;
+			while ( !exhausted || !chunks.isEmpty() ) {
+				// keep a couple of ranges per connection read ahead, as long as they fit in memory
+				while ( !exhausted && chunks.size() < threads * 2 && (chunks.isEmpty() || readAheadBytes.get() < readAheadMaxBytes) ) {
+					final long lo = next;
+					final long hi = max - lo < chunkSize ? max : lo + chunkSize - 1;
+					chunks.add(new Chunk(lo, hi, executor.submit(() -> readChunk(table, decoder, chunkColumn, whereClause, lo, hi, position, schemaId, connections, readAheadBytes))));
+					exhausted = hi == max;
+					next = hi + 1;
+				}
+
+				Chunk chunk = chunks.removeFirst();
+				List<RowMap> rows;
+				try {
+					rows = chunk.rows.get();
+				} catch ( ExecutionException e ) {
+					throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+
+				long bytes = 0;
+				for ( RowMap row : rows )
+					bytes += row.getApproximateSize();
+
+				chunk.track(rows, producerCompletesRows);
+				pushed.add(chunk);
+				for ( int i = 0; i < rows.size(); i += PUSH_BATCH_SIZE )
+					pushRows(rows.subList(i, Math.min(i + PUSH_BATCH_SIZE, rows.size())), producer);
+				readAheadBytes.addAndGet(-bytes);
+
+				insertedRows = saveDeliveredChunks(pushed, insertedRows, rowId, position.getBinlogPosition(), updateProgress);
 			}
-			setBootstrapRowToCompleted(insertedRows, startBootstrapRow, connection);
+
+			for ( Chunk chunk : pushed )
+				chunk.awaitDelivery(context);
+			return saveDeliveredChunks(pushed, insertedRows, rowId, position.getBinlogPosition(), updateProgress);
+		} finally {
+			// let running reads hand their connections back before closing them
+			executor.shutdownNow();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+			for ( Connection c : connections )
+				closeQuietly(c);
 		}
 	}
 
-	private void updateInsertedRowsColumn(int insertedRows, RowMap startBootstrapRow, BinlogPosition position, Connection connection) throws SQLException, NoSuchElementException {
+	/* saves the progress made by the delivered chunks at the head of pushed, and forgets them */
+	private long saveDeliveredChunks(LinkedList<Chunk> pushed, long insertedRows, long rowId, BinlogPosition position,
+									 PreparedStatement updateProgress) throws SQLException {
+		Chunk last = null;
+		while ( !pushed.isEmpty() && pushed.getFirst().isDelivered() ) {
+			last = pushed.removeFirst();
+			insertedRows += last.rowCount;
+		}
+
+		if ( last != null )
+			updateChunkProgress(insertedRows, last.hi, rowId, position, updateProgress);
+		return insertedRows;
+	}
+
+	/*
+	   The dump of the table, if bootstrap_dump_dir has one and the request can be served from it;
+	   otherwise the table is selected from as usual.  A dump taken before the bootstrap's position
+	   is no use: the changes made in between were already output, and replaying the dump would
+	   undo them.  A null position skips that check.
+	*/
+	private BootstrapDump findDump(Table table, String whereClause, Position position) throws IOException {
+		String dumpDir = context.getConfig().bootstrapDumpDir;
+		if ( dumpDir == null )
+			return null;
+
+		if ( whereClause != null && !whereClause.equals("") ) {
+			LOGGER.info(String.format("%s.%s has a where clause, bootstrapping it from mysql instead of the dump", table.getDatabase(), table.getName()));
+			return null;
+		}
+
+		BootstrapDump dump = BootstrapDump.open(dumpDir, context.getConfig().gtidMode);
+		if ( dump.dataFiles(table.getDatabase(), table.getName()).isEmpty() ) {
+			LOGGER.info(String.format("%s.%s isn't in the dump, bootstrapping it from mysql", table.getDatabase(), table.getName()));
+			return null;
+		}
+
+		if ( position != null && position.getBinlogPosition().newerThan(dump.getBinlogPosition()) ) {
+			LOGGER.warn(String.format("the dump of %s.%s is from %s, before the bootstrap's %s; bootstrapping it from mysql",
+				table.getDatabase(), table.getName(), dump.getBinlogPosition(), position.getBinlogPosition()));
+			return null;
+		}
+		return dump;
+	}
+
+	/* bootstrap rows of a dump are as of the dump's position; they still checkpoint at the bootstrap's own */
+	private static Position dumpPosition(BootstrapDump dump, Position position) {
+		return new Position(dump.getBinlogPosition(), position.getLastHeartbeatRead());
+	}
+
+	/*
+	   Reads the table's dump files, bootstrapThreads at a time, and outputs them in order.
+	   Rows are pushed as they're read from the file being output; those of the files after it
+	   are read ahead until they fill READ_AHEAD_MEMORY_SHARE of the heap.  The dump's binlog
+	   position is saved as the bootstrap's, so that the async bootstrapper only replays held
+	   back changes the dump doesn't already contain.
+	*/
+	private long bootstrapDump(RowMap startBootstrapRow, Table table, BootstrapRowDecoder decoder, BootstrapDump dump,
+							   Position position, Long schemaId, AbstractProducer producer, Connection connection) throws Exception {
+		int threads = context.getConfig().bootstrapThreads;
+		long rowId = ( long ) startBootstrapRow.getData("id");
+		long readAheadMaxBytes = (long) (Runtime.getRuntime().maxMemory() * READ_AHEAD_MEMORY_SHARE);
+		BinlogPosition dumpBinlogPosition = dump.getBinlogPosition();
+		Position rowPosition = dumpPosition(dump, position);
+
+		List<File> files = dump.dataFiles(table.getDatabase(), table.getName());
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+			new ThreadFactoryBuilder().setNameFormat("maxwell-bootstrap-%d").setDaemon(true).build());
+		AtomicLong readAheadBytes = new AtomicLong();
+		LinkedList<DumpFileRead> reads = new LinkedList<>();
+		try ( PreparedStatement progress = connection.prepareStatement(UPDATE_INSERTED_ROWS_SQL) ) {
+			long insertedRows = 0;
+			lastInsertedRowsUpdateTimeMillis = 0;
+			updateInsertedRowsColumn(insertedRows, dumpBinlogPosition, rowId, progress);
+
+			int next = 0;
+			while ( next < files.size() || !reads.isEmpty() ) {
+				// one file per thread; each blocks once the reads ahead fill their share of memory
+				while ( next < files.size() && reads.size() < threads ) {
+					DumpFileRead read = new DumpFileRead(files.get(next++), readAheadBytes, readAheadMaxBytes);
+					read.task = executor.submit(() -> {
+						readDumpFile(read, table, decoder, rowPosition, position, schemaId);
+						return null;
+					});
+					reads.add(read);
+				}
+
+				DumpFileRead read = reads.removeFirst();
+				List<RowMap> rows;
+				while ( (rows = read.next()) != null ) {
+					pushRows(rows, producer);
+					insertedRows += rows.size();
+					updateInsertedRowsColumn(insertedRows, dumpBinlogPosition, rowId, progress);
+				}
+			}
+			return insertedRows;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void readDumpFile(DumpFileRead read, Table table, BootstrapRowDecoder decoder, Position rowPosition, Position position,
+							  Long schemaId) throws IOException, InterruptedException {
+		try ( DumpFileReader reader = new DumpFileReader(read.file) ) {
+			long records = 0;
+			List<RowMap> batch = new ArrayList<>(PUSH_BATCH_SIZE);
+			long bytes = 0;
+			byte[][] fields;
+			while ( (fields = reader.next()) != null ) {
+				records++;
+				RowMap row = bootstrapEventRowMap("bootstrap-insert", table, rowPosition, position);
+				try {
+					decoder.decode(fields, row);
+				} catch ( IllegalArgumentException e ) {
+					// NumberFormatException included
+					throw new IOException(String.format("bad record %d of %s: %s", records, read.file, e.getMessage()), e);
+				}
+				row.setSchemaId(schemaId);
+				batch.add(row);
+				bytes += row.getApproximateSize();
+
+				if ( batch.size() >= PUSH_BATCH_SIZE ) {
+					read.add(batch, bytes);
+					batch = new ArrayList<>(PUSH_BATCH_SIZE);
+					bytes = 0;
+				}
+			}
+
+			if ( !batch.isEmpty() )
+				read.add(batch, bytes);
+			read.finish();
+		}
+	}
+
+	private List<RowMap> readChunk(Table table, BootstrapRowDecoder decoder, String chunkColumn, String whereClause, long lo, long hi,
+								   Position position, Long schemaId, BlockingQueue<Connection> connections, AtomicLong readAheadBytes) throws Exception {
+		Connection connection = connections.take();
+		try {
+			for ( int attempt = 1; ; attempt++ ) {
+				try {
+					return selectChunk(table, decoder, chunkColumn, whereClause, lo, hi, position, schemaId, connection, readAheadBytes);
+				} catch ( SQLException e ) {
+					if ( attempt >= CHUNK_ATTEMPTS )
+						throw e;
+
+					LOGGER.warn(String.format("reading %s.%s where %s between %d and %d failed, retrying: %s",
+						table.getDatabase(), table.getName(), chunkColumn, lo, hi, e.getMessage()));
+					closeQuietly(connection);
+					connection = getStreamingConnection();
+				}
+			}
+		} finally {
+			// there's always room, one connection per thread; but never block here, shutdownNow may have interrupted us
+			if ( !connections.offer(connection) )
+				closeQuietly(connection);
+		}
+	}
+
+	private List<RowMap> selectChunk(Table table, BootstrapRowDecoder decoder, String chunkColumn, String whereClause, long lo, long hi,
+									 Position position, Long schemaId, Connection connection, AtomicLong readAheadBytes) throws SQLException {
+		String sql = String.format("select * from `%s`.`%s` where `%s` >= ? and `%s` <= ?", table.getDatabase(), table.getName(), chunkColumn, chunkColumn);
+		if ( whereClause != null && !whereClause.equals("") )
+			sql += String.format(" and (%s)", whereClause);
+		sql += String.format(" order by `%s`", chunkColumn);
+
+		try ( PreparedStatement statement = connection.prepareStatement(sql) ) {
+			statement.setLong(1, lo);
+			statement.setLong(2, hi);
+
+			List<RowMap> rows = new ArrayList<>();
+			long bytes = 0;
+			ResultSet resultSet = statement.executeQuery();
+			while ( resultSet.next() ) {
+				RowMap row = bootstrapEventRowMap("bootstrap-insert", table, position, position);
+				decoder.decode(resultSet, row);
+				row.setSchemaId(schemaId);
+				rows.add(row);
+				bytes += row.getApproximateSize();
+			}
+			readAheadBytes.addAndGet(bytes);
+			return rows;
+		}
+	}
+
+	/* null if there are no rows to bootstrap */
+	private long[] getPrimaryKeyBounds(Table table, String chunkColumn, String whereClause, Connection connection) throws SQLException {
+		String sql = String.format("select min(`%s`), max(`%s`) from `%s`.`%s`", chunkColumn, chunkColumn, table.getDatabase(), table.getName());
+		if ( whereClause != null && !whereClause.equals("") )
+			sql += String.format(" where %s", whereClause);
+
+		ResultSet resultSet = connection.createStatement().executeQuery(sql);
+		if ( !resultSet.next() )
+			return null;
+
+		long min = resultSet.getLong(1);
+		if ( resultSet.wasNull() )
+			return null;
+		return new long[] { min, resultSet.getLong(2) };
+	}
+
+	/* the primary key, if the table can be split into ranges of it */
+	private String getChunkColumn(Table table) {
+		List<String> pk = table.getPKList();
+		if ( pk == null || pk.size() != 1 )
+			return null;
+
+		ColumnDef cd = table.findColumn(pk.get(0));
+		if ( cd instanceof IntColumnDef )
+			return cd.getName();
+		// unsigned bigints may not fit a long
+		if ( cd instanceof BigIntColumnDef && ((BigIntColumnDef) cd).isSigned() )
+			return cd.getName();
+		return null;
+	}
+
+	private void pushRows(List<RowMap> rows, AbstractProducer producer) throws Exception {
+		Scripting scripting = context.getConfig().scripting;
+		for ( RowMap row : rows ) {
+			if ( scripting != null )
+				scripting.invoke(row);
+
+			if ( LOGGER.isDebugEnabled() )
+				LOGGER.debug("bootstrapping row : " + row.toJSON());
+		}
+
+		producer.pushBatch(rows);
+	}
+
+	private void updateChunkProgress(long insertedRows, long lastChunkPK, long rowId, BinlogPosition position, PreparedStatement preparedStatement) throws SQLException, NoSuchElementException {
+		preparedStatement.setLong(1, insertedRows);
+		preparedStatement.setLong(2, lastChunkPK);
+		preparedStatement.setString(3, position.getFile());
+		preparedStatement.setLong(4, position.getOffset());
+		preparedStatement.setLong(5, rowId);
+		if ( preparedStatement.executeUpdate() == 0 ) {
+			throw new NoSuchElementException();
+		}
+	}
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch ( SQLException e ) {
+			LOGGER.debug("error closing bootstrap connection", e);
+		}
+	}
+
+	private void updateInsertedRowsColumn(long insertedRows, BinlogPosition position, long rowId, PreparedStatement preparedStatement) throws SQLException, NoSuchElementException {
 		long now = System.currentTimeMillis();
 		if ( now - lastInsertedRowsUpdateTimeMillis > INSERTED_ROWS_UPDATE_PERIOD_MILLIS ) {
-			long rowId = ( long ) startBootstrapRow.getData("id");
-			String sql = "update `bootstrap` set inserted_rows = ?, binlog_file = ?, binlog_position = ? where id = ?";
-			PreparedStatement preparedStatement = connection.prepareStatement(sql);
-			preparedStatement.setInt(1, insertedRows);
+			preparedStatement.setLong(1, insertedRows);
 			preparedStatement.setString(2, position.getFile());
 			preparedStatement.setLong(3, position.getOffset());
 			preparedStatement.setLong(4, rowId);
@@ -114,22 +618,26 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 		return conn;
 	}
 
-	private RowMap bootstrapStartRowMap(Table table, Position position) {
-		return bootstrapEventRowMap("bootstrap-start", table, position);
+	private RowMap bootstrapStartRowMap(Table table, Position position, Position nextPosition) {
+		return bootstrapEventRowMap("bootstrap-start", table, position, nextPosition);
 	}
 
-	private RowMap bootstrapCompleteRowMap(Table table, Position position) {
-		return bootstrapEventRowMap("bootstrap-complete", table, position);
+	private RowMap bootstrapCompleteRowMap(Table table, Position position, Position nextPosition) {
+		return bootstrapEventRowMap("bootstrap-complete", table, position, nextPosition);
 	}
 
-	private RowMap bootstrapEventRowMap(String type, Table table, Position position) {
-		return new RowMap(
+	private RowMap bootstrapEventRowMap(String type, Table table, Position position, Position nextPosition) {
+		RowMap row = new RowMap(
 				type,
 				table.getDatabase(),
 				table.getName(),
 				System.currentTimeMillis(),
 				table.getPKList(),
-				position);
+				position,
+				nextPosition,
+				null);
+		row.setTableSchema(table);
+		return row;
 	}
 
 	@Override
@@ -142,8 +650,16 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 		Table table = findTable(tableName, database);
 
 		Position position = completeBootstrapRow.getPosition();
+		Long rowId = ( Long ) completeBootstrapRow.getData("id");
+		BootstrapDump dump;
+		if ( dumps.containsKey(rowId) ) {
+			dump = dumps.remove(rowId);
+		} else {
+			// started before a restart: its start position is gone, so the dump is taken as it is
+			dump = findDump(table, bootstrapWhere(completeBootstrapRow), null);
+		}
 		producer.push(completeBootstrapRow);
-		producer.push(bootstrapCompleteRowMap(table, position));
+		producer.push(bootstrapCompleteRowMap(table, dump == null ? position : dumpPosition(dump, position), position));
 
 		LOGGER.info(String.format("bootstrapping ended for %s.%s", databaseName, tableName));
 	}
@@ -153,7 +669,8 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 		try ( Connection connection = context.getMaxwellConnection() ) {
 			// This update resets all rows of incomplete bootstraps to their original state.
 			// These updates are treated as fresh bootstrap requests and trigger a restart
-			// of the bootstrap process from the beginning.
+			// of the bootstrap process; from the beginning, or, for chunked bootstraps,
+			// after `last_chunk_pk`.
 			String clientID = this.context.getConfig().clientID;
 			String sql = "update `bootstrap` set started_at = NULL where is_complete = 0 and started_at is not NULL and client_id = ?";
 			PreparedStatement s = connection.prepareStatement(sql);
@@ -231,36 +748,14 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 		}
 	}
 
-	private void setBootstrapRowToCompleted(int insertedRows, RowMap startBootstrapRow, Connection connection) throws SQLException, NoSuchElementException {
+	private void setBootstrapRowToCompleted(long insertedRows, RowMap startBootstrapRow, Connection connection) throws SQLException, NoSuchElementException {
 		String sql = "update `bootstrap` set is_complete=1, inserted_rows=?, completed_at=NOW() where id=?";
 		PreparedStatement preparedStatement = connection.prepareStatement(sql);
-		preparedStatement.setInt(1, insertedRows);
+		preparedStatement.setLong(1, insertedRows);
 		preparedStatement.setLong(2, ( Long ) startBootstrapRow.getData("id"));
 		if ( preparedStatement.executeUpdate() == 0) {
 			throw new NoSuchElementException();
 		}
 	}
 
-	private void setRowValues(RowMap row, ResultSet resultSet, Table table) throws SQLException, IOException {
-		Iterator<ColumnDef> columnDefinitions = table.getColumnList().iterator();
-		int columnIndex = 1;
-		while ( columnDefinitions.hasNext() ) {
-			ColumnDef columnDefinition = columnDefinitions.next();
-			Object columnValue;
-
-			// need to explicitly coerce TIME into TIMESTAMP in order to preserve nanoseconds
-			if ( columnDefinition instanceof TimeColumnDef )
-				columnValue = resultSet.getTimestamp(columnIndex);
-			else
-				columnValue = resultSet.getObject(columnIndex);
-
-			row.putData(
-				columnDefinition.getName(),
-				columnValue == null ? null : columnDefinition.asJSON(columnValue, new MaxwellOutputConfig())
-			);
-
-			++columnIndex;
-		}
-	}
-
 }
@@ -9,8 +9,11 @@ import java.util.*;
 public class Filter {
 	static final Logger LOGGER = LoggerFactory.getLogger(Filter.class);
 
+	public static final List<String> ROW_TYPES = Arrays.asList("insert", "update", "delete");
+
 	private final List<FilterPattern> patterns;
 	private String maxwellDB;
+	private Set<String> rowTypes; // null: all row types
 
 	public Filter() {
 		this.patterns = new ArrayList<>();
@@ -44,6 +47,35 @@ public class Filter {
 		return new ArrayList<>(this.patterns);
 	}
 
+	/**
+	 * Restrict output to some row types.
+	 *
+	 * @param rowTypes comma separated list of insert, update, delete
+	 * @throws InvalidFilterException on an unknown row type
+	 */
+	public void setRowTypes(String rowTypes) throws InvalidFilterException {
+		Set<String> types = new HashSet<>();
+		for ( String s : rowTypes.split(",") ) {
+			String type = s.trim().toLowerCase();
+			if ( !ROW_TYPES.contains(type) )
+				throw new InvalidFilterException("Unknown row type: " + s.trim());
+			types.add(type);
+		}
+		this.rowTypes = types.size() == ROW_TYPES.size() ? null : types;
+	}
+
+	public Set<String> getRowTypes() {
+		return rowTypes == null ? new HashSet<>(ROW_TYPES) : new HashSet<>(rowTypes);
+	}
+
+	/*
+	   maxwell's own tables (heartbeats, bootstrap) are never filtered by row type,
+	   they drive position and bootstrapping.
+	*/
+	public boolean includesRowType(String database, String rowType) {
+		return rowTypes == null || isMaxwellDB(database) || rowTypes.contains(rowType);
+	}
+
 
 	public boolean includes(String database, String table) {
 		FilterResult match = new FilterResult();
@@ -124,6 +156,14 @@ public class Filter {
 		}
 	}
 
+	public static boolean includesRowType(Filter filter, String database, String rowType) {
+		if (filter == null) {
+			return true;
+		} else {
+			return filter.includesRowType(database, rowType);
+		}
+	}
+
 	public static boolean couldIncludeFromColumnFilters(Filter filter, String database, String table, Set<String> columnNames) {
 		if (filter == null) {
 			return false;
@@ -0,0 +1,66 @@
+package com.zendesk.maxwell.ipc;
+
+/* a reader's acknowledgements, kept in a small sidecar file next to the ring:
+
+     0   long  epoch of the ring the acks refer to
+     8   long  read position just past the acknowledged record
+     16  long  sequence of the last acknowledged record
+
+   Readers write the sequence last; the writer only looks at the epoch and
+   sequence, the reader uses the position to pick up where it left off. */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class RingAckFile {
+	static final int SIZE = 4096;
+	static final int EPOCH_OFFSET = 0;
+	static final int POSITION_OFFSET = 8;
+	static final int SEQUENCE_OFFSET = 16;
+
+	private final MappedByteBuffer buffer;
+
+	private RingAckFile(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public static Path pathFor(Path ring, String reader) {
+		return Paths.get(ring.toString() + "." + reader + ".ack");
+	}
+
+	public static RingAckFile open(Path ring, String reader) throws IOException {
+		try ( RandomAccessFile file = new RandomAccessFile(pathFor(ring, reader).toFile(), "rw") ) {
+			if ( file.length() < SIZE )
+				file.setLength(SIZE);
+			return new RingAckFile(file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE));
+		}
+	}
+
+	public long getEpoch() {
+		return buffer.getLong(EPOCH_OFFSET);
+	}
+
+	public long getPosition() {
+		return buffer.getLong(POSITION_OFFSET);
+	}
+
+	public long getSequence() {
+		return buffer.getLong(SEQUENCE_OFFSET);
+	}
+
+	/* the last acknowledged sequence, or 0 if the acks are for another epoch */
+	public long getSequence(long epoch) {
+		long seq = buffer.getLong(SEQUENCE_OFFSET);
+		return buffer.getLong(EPOCH_OFFSET) == epoch ? seq : 0L;
+	}
+
+	void ack(long epoch, long position, long sequence) {
+		buffer.putLong(EPOCH_OFFSET, epoch);
+		buffer.putLong(POSITION_OFFSET, position);
+		buffer.putLong(SEQUENCE_OFFSET, sequence);
+	}
+}
@@ -0,0 +1,184 @@
+package com.zendesk.maxwell.ipc;
+
+/* layout of a memory-mapped ring of records, written by a single process and
+   read by any number of others on the same host.
+
+   The file starts with a HEADER_SIZE header:
+
+     0   int   magic ("MXRB")
+     4   int   version
+     8   long  capacity of the data region, in bytes
+     16  long  epoch, set each time a writer (re)creates the ring
+     24  long  sequence of the last record written
+     32  long  write position: total bytes written into the data region
+
+   followed by the data region.  Records are 8-byte aligned:
+
+     0   long  sequence (records are numbered from 1)
+     8   int   payload length, or WRAP for a wrap marker
+     12  int   reserved
+     16  payload
+
+   A record that wouldn't fit before the end of the data region is replaced
+   by a wrap marker carrying its sequence, and written at the start of the
+   region instead; when less than a record header is left, the wrap is
+   implicit.
+
+   The writer fills in a record's payload and length first and its sequence
+   last, after clearing the header slot of the record that will follow it;
+   a reader that finds the sequence it's waiting for knows the record is
+   complete, and one that finds a lower (or zero) sequence knows it isn't
+   there yet.  A higher sequence means the writer lapped the reader.
+   ByteBuffer accesses are plain, so the writer puts a fence before the
+   sequence and readers one after it.  Java 8 has no fence API short of
+   sun.misc.Unsafe, whose use javac warns about; instead a volatile write
+   followed by a volatile read keeps the compiler from moving any access
+   across it, and HotSpot emits a full CPU fence for it (a locked
+   instruction on x86, dmb on ARM), which orders what other processes
+   see of the mapping as well.
+
+   A ring whose epoch changes has been restarted by a new writer; one whose
+   epoch is RETIRED has been replaced by a new file at the same path. */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+public class RingFile {
+	public static final int MAGIC = 0x4d585242; // "MXRB"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 4096;
+	public static final int RECORD_HEADER_SIZE = 16;
+	public static final int WRAP = -1;
+	public static final long RETIRED = -1L;
+
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int CAPACITY_OFFSET = 8;
+	static final int EPOCH_OFFSET = 16;
+	static final int SEQUENCE_OFFSET = 24;
+	static final int POSITION_OFFSET = 32;
+
+	static final int RECORD_LENGTH_OFFSET = 8;
+
+	final MappedByteBuffer buffer;
+	final long capacity;
+	// only ever touched to fence, see fence()
+	private volatile int fence;
+
+	RingFile(MappedByteBuffer buffer, long capacity) {
+		this.buffer = buffer;
+		this.capacity = capacity;
+	}
+
+	/* creates (or recreates) a ring at path, starting a new epoch.
+
+	   Readers may have the old ring mapped, and truncating a mapped file
+	   crashes them; an existing ring of the same size is instead cleared in
+	   place, and one of a different size is replaced by a new file and then
+	   retired, so that its readers move over to the new one. */
+	public static RingFile create(Path path, long capacity) throws IOException {
+		if ( capacity % 8 != 0 || capacity < RECORD_HEADER_SIZE * 4 || HEADER_SIZE + capacity > Integer.MAX_VALUE )
+			throw new IllegalArgumentException("invalid ring capacity: " + capacity);
+
+		RingFile existing = null;
+		if ( Files.exists(path) ) {
+			try {
+				existing = open(path);
+			} catch ( IOException e ) {
+				// not a ring; it'll be replaced
+			}
+		}
+
+		if ( existing != null && existing.capacity == capacity && existing.buffer.capacity() == HEADER_SIZE + capacity ) {
+			existing.reset();
+			return existing;
+		}
+
+		Path tmp = Paths.get(path.toString() + ".tmp");
+		RingFile ring;
+		try ( RandomAccessFile file = new RandomAccessFile(tmp.toFile(), "rw") ) {
+			file.setLength(0);
+			file.setLength(HEADER_SIZE + capacity);
+
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+			buffer.putLong(CAPACITY_OFFSET, capacity);
+			buffer.putInt(VERSION_OFFSET, VERSION);
+			buffer.putInt(MAGIC_OFFSET, MAGIC);
+			ring = new RingFile(buffer, capacity);
+			ring.reset();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		if ( existing != null )
+			existing.buffer.putLong(EPOCH_OFFSET, RETIRED);
+
+		return ring;
+	}
+
+	/* clears the data region, then starts a new epoch; readers see no records
+	   until the epoch changes, and none from the previous epoch after */
+	private void reset() {
+		for ( int i = HEADER_SIZE; i < HEADER_SIZE + capacity; i += 8 )
+			buffer.putLong(i, 0L);
+
+		buffer.putLong(SEQUENCE_OFFSET, 0L);
+		buffer.putLong(POSITION_OFFSET, 0L);
+		buffer.putLong(EPOCH_OFFSET, Math.max(System.currentTimeMillis(), buffer.getLong(EPOCH_OFFSET) + 1));
+	}
+
+	public static RingFile open(Path path) throws IOException {
+		try ( RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw") ) {
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+			if ( buffer.getInt(MAGIC_OFFSET) != MAGIC )
+				throw new IOException(path + " is not a maxwell ring file");
+			if ( buffer.getInt(VERSION_OFFSET) != VERSION )
+				throw new IOException("unsupported ring file version " + buffer.getInt(VERSION_OFFSET) + " in " + path);
+
+			return new RingFile(buffer, buffer.getLong(CAPACITY_OFFSET));
+		}
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public long getEpoch() {
+		return buffer.getLong(EPOCH_OFFSET);
+	}
+
+	public long getLastSequence() {
+		return buffer.getLong(SEQUENCE_OFFSET);
+	}
+
+	public long getWritePosition() {
+		return buffer.getLong(POSITION_OFFSET);
+	}
+
+	/* space a payload takes up in the data region, header and padding included */
+	public static long recordSize(int payloadLength) {
+		return (RECORD_HEADER_SIZE + payloadLength + 7) & ~7L;
+	}
+
+	/* where in the file the record at (total) write position `position` starts */
+	int offset(long position) {
+		return (int) (HEADER_SIZE + position % capacity);
+	}
+
+	/* bytes left before the end of the data region */
+	long remaining(long position) {
+		return capacity - position % capacity;
+	}
+
+	/* no access before this may be reordered with one after it: the writer's release of a
+	   sequence, and a reader's acquire of it */
+	void fence() {
+		fence = 0;
+		int f = fence;
+	}
+}
@@ -0,0 +1,123 @@
+package com.zendesk.maxwell.ipc;
+
+/* reads records from a maxwell ring file.
+
+     RingFileReader reader = new RingFileReader(Paths.get("/dev/shm/maxwell.ring"), "cache");
+     while ( running ) {
+       byte[] row = reader.poll();
+       if ( row == null ) {
+         LockSupport.parkNanos(1000);
+         continue;
+       }
+       handle(row);
+       reader.ack();
+     }
+
+   A reader named in maxwell's ring_readers holds the writer back until it has
+   acked, and maxwell only stores a binlog position once every such reader
+   has acked the rows before it.  Other readers can be lapped by the writer,
+   which poll() reports with a RingOverrunException.
+
+   When maxwell restarts it starts a new ring (a new "epoch"); readers follow
+   it from the beginning, and may see rows again that they'd already read
+   but not acked. */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+public class RingFileReader {
+	public static class RingOverrunException extends IllegalStateException {
+		private static final long serialVersionUID = 1L;
+
+		RingOverrunException(long expected, long found) {
+			super("reader expected sequence " + expected + " but the writer has moved on to " + found);
+		}
+	}
+
+	private final Path path;
+	private final RingAckFile acks;
+	private RingFile ring;
+	private long epoch;
+	private long position;
+	private long nextSequence;
+
+	public RingFileReader(Path path, String name) throws IOException {
+		this.path = path;
+		this.acks = RingAckFile.open(path, name);
+		this.ring = RingFile.open(path);
+		this.epoch = ring.getEpoch();
+
+		if ( acks.getEpoch() == epoch && acks.getSequence() > 0 ) {
+			this.position = acks.getPosition();
+			this.nextSequence = acks.getSequence() + 1;
+		} else {
+			this.position = 0;
+			this.nextSequence = 1;
+		}
+	}
+
+	/* the next record's payload, or null if the writer hasn't got that far yet */
+	public byte[] poll() throws IOException {
+		if ( ring.getEpoch() != epoch )
+			restart();
+
+		while ( true ) {
+			if ( ring.remaining(position) < RingFile.RECORD_HEADER_SIZE )
+				position += ring.remaining(position);
+
+			ByteBuffer buffer = ring.buffer;
+			int offset = ring.offset(position);
+			long seq = buffer.getLong(offset);
+
+			if ( seq < nextSequence ) {
+				if ( ring.getEpoch() != epoch ) {
+					restart();
+					continue;
+				}
+				return null;
+			} else if ( seq > nextSequence ) {
+				throw new RingOverrunException(nextSequence, seq);
+			}
+
+			// pairs with the writer's fence: read the record only after its sequence
+			ring.fence();
+			int length = buffer.getInt(offset + RingFile.RECORD_LENGTH_OFFSET);
+			if ( length == RingFile.WRAP ) {
+				position += ring.remaining(position);
+				continue;
+			}
+
+			byte[] payload = new byte[length];
+			ByteBuffer body = buffer.duplicate();
+			body.position(offset + RingFile.RECORD_HEADER_SIZE);
+			body.get(payload);
+
+			// the writer may have lapped us while we copied
+			ring.fence();
+			if ( buffer.getLong(offset) != seq )
+				throw new RingOverrunException(nextSequence, buffer.getLong(offset));
+
+			position += RingFile.recordSize(length);
+			nextSequence++;
+			return payload;
+		}
+	}
+
+	/* sequence of the last record returned by poll() */
+	public long getSequence() {
+		return nextSequence - 1;
+	}
+
+	/* acknowledges every record returned by poll() so far */
+	public void ack() {
+		acks.ack(epoch, position, nextSequence - 1);
+	}
+
+	private void restart() throws IOException {
+		this.ring = RingFile.open(path);
+		this.epoch = ring.getEpoch();
+		this.position = 0;
+		this.nextSequence = 1;
+	}
+}
@@ -0,0 +1,100 @@
+package com.zendesk.maxwell.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/* the (single) writer of a RingFile.  It doesn't know about readers; callers
+   must check hasRoom() before writing if they care not to lap them. */
+public class RingFileWriter {
+	private final RingFile ring;
+	private final long epoch;
+	private long sequence;
+	private long position;
+
+	public RingFileWriter(Path path, long capacity) throws IOException {
+		this.ring = RingFile.create(path, capacity);
+		this.epoch = ring.getEpoch();
+		this.sequence = 0;
+		this.position = 0;
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public long getCapacity() {
+		return ring.getCapacity();
+	}
+
+	/* total bytes written so far, wrap markers included */
+	public long getPosition() {
+		return position;
+	}
+
+	/* the write position after a record of this size, accounting for a wrap */
+	public long positionAfter(int payloadLength) {
+		long size = RingFile.recordSize(payloadLength);
+		long p = position;
+		if ( ring.remaining(p) < size )
+			p += ring.remaining(p);
+		return p + size;
+	}
+
+	/* whether a record fits without overwriting anything at or after
+	   `oldestUnread`, including the header slot cleared behind it */
+	public boolean hasRoom(int payloadLength, long oldestUnread) {
+		return positionAfter(payloadLength) + 2 * RingFile.RECORD_HEADER_SIZE - oldestUnread <= ring.getCapacity();
+	}
+
+	/* whether a record of this size can ever fit in the ring */
+	public boolean fits(int payloadLength) {
+		return RingFile.recordSize(payloadLength) <= ring.getCapacity() - 3 * RingFile.RECORD_HEADER_SIZE;
+	}
+
+	/* writes a record and returns its sequence number */
+	public long write(byte[] payload) {
+		long size = RingFile.recordSize(payload.length);
+		if ( !fits(payload.length) )
+			throw new IllegalArgumentException("record of " + payload.length + " bytes doesn't fit in a ring of " + ring.getCapacity());
+
+		long seq = sequence + 1;
+		ByteBuffer buffer = ring.buffer;
+
+		long remaining = ring.remaining(position);
+		if ( remaining < size ) {
+			if ( remaining >= RingFile.RECORD_HEADER_SIZE ) {
+				int marker = ring.offset(position);
+				buffer.putInt(marker + RingFile.RECORD_LENGTH_OFFSET, RingFile.WRAP);
+				clearNextHeader(position + remaining);
+				ring.fence();
+				buffer.putLong(marker, seq);
+			}
+			position += remaining;
+		}
+
+		int offset = ring.offset(position);
+		ByteBuffer body = buffer.duplicate();
+		body.position(offset + RingFile.RECORD_HEADER_SIZE);
+		body.put(payload);
+		buffer.putInt(offset + RingFile.RECORD_LENGTH_OFFSET, payload.length);
+		clearNextHeader(position + size);
+		// publish: everything above must be visible before a reader can see the sequence
+		ring.fence();
+		buffer.putLong(offset, seq);
+
+		position += size;
+		sequence = seq;
+		buffer.putLong(RingFile.POSITION_OFFSET, position);
+		buffer.putLong(RingFile.SEQUENCE_OFFSET, sequence);
+		return seq;
+	}
+
+	/* zero the sequence where the next record will go, so that a reader
+	   waiting there doesn't mistake a previous lap's bytes for a record */
+	private void clearNextHeader(long next) {
+		if ( ring.remaining(next) < RingFile.RECORD_HEADER_SIZE )
+			next += ring.remaining(next);
+		ring.buffer.putLong(ring.offset(next), 0L);
+	}
+}
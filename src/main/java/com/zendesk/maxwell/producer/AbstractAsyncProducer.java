@@ -16,16 +16,37 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 		private final Position position;
 		private final boolean isTXCommit;
 		private final long messageID;
+		private final Runnable completionCallback;
+		private volatile CompletionSequencer sequencer;
 
 		public CallbackCompleter(InflightMessageList inflightMessages, Position position, boolean isTXCommit, MaxwellContext context, long messageID) {
+			this(inflightMessages, position, isTXCommit, context, messageID, null);
+		}
+
+		public CallbackCompleter(InflightMessageList inflightMessages, Position position, boolean isTXCommit, MaxwellContext context, long messageID,
+								 Runnable completionCallback) {
 			this.inflightMessages = inflightMessages;
 			this.context = context;
 			this.position = position;
 			this.isTXCommit = isTXCommit;
 			this.messageID = messageID;
+			this.completionCallback = completionCallback;
+		}
+
+		/* hold this row's completion until every row registered with sequencer before it has completed */
+		void sequenceBy(CompletionSequencer sequencer) {
+			this.sequencer = sequencer;
+			sequencer.register(this);
 		}
 
 		public void markCompleted() {
+			if ( sequencer != null )
+				sequencer.completed(this);
+			else
+				complete();
+		}
+
+		void complete() {
 			inflightMessages.freeSlot(messageID);
 			if(isTXCommit) {
 				InflightMessageList.InflightMessage message = inflightMessages.completeMessage(position);
@@ -37,15 +58,23 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 					messageLatencyTimer.update(Math.max(0L, currentTime - message.eventTimeMS - 500L), TimeUnit.MILLISECONDS);
 				}
 			}
+
+			if ( completionCallback != null )
+				completionCallback.run();
 		}
 	}
 
 	private InflightMessageList inflightMessages;
 
 	public AbstractAsyncProducer(MaxwellContext context) {
+		this(context, InflightMessageList.DEFAULT_CAPACITY);
+	}
+
+	/* maxInflightMessages bounds how many messages may be awaiting acknowledgement */
+	public AbstractAsyncProducer(MaxwellContext context, int maxInflightMessages) {
 		super(context);
 
-		this.inflightMessages = new InflightMessageList(context);
+		this.inflightMessages = new InflightMessageList(context, maxInflightMessages);
 
 		Metrics metrics = context.getMetrics();
 		String gaugeName = metrics.metricName("inflightmessages", "count");
@@ -54,6 +83,11 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 
 	public abstract void sendAsync(RowMap r, CallbackCompleter cc) throws Exception;
 
+	@Override
+	public boolean completesRows() {
+		return true;
+	}
+
 	@Override
 	public final void push(RowMap r) throws Exception {
 		Position position = r.getNextPosition();
@@ -66,6 +100,9 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 			if(completed != null) {
 				context.setPosition(completed.position);
 			}
+
+			if ( r.getCompletionCallback() != null )
+				r.getCompletionCallback().run();
 			return;
 		}
 
@@ -77,7 +114,7 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 			inflightMessages.addMessage(position, r.getTimestampMillis(), messageID);
 		}
 
-		CallbackCompleter cc = new CallbackCompleter(inflightMessages, position, r.isTXCommit(), context, messageID);
+		CallbackCompleter cc = new CallbackCompleter(inflightMessages, position, r.isTXCommit(), context, messageID, r.getCompletionCallback());
 
 		sendAsync(r, cc);
 	}
@@ -7,12 +7,17 @@ import com.codahale.metrics.Timer;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.monitoring.MaxwellDiagnostic;
 import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.row.CompressingRowSerializer;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.RowSerializer;
 import com.zendesk.maxwell.util.StoppableTask;
 
+import java.util.List;
+
 public abstract class AbstractProducer {
 	protected final MaxwellContext context;
 	protected final MaxwellOutputConfig outputConfig;
+	protected final RowSerializer serializer;
 	protected final Counter succeededMessageCount;
 	protected final Meter succeededMessageMeter;
 	protected final Counter failedMessageCount;
@@ -24,6 +29,15 @@ public abstract class AbstractProducer {
 		this.context = context;
 		this.outputConfig = context.getConfig().outputConfig;
 
+		RowSerializer s = null;
+		if ( context.getConfig().producerFactory != null )
+			s = context.getConfig().producerFactory.createRowSerializer(context);
+		if ( s == null )
+			s = context.getConfig().buildRowSerializer(this.outputConfig);
+		if ( !context.getConfig().payloadCompression.equals("none") )
+			s = new CompressingRowSerializer(s, context.getConfig().payloadCompression, context.getConfig().payloadCompressionThreshold);
+		this.serializer = s;
+
 		Metrics metrics = context.getMetrics();
 		MetricRegistry metricRegistry = metrics.getRegistry();
 
@@ -37,6 +51,24 @@ public abstract class AbstractProducer {
 
 	abstract public void push(RowMap r) throws Exception;
 
+	/**
+	 * Push several rows at once; the bootstrapper hands rows over this way.
+	 * Producers that can send a group of rows more cheaply than one at a time may override this.
+	 * The list may be reused by the caller once this returns.
+	 */
+	public void pushBatch(List<RowMap> rows) throws Exception {
+		for ( RowMap r : rows )
+			push(r);
+	}
+
+	/**
+	 * Whether this producer runs each row's completion callback once the row is delivered.
+	 * Rows pushed to a producer that doesn't are delivered by the time push returns.
+	 */
+	public boolean completesRows() {
+		return false;
+	}
+
 	public StoppableTask getStoppableTask() {
 		return null;
 	}
@@ -26,10 +26,10 @@ public abstract class AbstractProfilingProducer extends AbstractProducer {
 		if ( this.startTime == 0)
 			this.startTime = System.currentTimeMillis();
 
-		String value = r.toJSON();
+		byte[] value = r.shouldOutput(outputConfig) ? serializer.serialize(r) : null;
 
 		if (value != null) {
-			nullOutputStream.write(value.getBytes());
+			nullOutputStream.write(value);
 		}
 
 		this.count++;
@@ -0,0 +1,42 @@
+package com.zendesk.maxwell.producer;
+
+/* releases completions in the order rows were dispatched.
+
+   The InflightMessageList only tracks transaction commit rows, so on its
+   own a commit row acked early would store a position past rows of its
+   transaction that are still queued or unacked elsewhere.  Producers that
+   send over several lanes or streams register each row's CallbackCompleter
+   here as they dispatch it; a completer registered this way only completes
+   once every row registered before it has, which keeps the stored position
+   a low-watermark. */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+class CompletionSequencer {
+	private final LinkedHashMap<AbstractAsyncProducer.CallbackCompleter, Boolean> pending = new LinkedHashMap<>();
+
+	/* must be called in dispatch order */
+	synchronized void register(AbstractAsyncProducer.CallbackCompleter cc) {
+		pending.put(cc, false);
+	}
+
+	synchronized void completed(AbstractAsyncProducer.CallbackCompleter cc) {
+		// re-putting a key keeps its place
+		pending.put(cc, true);
+
+		Iterator<AbstractAsyncProducer.CallbackCompleter> it = pending.keySet().iterator();
+		while ( it.hasNext() ) {
+			AbstractAsyncProducer.CallbackCompleter head = it.next();
+			if ( !pending.get(head) )
+				break;
+
+			it.remove();
+			head.complete();
+		}
+	}
+
+	synchronized int size() {
+		return pending.size();
+	}
+}
@@ -0,0 +1,22 @@
+package com.zendesk.maxwell.producer;
+
+public enum EncryptionCipher {
+	AES_CBC("AES/CBC/PKCS5PADDING", 16),
+	AES_GCM("AES/GCM/NoPadding", 12);
+
+	public final String transformation;
+	public final int ivLength;
+
+	EncryptionCipher(String transformation, int ivLength) {
+		this.transformation = transformation;
+		this.ivLength = ivLength;
+	}
+
+	public static EncryptionCipher forTransformation(String transformation) {
+		for ( EncryptionCipher c : values() ) {
+			if ( c.transformation.equalsIgnoreCase(transformation) )
+				return c;
+		}
+		throw new IllegalArgumentException("unsupported cipher: " + transformation);
+	}
+}
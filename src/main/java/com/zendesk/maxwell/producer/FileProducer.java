@@ -1,32 +1,222 @@
 package com.zendesk.maxwell.producer;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+/* appends rows, one per line, to output_file.
+
+   Writes go through a buffer into a FileChannel, which is forced to disk as
+   a group every file_sync_interval_ms (or at every transaction commit when
+   that's 0).  The binlog position is only stored once the rows before it
+   have been synced, so a crash can't lose rows maxwell considers written.
 
+   With file_rotate_bytes or file_rotate_interval_ms set, a full segment is
+   synced, closed and renamed to "output_file.<timestamp>" (with a "-<n>"
+   suffix should that name be taken), and a fresh output_file is started.
+   Segments may be compressed with gzip or lz4; since every sync flushes the
+   compressor, a segment cut short by a crash still decompresses up to its
+   last sync.  A compressed output_file left over from an earlier run is
+   rotated away on startup rather than appended to, which would leave a
+   second compressed stream glued onto the first. */
+
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+public class FileProducer extends AbstractProducer implements StoppableTask {
+	static final Logger LOGGER = LoggerFactory.getLogger(FileProducer.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final byte[] NEWLINE = { '\n' };
 
-public class FileProducer extends AbstractProducer {
-	private final File file;
-	private final FileWriter fileWriter;
+	static class Segment {
+		final FileChannel channel;
+		final OutputStream out;
+		final long openedAtMS;
+		long bytesWritten;
+
+		Segment(Path path, String compression) throws IOException {
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			this.out = compressedStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), compression);
+			this.openedAtMS = System.currentTimeMillis();
+			this.bytesWritten = 0;
+		}
+
+		private static OutputStream compressedStream(OutputStream out, String compression) throws IOException {
+			switch ( compression ) {
+				case "gzip":
+					return new GZIPOutputStream(out, BUFFER_SIZE, true);
+				case "lz4":
+					return new LZ4BlockOutputStream(out, BUFFER_SIZE, LZ4Factory.fastestInstance().fastCompressor(),
+						XXHashFactory.fastestInstance().newStreamingHash32(0x9747b28c).asChecksum(), true);
+				default:
+					return out;
+			}
+		}
+
+		void write(byte[] row) throws IOException {
+			out.write(row);
+			out.write(NEWLINE);
+			bytesWritten += row.length + 1;
+		}
+
+		void sync() throws IOException {
+			out.flush();
+			channel.force(false);
+		}
+
+		void close() throws IOException {
+			out.close(); // finishes the compressed stream and closes the channel
+		}
+	}
+
+	private final Path path;
+	private final String compression;
+	private final long syncIntervalMS;
+	private final long rotateBytes;
+	private final long rotateIntervalMS;
+	private final ScheduledExecutorService syncer;
+	private Segment segment;
+	private Position unsyncedPosition;
 
 	public FileProducer(MaxwellContext context, String filename) throws IOException {
 		super(context);
-		this.file = new File(filename);
-		this.fileWriter = new FileWriter(this.file, true);
+
+		MaxwellConfig config = context.getConfig();
+		this.path = Paths.get(filename);
+		this.compression = config.fileCompression;
+		this.syncIntervalMS = config.fileSyncIntervalMS;
+		this.rotateBytes = config.fileRotateBytes;
+		this.rotateIntervalMS = config.fileRotateIntervalMS;
+
+		if ( !compression.equals("none") && Files.exists(path) && Files.size(path) > 0 )
+			moveAside();
+		this.segment = new Segment(path, compression);
+
+		if ( syncIntervalMS > 0 ) {
+			this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "maxwell-file-sync");
+				t.setDaemon(true);
+				return t;
+			});
+			this.syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMS, syncIntervalMS, TimeUnit.MILLISECONDS);
+		} else {
+			this.syncer = null;
+		}
+	}
+
+	@Override
+	public synchronized void push(RowMap r) throws Exception {
+		write(r);
+		if ( syncIntervalMS == 0 && unsyncedPosition != null )
+			sync();
 	}
 
+	/* with no sync interval, a batch's transactions are synced together once it's all written */
 	@Override
-	public void push(RowMap r) throws Exception {
-		String output = r.toJSON(outputConfig);
+	public synchronized void pushBatch(List<RowMap> rows) throws Exception {
+		for ( RowMap r : rows )
+			write(r);
+		if ( syncIntervalMS == 0 && unsyncedPosition != null )
+			sync();
+	}
+
+	private void write(RowMap r) throws Exception {
+		String output = r.shouldOutput(outputConfig) ? serializer.serializeText(r) : null;
 
 		if ( output != null ) {
-			this.fileWriter.write(r.toJSON(outputConfig));
-			this.fileWriter.write('\n');
-			this.fileWriter.flush();
+			if ( isSegmentFull() )
+				rotate();
+
+			segment.write(output.getBytes(StandardCharsets.UTF_8));
+			this.succeededMessageCount.inc();
+			this.succeededMessageMeter.mark();
+		}
+
+		if ( r.isTXCommit() )
+			unsyncedPosition = r.getNextPosition();
+	}
+
+	private boolean isSegmentFull() {
+		if ( segment.bytesWritten == 0 )
+			return false;
+
+		return (rotateBytes > 0 && segment.bytesWritten >= rotateBytes)
+			|| (rotateIntervalMS > 0 && System.currentTimeMillis() - segment.openedAtMS >= rotateIntervalMS);
+	}
+
+	private void rotate() throws IOException {
+		sync();
+		segment.close();
+		moveAside();
+		segment = new Segment(path, compression);
+	}
+
+	private void moveAside() throws IOException {
+		String base = path.toString() + "." + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+		Path rotated = Paths.get(base);
+		for ( int n = 1; Files.exists(rotated); n++ )
+			rotated = Paths.get(base + "-" + n);
+
+		// no REPLACE_EXISTING: should another process grab the name in between, fail rather than overwrite
+		Files.move(path, rotated);
+		LOGGER.info("rotated " + path + " to " + rotated);
+	}
+
+	synchronized void sync() throws IOException {
+		segment.sync();
+
+		if ( unsyncedPosition != null ) {
+			context.setPosition(unsyncedPosition);
+			unsyncedPosition = null;
 		}
+	}
 
-		context.setPosition(r);
+	private void syncQuietly() {
+		try {
+			sync();
+		} catch ( IOException e ) {
+			context.terminate(e);
+		}
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this;
 	}
+
+	@Override
+	public synchronized void requestStop() throws Exception {
+		if ( syncer != null )
+			syncer.shutdown();
+
+		sync();
+		segment.close();
+	}
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException { }
 }
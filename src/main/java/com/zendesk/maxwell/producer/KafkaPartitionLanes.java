@@ -0,0 +1,121 @@
+package com.zendesk.maxwell.producer;
+
+/* shards kafka sends across N threads by (topic, partition).  Every
+   (topic, partition) pair always maps to the same lane, so per-partition
+   ordering is the same as in single-threaded mode.
+
+   Acknowledgements from kafka may arrive in any order across lanes; rows
+   are registered with a CompletionSequencer as they're dispatched, so a
+   commit row only completes once every row dispatched before it has been
+   acked -- the checkpoint stays a global low-watermark.
+   */
+
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import com.zendesk.maxwell.util.StoppableTaskState;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class KafkaPartitionLanes implements StoppableTask {
+	static final Logger LOGGER = LoggerFactory.getLogger(KafkaPartitionLanes.class);
+
+	static class LaneItem {
+		final String topic;
+		final int partition;
+		final RowMap row;
+		final AbstractAsyncProducer.CallbackCompleter cc;
+
+		LaneItem(String topic, int partition, RowMap row, AbstractAsyncProducer.CallbackCompleter cc) {
+			this.topic = topic;
+			this.partition = partition;
+			this.row = row;
+			this.cc = cc;
+		}
+	}
+
+	private class Lane implements Runnable {
+		private final ArrayBlockingQueue<LaneItem> queue = new ArrayBlockingQueue<>(LANE_CAPACITY);
+
+		@Override
+		public void run() {
+			try {
+				while ( taskState.isRunning() ) {
+					LaneItem item = queue.poll(100, TimeUnit.MILLISECONDS);
+					if ( item == null )
+						continue;
+
+					ProducerRecord<String, byte[]> record = worker.makeProducerRecord(item.topic, item.partition, item.row);
+					worker.sendAsync(record, worker.makeCallback(record, item.row, item.cc));
+				}
+			} catch ( InterruptedException e ) {
+				// shutting down
+			} catch ( Exception e ) {
+				if ( taskState.isRunning() )
+					context.terminate(e);
+			} finally {
+				laneStopped();
+			}
+		}
+	}
+
+	private static final int LANE_CAPACITY = 100;
+
+	private final MaxwellContext context;
+	private final MaxwellKafkaProducerWorker worker;
+	private final Lane[] lanes;
+	private final CompletionSequencer sequencer;
+	private final StoppableTaskState taskState;
+	private int runningLanes;
+
+	KafkaPartitionLanes(MaxwellContext context, int numLanes, MaxwellKafkaProducerWorker worker) {
+		this.context = context;
+		this.worker = worker;
+		this.sequencer = new CompletionSequencer();
+		this.taskState = new StoppableTaskState("KafkaPartitionLanes");
+		this.lanes = new Lane[numLanes];
+		this.runningLanes = numLanes;
+
+		for ( int i = 0; i < numLanes; i++ ) {
+			lanes[i] = new Lane();
+			Thread thread = new Thread(lanes[i], "maxwell-kafka-lane-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		LOGGER.info("Sending to kafka over " + numLanes + " partition lanes");
+	}
+
+	static int laneFor(String topic, int partition, int numLanes) {
+		if ( numLanes < 1 )
+			throw new IllegalArgumentException("numLanes must be at least 1, got " + numLanes);
+		return Math.abs((31 * topic.hashCode() + partition) % numLanes);
+	}
+
+	/* must be called from a single thread, in row order */
+	void dispatch(String topic, int partition, RowMap r, AbstractAsyncProducer.CallbackCompleter cc) throws InterruptedException {
+		cc.sequenceBy(sequencer);
+		lanes[laneFor(topic, partition, lanes.length)].queue.put(new LaneItem(topic, partition, r, cc));
+	}
+
+	private synchronized void laneStopped() {
+		if ( --runningLanes == 0 )
+			taskState.stopped();
+	}
+
+	@Override
+	public void requestStop() {
+		taskState.requestStop();
+	}
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException {
+		// lanes poll their queues and notice the stop request on their own
+		taskState.awaitStop(null, timeout);
+	}
+}
@@ -0,0 +1,107 @@
+package com.zendesk.maxwell.producer;
+
+/* in transactional mode, maxwell writes its binlog position into a kafka
+   topic as part of every kafka transaction it commits.  Since the marker
+   and the rows commit or abort together, the last committed marker is
+   exactly where replication has to resume after a restart.
+
+   Markers for every client_id go to partition 0, keyed by client_id; the
+   topic is best created with a single partition and cleanup.policy=compact.
+   */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+class KafkaPositionTopic {
+	static final Logger LOGGER = LoggerFactory.getLogger(KafkaPositionTopic.class);
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private final String topic;
+	private final String clientID;
+
+	KafkaPositionTopic(String topic, String clientID) {
+		this.topic = topic;
+		this.clientID = clientID;
+	}
+
+	ProducerRecord<String, byte[]> makeRecord(Position position) throws IOException {
+		return new ProducerRecord<>(topic, 0, clientID, encode(position).getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String encode(Position position) throws IOException {
+		BinlogPosition binlog = position.getBinlogPosition();
+		Map<String, Object> m = new LinkedHashMap<>();
+		m.put("file", binlog.getFile());
+		m.put("offset", binlog.getOffset());
+		m.put("gtid_set", binlog.getGtidSetStr());
+		m.put("heartbeat", position.getLastHeartbeatRead());
+		return mapper.writeValueAsString(m);
+	}
+
+	static Position decode(String json) throws IOException {
+		Map<?, ?> m = mapper.readValue(json, Map.class);
+		BinlogPosition binlog = BinlogPosition.at(
+			(String) m.get("gtid_set"),
+			((Number) m.get("offset")).longValue(),
+			(String) m.get("file")
+		);
+		return new Position(binlog, ((Number) m.get("heartbeat")).longValue());
+	}
+
+	/* read the position from the last committed marker for our client_id, or null if there isn't one */
+	Position readCommitted(Properties kafkaProperties) throws IOException {
+		Properties consumerProperties = new Properties();
+		for ( String k : kafkaProperties.stringPropertyNames() ) {
+			if ( k.equals("bootstrap.servers") || k.startsWith("security.") || k.startsWith("ssl.") || k.startsWith("sasl.") )
+				consumerProperties.setProperty(k, kafkaProperties.getProperty(k));
+		}
+		consumerProperties.setProperty("isolation.level", "read_committed");
+		consumerProperties.setProperty("enable.auto.commit", "false");
+
+		String latest = null;
+		try ( KafkaConsumer<String, String> consumer =
+			      new KafkaConsumer<>(consumerProperties, new StringDeserializer(), new StringDeserializer()) ) {
+			List<PartitionInfo> partitions = consumer.partitionsFor(topic);
+			if ( partitions == null || partitions.isEmpty() )
+				return null;
+
+			TopicPartition tp = new TopicPartition(topic, 0);
+			consumer.assign(Collections.singletonList(tp));
+			consumer.seekToBeginning(Collections.singletonList(tp));
+
+			// for read_committed consumers this is the last stable offset
+			long end = consumer.endOffsets(Collections.singletonList(tp)).get(tp);
+
+			while ( consumer.position(tp) < end ) {
+				for ( ConsumerRecord<String, String> record : consumer.poll(1000L) ) {
+					if ( clientID.equals(record.key()) )
+						latest = record.value();
+				}
+			}
+		}
+
+		if ( latest == null )
+			return null;
+
+		Position position = decode(latest);
+		LOGGER.info("Read committed position from kafka topic '" + topic + "': " + position);
+		return position;
+	}
+}
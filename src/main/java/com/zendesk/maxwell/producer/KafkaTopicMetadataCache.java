@@ -0,0 +1,88 @@
+package com.zendesk.maxwell.producer;
+
+/* caches the partition count of each topic we produce to.
+
+   The first lookup of a topic goes to the kafka client and blocks; after
+   that the cached count is returned and, once it is older than the refresh
+   interval, re-fetched on a background thread so that the producer never
+   waits on stale metadata.  A change in partition count is logged, since
+   it changes which partition a given key hashes to.
+   */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+class KafkaTopicMetadataCache {
+	static final Logger LOGGER = LoggerFactory.getLogger(KafkaTopicMetadataCache.class);
+
+	private static class Entry {
+		final int numPartitions;
+		final long fetchedAtMS;
+		volatile boolean refreshing;
+
+		Entry(int numPartitions, long fetchedAtMS) {
+			this.numPartitions = numPartitions;
+			this.fetchedAtMS = fetchedAtMS;
+		}
+	}
+
+	private final Function<String, Integer> lookup;
+	private final long refreshIntervalMS;
+	private final ConcurrentHashMap<String, Entry> entries;
+	private final ExecutorService refresher;
+
+	KafkaTopicMetadataCache(Function<String, Integer> lookup, long refreshIntervalMS) {
+		this.lookup = lookup;
+		this.refreshIntervalMS = refreshIntervalMS;
+		this.entries = new ConcurrentHashMap<>();
+		this.refresher = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "maxwell-kafka-metadata");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	int getNumPartitions(String topic) {
+		Entry e = entries.get(topic);
+		if ( e == null )
+			return fetch(topic, null).numPartitions;
+
+		if ( refreshIntervalMS > 0 && !e.refreshing && System.currentTimeMillis() - e.fetchedAtMS > refreshIntervalMS ) {
+			e.refreshing = true;
+			refresher.submit(() -> refresh(topic, e));
+		}
+
+		return e.numPartitions;
+	}
+
+	private void refresh(String topic, Entry previous) {
+		try {
+			fetch(topic, previous);
+		} catch ( Exception ex ) {
+			LOGGER.error("Failed to refresh partition count for topic '" + topic + "': " + ex.getLocalizedMessage());
+			previous.refreshing = false;
+		}
+	}
+
+	private Entry fetch(String topic, Entry previous) {
+		int numPartitions = lookup.apply(topic);
+		Entry e = new Entry(numPartitions, System.currentTimeMillis());
+
+		if ( previous != null && previous.numPartitions != numPartitions ) {
+			LOGGER.warn("Partition count for topic '" + topic + "' changed from "
+				+ previous.numPartitions + " to " + numPartitions);
+		}
+
+		entries.put(topic, e);
+		return e;
+	}
+
+	void close() {
+		refresher.shutdownNow();
+	}
+}
@@ -0,0 +1,344 @@
+package com.zendesk.maxwell.producer;
+
+import com.codahale.metrics.Gauge;
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.producer.grpc.RowStreamProtocol;
+import com.zendesk.maxwell.producer.grpc.RowStreamServer;
+import com.zendesk.maxwell.producer.partitioners.MaxwellGrpcPartitioner;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import com.zendesk.maxwell.util.StoppableTaskState;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MaxwellGrpcProducer extends AbstractProducer {
+	private final ArrayBlockingQueue<RowMap> queue;
+	private final MaxwellGrpcProducerWorker worker;
+
+	public MaxwellGrpcProducer(MaxwellContext context) {
+		super(context);
+		this.queue = new ArrayBlockingQueue<>(100);
+		this.worker = new MaxwellGrpcProducerWorker(context, this.queue);
+		Thread thread = new Thread(this.worker, "maxwell-grpc-worker");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void push(RowMap r) throws Exception {
+		this.queue.put(r);
+	}
+
+	@Override
+	public boolean completesRows() {
+		return worker.completesRows();
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this.worker;
+	}
+}
+
+/* streams rows to a service implementing grpc.RowStreamProtocol over
+   grpc_streams long-lived bidirectional calls on one channel.
+
+   Rows are routed to a stream by producer_partition_by and collected into
+   per-stream batches of up to grpc_batch_size rows, which go out when full or
+   when grpc_linger_ms has passed since the stream's oldest unsent row.  A
+   stream whose transport isn't ready for more holds the worker back.  The
+   server acks each batch, and its rows complete in the order they were
+   dispatched across all streams, so a commit acked on one stream can't store
+   its position while earlier rows are still unacked on another. */
+class MaxwellGrpcProducerWorker extends AbstractAsyncProducer implements Runnable, StoppableTask {
+	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellGrpcProducer.class);
+
+	private static final long READY_WAIT_MS = 100;
+
+	private class RowStream implements ClientResponseObserver<RowStreamProtocol.Batch, RowStreamProtocol.Ack> {
+		private final int index;
+		private final ConcurrentHashMap<Long, List<CallbackCompleter>> outstanding;
+		private ClientCallStreamObserver<RowStreamProtocol.Batch> requests;
+		private boolean closed;
+		private List<byte[]> rows;
+		private List<CallbackCompleter> completers;
+		private long oldestUnsentAtMS;
+
+		RowStream(int index) {
+			this.index = index;
+			this.outstanding = new ConcurrentHashMap<>();
+			this.rows = new ArrayList<>(batchSize);
+			this.completers = new ArrayList<>(batchSize);
+		}
+
+		@Override
+		public void beforeStart(ClientCallStreamObserver<RowStreamProtocol.Batch> requests) {
+			this.requests = requests;
+			requests.setOnReadyHandler(this::ready);
+		}
+
+		private synchronized void ready() {
+			notifyAll();
+		}
+
+		private synchronized void awaitReady() throws InterruptedException {
+			while ( !requests.isReady() ) {
+				if ( !taskState.isRunning() )
+					throw new InterruptedException("grpc producer stopped while waiting for stream " + index);
+				wait(READY_WAIT_MS);
+			}
+		}
+
+		boolean isEmpty() {
+			return rows.isEmpty();
+		}
+
+		/* when this stream's unsent rows have to go out */
+		long deadlineMS() {
+			return oldestUnsentAtMS + lingerMS;
+		}
+
+		void add(byte[] payload, CallbackCompleter cc) throws InterruptedException {
+			if ( rows.isEmpty() )
+				oldestUnsentAtMS = System.currentTimeMillis();
+
+			rows.add(payload);
+			completers.add(cc);
+			pendingRows.incrementAndGet();
+			if ( rows.size() >= batchSize )
+				flush();
+		}
+
+		void flush() throws InterruptedException {
+			if ( rows.isEmpty() )
+				return;
+
+			long id = nextBatchId++;
+			outstanding.put(id, completers);
+			send(new RowStreamProtocol.Batch(id, rows));
+
+			rows = new ArrayList<>(batchSize);
+			completers = new ArrayList<>(batchSize);
+		}
+
+		/* the request observer isn't thread-safe: onNext and onCompleted both go through this stream's lock */
+		private synchronized void send(RowStreamProtocol.Batch batch) throws InterruptedException {
+			awaitReady();
+			if ( closed )
+				throw new InterruptedException("grpc stream " + index + " is closed");
+			requests.onNext(batch);
+		}
+
+		synchronized void close() {
+			if ( requests == null || closed )
+				return;
+
+			closed = true;
+			requests.onCompleted();
+		}
+
+		@Override
+		public void onNext(RowStreamProtocol.Ack ack) {
+			List<CallbackCompleter> acked = outstanding.remove(ack.id);
+			if ( acked == null ) {
+				LOGGER.warn("stream " + index + " got an ack for unknown batch " + ack.id);
+				return;
+			}
+
+			pendingRows.addAndGet(-acked.size());
+			if ( ack.isError() )
+				failed(acked, "batch " + ack.id + " rejected: " + ack.error);
+			else
+				succeeded(acked);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			if ( !taskState.isRunning() )
+				return;
+
+			LOGGER.error("grpc stream " + index + " failed with " + outstanding.size() + " batches outstanding", t);
+			context.terminate(new RuntimeException(t));
+		}
+
+		@Override
+		public void onCompleted() {
+			if ( !taskState.isRunning() )
+				return;
+
+			context.terminate(new IOException("grpc server closed stream " + index));
+		}
+	}
+
+	private final ManagedChannel channel;
+	private final MaxwellGrpcPartitioner partitioner;
+	private final RowStream[] streams;
+	private final int batchSize;
+	private final long lingerMS;
+	private final ArrayBlockingQueue<RowMap> queue;
+	private final StoppableTaskState taskState;
+	private final AtomicInteger pendingRows;
+	private final CompletionSequencer sequencer = new CompletionSequencer();
+	private long nextBatchId;
+	private Thread thread;
+
+	public MaxwellGrpcProducerWorker(MaxwellContext context, ArrayBlockingQueue<RowMap> queue) {
+		super(context);
+
+		MaxwellConfig config = context.getConfig();
+		this.partitioner = new MaxwellGrpcPartitioner(config.producerPartitionKey, config.producerPartitionColumns, config.producerPartitionFallback);
+		this.batchSize = config.grpcBatchSize;
+		this.lingerMS = config.grpcLingerMS;
+		this.queue = queue;
+		this.taskState = new StoppableTaskState("MaxwellGrpcProducerWorker");
+		this.pendingRows = new AtomicInteger();
+		this.nextBatchId = 1;
+		this.channel = buildChannel(config);
+
+		this.streams = new RowStream[config.grpcStreams];
+		for ( int i = 0; i < streams.length; i++ ) {
+			streams[i] = new RowStream(i);
+			ClientCalls.asyncBidiStreamingCall(channel.newCall(RowStreamProtocol.PUBLISH_METHOD, CallOptions.DEFAULT), streams[i]);
+		}
+
+		Metrics metrics = context.getMetrics();
+		metrics.register(metrics.metricName("grpc", "pending_rows"), (Gauge<Integer>) pendingRows::get);
+	}
+
+	static ManagedChannel buildChannel(MaxwellConfig config) {
+		if ( config.grpcTarget.startsWith(RowStreamServer.INPROCESS_PREFIX) )
+			return InProcessChannelBuilder.forName(config.grpcTarget.substring(RowStreamServer.INPROCESS_PREFIX.length())).build();
+
+		ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forTarget(config.grpcTarget);
+		if ( !config.grpcTls )
+			builder.usePlaintext(true);
+		return builder.build();
+	}
+
+	@Override
+	public void run() {
+		this.thread = Thread.currentThread();
+		while ( true ) {
+			try {
+				RowMap row;
+				long deadlineMS = nextDeadlineMS();
+				if ( deadlineMS == Long.MAX_VALUE ) {
+					row = queue.take();
+				} else {
+					// once a stream's linger is up, send its batch before taking anything else on
+					long wait = deadlineMS - System.currentTimeMillis();
+					if ( lingerMS == 0 )
+						row = queue.poll();
+					else
+						row = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+
+					if ( row == null ) {
+						flushExpired();
+						continue;
+					}
+				}
+
+				if ( !taskState.isRunning() ) {
+					taskState.stopped();
+					return;
+				}
+				this.push(row);
+			} catch ( Exception e ) {
+				taskState.stopped();
+				context.terminate(e);
+				return;
+			}
+		}
+	}
+
+	/* the earliest deadline of any stream with unsent rows, or Long.MAX_VALUE if there are none */
+	private long nextDeadlineMS() {
+		long deadlineMS = Long.MAX_VALUE;
+		for ( RowStream stream : streams ) {
+			if ( !stream.isEmpty() )
+				deadlineMS = Math.min(deadlineMS, stream.deadlineMS());
+		}
+		return deadlineMS;
+	}
+
+	private void flushExpired() throws InterruptedException {
+		long now = System.currentTimeMillis();
+		for ( RowStream stream : streams ) {
+			if ( lingerMS == 0 || stream.deadlineMS() <= now )
+				stream.flush();
+		}
+	}
+
+	@Override
+	public void sendAsync(RowMap r, CallbackCompleter cc) throws Exception {
+		cc.sequenceBy(sequencer);
+
+		byte[] payload = serializer.serialize(r);
+		if ( payload == null ) {
+			cc.markCompleted();
+			return;
+		}
+
+		streams[partitioner.getStream(r, streams.length)].add(payload, cc);
+
+		if ( LOGGER.isDebugEnabled() )
+			LOGGER.debug("->  " + serializer.toDebugString(payload) + "  " + r.getNextPosition());
+	}
+
+	private void succeeded(List<CallbackCompleter> completers) {
+		for ( CallbackCompleter cc : completers ) {
+			this.succeededMessageCount.inc();
+			this.succeededMessageMeter.mark();
+			cc.markCompleted();
+		}
+	}
+
+	private void failed(List<CallbackCompleter> completers, String reason) {
+		this.failedMessageCount.inc(completers.size());
+		this.failedMessageMeter.mark(completers.size());
+		LOGGER.error(reason);
+
+		if ( !context.getConfig().ignoreProducerError ) {
+			context.terminate(new RuntimeException(reason));
+		} else {
+			for ( CallbackCompleter cc : completers )
+				cc.markCompleted();
+		}
+	}
+
+	@Override
+	public void requestStop() {
+		taskState.requestStop();
+		for ( RowStream stream : streams )
+			stream.close();
+		channel.shutdown();
+	}
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException {
+		taskState.awaitStop(thread, timeout);
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this;
+	}
+}
@@ -2,6 +2,7 @@ package com.zendesk.maxwell.producer;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.producer.partitioners.MaxwellKafkaPartitioner;
 import com.zendesk.maxwell.replication.Position;
@@ -12,16 +13,24 @@ import com.zendesk.maxwell.util.StoppableTask;
 import com.zendesk.maxwell.util.StoppableTaskState;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.ProducerFencedException;
 import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 class KafkaCallback implements Callback {
@@ -77,7 +86,9 @@ class KafkaCallback implements Callback {
 			}
 		}
 
-		cc.markCompleted();
+		// in transactional mode rows are completed once their kafka transaction commits
+		if ( cc != null )
+			cc.markCompleted();
 	}
 }
 
@@ -99,6 +110,11 @@ public class MaxwellKafkaProducer extends AbstractProducer {
 		this.queue.put(r);
 	}
 
+	@Override
+	public boolean completesRows() {
+		return worker.completesRows();
+	}
+
 	@Override
 	public StoppableTask getStoppableTask() {
 		return this.worker;
@@ -113,17 +129,31 @@ public class MaxwellKafkaProducer extends AbstractProducer {
 class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnable, StoppableTask {
 	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellKafkaProducer.class);
 
-	private final KafkaProducer<String, String> kafka;
+	private final Producer<String, byte[]> kafka;
 	private String topic;
 	private final String ddlTopic;
 	private final MaxwellKafkaPartitioner partitioner;
 	private final MaxwellKafkaPartitioner ddlPartitioner;
 	private final KeyFormat keyFormat;
-	private final boolean interpolateTopic;
+	private final TopicInterpolator topicInterpolator;
+	private final KafkaTopicMetadataCache metadataCache;
 	private final ArrayBlockingQueue<RowMap> queue;
+	private final KafkaPartitionLanes lanes;
 	private Thread thread;
 	private StoppableTaskState taskState;
 
+	// transactional mode
+	// rows stop holding inflight slots only when their transaction commits; stay well clear of running out
+	private static final int MAX_UNCOMMITTED_ROWS = InflightMessageList.DEFAULT_CAPACITY / 2;
+	private final KafkaPositionTopic positionTopic;
+	private final int transactionBatchSize;
+	private final long transactionMaxMS;
+	private boolean inTransaction = false;
+	private int transactionsInBatch = 0;
+	private long transactionStartedAtMS;
+	private Position lastCommitPosition;
+	private final List<AbstractAsyncProducer.CallbackCompleter> uncommitted = new ArrayList<>();
+
 	public static MaxwellKafkaPartitioner makeDDLPartitioner(String partitionHashFunc, String partitionKey) {
 		if ( partitionKey.equals("table") ) {
 			return new MaxwellKafkaPartitioner(partitionHashFunc, "table", null, "database");
@@ -133,6 +163,12 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 	}
 
 	public MaxwellKafkaProducerWorker(MaxwellContext context, Properties kafkaProperties, String kafkaTopic, ArrayBlockingQueue<RowMap> queue) {
+		this(context, transactionalProperties(context.getConfig(), kafkaProperties), kafkaTopic, queue, null, null);
+	}
+
+	/* kafka and positionTopic are built from the config when null; tests pass their own */
+	MaxwellKafkaProducerWorker(MaxwellContext context, Properties kafkaProperties, String kafkaTopic, ArrayBlockingQueue<RowMap> queue,
+							   Producer<String, byte[]> kafka, KafkaPositionTopic positionTopic) {
 		super(context);
 
 		this.topic = kafkaTopic;
@@ -140,8 +176,25 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 			this.topic = "maxwell";
 		}
 
-		this.interpolateTopic = this.topic.contains("%{");
-		this.kafka = new KafkaProducer<>(kafkaProperties, new StringSerializer(), new StringSerializer());
+		this.topicInterpolator = new TopicInterpolator(this.topic, "%{database}", "%{table}");
+
+		MaxwellConfig config = context.getConfig();
+		if ( config.kafkaTransactional ) {
+			if ( positionTopic == null )
+				positionTopic = new KafkaPositionTopic(config.kafkaPositionTopic, config.clientID);
+			this.positionTopic = positionTopic;
+			this.transactionBatchSize = config.kafkaTransactionBatchSize;
+			this.transactionMaxMS = config.kafkaTransactionMaxMS;
+		} else {
+			this.positionTopic = null;
+			this.transactionBatchSize = 0;
+			this.transactionMaxMS = 0L;
+		}
+
+		if ( kafka == null )
+			kafka = new KafkaProducer<>(kafkaProperties, new StringSerializer(), new ByteArraySerializer());
+		this.kafka = kafka;
+		this.metadataCache = new KafkaTopicMetadataCache(this::fetchNumPartitions, context.getConfig().kafkaMetadataRefreshInterval);
 
 		String hash = context.getConfig().kafkaPartitionHash;
 		String partitionKey = context.getConfig().producerPartitionKey;
@@ -159,6 +212,41 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 
 		this.queue = queue;
 		this.taskState = new StoppableTaskState("MaxwellKafkaProducerWorker");
+
+		int numLanes = context.getConfig().kafkaPartitionWorkers;
+		if ( numLanes > 1 )
+			this.lanes = new KafkaPartitionLanes(context, numLanes, this);
+		else
+			this.lanes = null;
+
+		if ( this.positionTopic != null )
+			initTransactions(kafkaProperties);
+	}
+
+	private static Properties transactionalProperties(MaxwellConfig config, Properties kafkaProperties) {
+		if ( !config.kafkaTransactional )
+			return kafkaProperties;
+
+		Properties p = (Properties) kafkaProperties.clone();
+		p.setProperty("enable.idempotence", "true");
+		if ( !p.containsKey("transactional.id") )
+			p.setProperty("transactional.id", "maxwell-" + config.clientID);
+		return p;
+	}
+
+	private void initTransactions(Properties kafkaProperties) {
+		this.kafka.initTransactions();
+
+		/* the position committed alongside our last kafka transaction is the
+		   authoritative one; bring the mysql position store in line with it
+		   so that maxwell resumes right after the last committed transaction. */
+		try {
+			Position committed = positionTopic.readCommitted(kafkaProperties);
+			if ( committed != null )
+				context.getPositionStore().set(committed);
+		} catch ( IOException | SQLException e ) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	@Override
@@ -166,7 +254,17 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		this.thread = Thread.currentThread();
 		while ( true ) {
 			try {
-				RowMap row = queue.take();
+				RowMap row;
+				if ( positionTopic != null ) {
+					row = queue.poll(transactionMaxMS, TimeUnit.MILLISECONDS);
+					if ( row == null ) {
+						maybeCommitTransaction();
+						continue;
+					}
+				} else {
+					row = queue.take();
+				}
+
 				if (!taskState.isRunning()) {
 					taskState.stopped();
 					return;
@@ -180,7 +278,7 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		}
 	}
 
-	private Integer getNumPartitions(String topic) {
+	private Integer fetchNumPartitions(String topic) {
 		try {
 			return this.kafka.partitionsFor(topic).size(); //returns 1 for new topics
 		} catch (KafkaException e) {
@@ -189,52 +287,137 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		}
 	}
 
-	private String generateTopic(String topic, RowMap r){
-		if ( interpolateTopic )
-			return topic.replaceAll("%\\{database\\}", r.getDatabase()).replaceAll("%\\{table\\}", r.getTable());
-		else
-			return topic;
+	private int getNumPartitions(String topic) {
+		return this.metadataCache.getNumPartitions(topic);
+	}
+
+	private String generateTopic(RowMap r){
+		return topicInterpolator.generate(r.getDatabase(), r.getTable());
 	}
 
 	@Override
 	public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc) throws Exception {
-		ProducerRecord<String, String> record = makeProducerRecord(r);
+		String topic = getTopic(r);
+		int partition = getPartition(r, topic);
 
-		/* if debug logging isn't enabled, release the reference to `value`, which can ease memory pressure somewhat */
-		String value = KafkaCallback.LOGGER.isDebugEnabled() ? record.value() : null;
+		// with partition lanes, serialization and the send itself happen off this thread
+		if ( lanes != null ) {
+			lanes.dispatch(topic, partition, r, cc);
+			return;
+		}
 
-		KafkaCallback callback = new KafkaCallback(cc, r.getNextPosition(), record.key(), value,
-				this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
+		if ( positionTopic != null && !inTransaction ) {
+			kafka.beginTransaction();
+			inTransaction = true;
+			transactionStartedAtMS = System.currentTimeMillis();
+		}
+
+		ProducerRecord<String, byte[]> record = makeProducerRecord(topic, partition, r);
+		if ( positionTopic == null ) {
+			sendAsync(record, makeCallback(record, r, cc));
+			return;
+		}
+
+		// an acked row isn't delivered until its transaction commits, so it's completed then
+		sendAsync(record, makeCallback(record, r, null));
+		uncommitted.add(cc);
+
+		if ( r.isTXCommit() ) {
+			lastCommitPosition = r.getNextPosition();
+			transactionsInBatch++;
+			maybeCommitTransaction();
+		} else if ( uncommitted.size() >= MAX_UNCOMMITTED_ROWS ) {
+			/* a mysql transaction too big to wait for: commit its rows so far.  The marker
+			   stays at the last whole mysql transaction, so after a crash this one is resent. */
+			commitTransaction();
+		}
+	}
+
+	/* kafka transactions normally end on a mysql transaction boundary, once
+	   enough mysql transactions have been batched up or the batch has been
+	   open long enough. */
+	private void maybeCommitTransaction() throws IOException {
+		if ( !inTransaction || transactionsInBatch == 0 )
+			return;
+
+		boolean batchFull = transactionsInBatch >= transactionBatchSize || uncommitted.size() >= MAX_UNCOMMITTED_ROWS;
+		boolean batchExpired = System.currentTimeMillis() - transactionStartedAtMS >= transactionMaxMS;
+		if ( !batchFull && !batchExpired )
+			return;
 
-		sendAsync(record, callback);
+		commitTransaction();
 	}
 
-	void sendAsync(ProducerRecord<String, String> record, Callback callback) throws Exception {
+	private void commitTransaction() throws IOException {
+		if ( lastCommitPosition != null )
+			kafka.send(positionTopic.makeRecord(lastCommitPosition));
+		try {
+			kafka.commitTransaction();
+		} catch ( ProducerFencedException e ) {
+			// another producer with our transactional.id took over; nothing left to do but die.
+			throw e;
+		} catch ( KafkaException e ) {
+			// the rows stay incomplete, so the stored position never moves past them
+			kafka.abortTransaction();
+			throw e;
+		}
+
+		inTransaction = false;
+		transactionsInBatch = 0;
+
+		// only now may the stored position move up to lastCommitPosition
+		for ( AbstractAsyncProducer.CallbackCompleter cc : uncommitted )
+			cc.markCompleted();
+		uncommitted.clear();
+	}
+
+	void sendAsync(ProducerRecord<String, byte[]> record, Callback callback) throws Exception {
 		kafka.send(record, callback);
 	}
 
-	ProducerRecord<String, String> makeProducerRecord(final RowMap r) throws Exception {
-		String key = r.pkToJson(keyFormat);
-		String value = r.toJSON(outputConfig);
-		ProducerRecord<String, String> record;
-		if (r instanceof DDLMap) {
-			record = new ProducerRecord<>(this.ddlTopic, this.ddlPartitioner.kafkaPartition(r, getNumPartitions(this.ddlTopic)), key, value);
-		} else {
-			String topic;
+	KafkaCallback makeCallback(ProducerRecord<String, byte[]> record, RowMap r, AbstractAsyncProducer.CallbackCompleter cc) {
+		/* if debug logging isn't enabled, release the reference to `value`, which can ease memory pressure somewhat */
+		String value = KafkaCallback.LOGGER.isDebugEnabled() ? serializer.toDebugString(record.value()) : null;
 
-			// javascript topic override
-			topic = r.getKafkaTopic();
-			if ( topic == null )
-				topic = generateTopic(this.topic, r);
+		return new KafkaCallback(cc, r.getNextPosition(), record.key(), value,
+				this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
+	}
 
-			record = new ProducerRecord<>(topic, this.partitioner.kafkaPartition(r, getNumPartitions(topic)), key, value);
-		}
-		return record;
+	String getTopic(RowMap r) {
+		if ( r instanceof DDLMap )
+			return this.ddlTopic;
+
+		// javascript topic override
+		String topic = r.getKafkaTopic();
+		if ( topic == null )
+			topic = generateTopic(r);
+		return topic;
+	}
+
+	int getPartition(RowMap r, String topic) {
+		if ( r instanceof DDLMap )
+			return this.ddlPartitioner.kafkaPartition(r, getNumPartitions(topic));
+		else
+			return this.partitioner.kafkaPartition(r, getNumPartitions(topic));
+	}
+
+	ProducerRecord<String, byte[]> makeProducerRecord(final RowMap r) throws Exception {
+		String topic = getTopic(r);
+		return makeProducerRecord(topic, getPartition(r, topic), r);
+	}
+
+	ProducerRecord<String, byte[]> makeProducerRecord(String topic, int partition, final RowMap r) throws Exception {
+		String key = serializer.serializeKey(r, keyFormat);
+		byte[] value = serializer.serialize(r);
+		return new ProducerRecord<>(topic, partition, key, value);
 	}
 
 	@Override
 	public void requestStop() {
 		taskState.requestStop();
+		if ( lanes != null )
+			lanes.requestStop();
+		metadataCache.close();
 		// TODO: set a timeout once we drop support for kafka 0.8
 		kafka.close();
 	}
@@ -242,10 +425,13 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 	@Override
 	public void awaitStop(Long timeout) throws TimeoutException {
 		taskState.awaitStop(thread, timeout);
+		if ( lanes != null )
+			lanes.awaitStop(timeout);
 	}
 
 	// force-close for tests.
 	public void close() {
+		metadataCache.close();
 		kafka.close();
 	}
 
@@ -11,8 +11,12 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.Metrics;
 import com.zendesk.maxwell.producer.partitioners.MaxwellKinesisPartitioner;
 import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.row.RowMap;
@@ -92,45 +96,83 @@ class KinesisCallback implements FutureCallback<UserRecordResult> {
 public class MaxwellKinesisProducer extends AbstractAsyncProducer {
 	private static final Logger logger = LoggerFactory.getLogger(MaxwellKinesisProducer.class);
 
+	private static final long BACKLOG_POLL_MS = 10;
+
 	private final MaxwellKinesisPartitioner partitioner;
 	private final KinesisProducer kinesisProducer;
 	private final String kinesisStream;
+	private final long maxOutstandingRecords;
+	private final Timer throttledTimer;
 
 	public MaxwellKinesisProducer(MaxwellContext context, String kinesisStream) {
 		super(context);
 
-		String partitionKey = context.getConfig().producerPartitionKey;
-		String partitionColumns = context.getConfig().producerPartitionColumns;
-		String partitionFallback = context.getConfig().producerPartitionFallback;
-		boolean kinesisMd5Keys = context.getConfig().kinesisMd5Keys;
-		this.partitioner = new MaxwellKinesisPartitioner(partitionKey, partitionColumns, partitionFallback, kinesisMd5Keys);
+		MaxwellConfig config = context.getConfig();
+		this.partitioner = new MaxwellKinesisPartitioner(config.producerPartitionKey, config.producerPartitionColumns, config.producerPartitionFallback, config.kinesisKeyHash);
 		this.kinesisStream = kinesisStream;
+		this.maxOutstandingRecords = config.kinesisMaxOutstandingRecords;
+		this.kinesisProducer = new KinesisProducer(buildConfiguration(config));
+
+		Metrics metrics = context.getMetrics();
+		metrics.register(metrics.metricName("kinesis", "outstanding_records"), (Gauge<Long>) () -> (long) kinesisProducer.getOutstandingRecordsCount());
+		this.throttledTimer = metrics.getRegistry().timer(metrics.metricName("kinesis", "backlog_wait"));
+	}
 
+	/* settings given in maxwell's config take precedence over the KPL properties file */
+	static KinesisProducerConfiguration buildConfiguration(MaxwellConfig config) {
+		KinesisProducerConfiguration kplConfig;
 		Path path = Paths.get("kinesis-producer-library.properties");
 		if(Files.exists(path) && Files.isRegularFile(path)) {
-			KinesisProducerConfiguration config = KinesisProducerConfiguration.fromPropertiesFile(path.toString());
-			this.kinesisProducer = new KinesisProducer(config);
+			kplConfig = KinesisProducerConfiguration.fromPropertiesFile(path.toString());
 		} else {
-			this.kinesisProducer = new KinesisProducer();
+			kplConfig = new KinesisProducerConfiguration();
+		}
+
+		if ( config.kinesisAggregationEnabled != null )
+			kplConfig.setAggregationEnabled(config.kinesisAggregationEnabled);
+		if ( config.kinesisAggregationMaxCount != null )
+			kplConfig.setAggregationMaxCount(config.kinesisAggregationMaxCount);
+		if ( config.kinesisAggregationMaxSize != null )
+			kplConfig.setAggregationMaxSize(config.kinesisAggregationMaxSize);
+		if ( config.kinesisRecordMaxBufferedTimeMS != null )
+			kplConfig.setRecordMaxBufferedTime(config.kinesisRecordMaxBufferedTimeMS);
+
+		return kplConfig;
+	}
+
+	/* the KPL buffers records without limit while kinesis throttles us; once
+	   its backlog passes kinesis_max_outstanding_records we stop feeding it
+	   (and, in turn, stop reading the binlog) until it has drained. */
+	private void waitForBacklog() throws InterruptedException {
+		if ( maxOutstandingRecords <= 0 || kinesisProducer.getOutstandingRecordsCount() <= maxOutstandingRecords )
+			return;
+
+		logger.warn("KPL has more than " + maxOutstandingRecords + " outstanding records, pausing until it catches up");
+		Timer.Context timer = throttledTimer.time();
+		try {
+			while ( kinesisProducer.getOutstandingRecordsCount() > maxOutstandingRecords )
+				Thread.sleep(BACKLOG_POLL_MS);
+		} finally {
+			timer.stop();
 		}
 	}
 
 	@Override
 	public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc) throws Exception {
 		String key = this.partitioner.getKinesisKey(r);
-		String value = r.toJSON(outputConfig);
-		int vsize = value.length();
+		byte[] payload = serializer.serialize(r);
+		int vsize = payload.length;
 
-		ByteBuffer encodedValue = ByteBuffer.wrap(value.getBytes("UTF-8"));
+		ByteBuffer encodedValue = ByteBuffer.wrap(payload);
 
-		// release the reference to ease memory pressure
-		if(!KinesisCallback.logger.isDebugEnabled()) {
-			value = null;
-		}
+		// only keep a loggable copy around when it'll be used
+		String value = KinesisCallback.logger.isDebugEnabled() ? serializer.toDebugString(payload) : null;
 
 		FutureCallback<UserRecordResult> callback = new KinesisCallback(cc, r.getNextPosition(), key, value,
 				this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
 
+		waitForBacklog();
+
 		try {
 			ListenableFuture<UserRecordResult> future = kinesisProducer.addUserRecord(kinesisStream, key, encodedValue);
 			Futures.addCallback(future, callback);
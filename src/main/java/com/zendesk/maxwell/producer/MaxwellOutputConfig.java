@@ -18,6 +18,7 @@ public class MaxwellOutputConfig {
 	public boolean outputDDL;
 	public List<Pattern> excludeColumns;
 	public EncryptionMode encryptionMode;
+	public EncryptionCipher encryptionCipher;
 	public String secretKey;
 	public boolean zeroDatesAsNull;
 
@@ -34,6 +35,7 @@ public class MaxwellOutputConfig {
 		this.zeroDatesAsNull = false;
 		this.excludeColumns = new ArrayList<>();
 		this.encryptionMode = EncryptionMode.ENCRYPT_NONE;
+		this.encryptionCipher = EncryptionCipher.AES_CBC;
 		this.secretKey = null;
 	}
 
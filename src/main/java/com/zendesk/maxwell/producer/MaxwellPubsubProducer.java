@@ -5,12 +5,16 @@ import com.codahale.metrics.Meter;
 import com.google.api.core.ApiFuture;
 import com.google.api.core.ApiFutureCallback;
 import com.google.api.core.ApiFutures;
+import com.google.api.gax.batching.BatchingSettings;
+import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.batching.FlowController;
 import com.google.cloud.pubsub.v1.Publisher;
 import com.google.protobuf.ByteString;
 import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.TopicName;
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
-import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.producer.partitioners.MaxwellPubsubPartitioner;
 import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.schema.ddl.DDLMap;
@@ -19,11 +23,12 @@ import com.zendesk.maxwell.util.StoppableTask;
 import com.zendesk.maxwell.util.StoppableTaskState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.threeten.bp.Duration;
 
 import java.io.IOException;
-import java.util.Properties;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 
 class PubsubCallback implements ApiFutureCallback<String> {
@@ -109,21 +114,41 @@ public class MaxwellPubsubProducer extends AbstractProducer {
     this.queue.put(r);
   }
 
+  @Override
+  public boolean completesRows() {
+    return worker.completesRows();
+  }
+
   @Override
   public StoppableTask getStoppableTask() {
     return this.worker;
   }
 }
 
+/* publishing is spread over pubsub_serializer_threads lanes, each of which
+   serializes its rows and hands them to the Publisher.  Rows are assigned
+   to lanes by their ordering key (see producer_partition_by), so rows that
+   share a key are published in the order they were read.  Batching and
+   flow control are left to the Publisher, configured by the pubsub_batch_*
+   and pubsub_flow_control_* options.  Acks arrive in any order across
+   lanes, so rows complete through a CompletionSequencer, in the order they
+   were read: a commit row can't store its position while rows read before
+   it are still being serialized or published in another lane. */
 class MaxwellPubsubProducerWorker
     extends AbstractAsyncProducer implements Runnable, StoppableTask {
   static final Logger LOGGER = LoggerFactory.getLogger(MaxwellPubsubProducerWorker.class);
 
+  static final String ORDERING_KEY_ATTRIBUTE = "ordering_key";
+
   private final String projectId;
   private Publisher pubsub;
   private final TopicName topic;
   private final TopicName ddlTopic;
   private Publisher ddlPubsub;
+  private final MaxwellPubsubPartitioner partitioner;
+  private final boolean includeOrderingKey;
+  private final ExecutorService[] lanes;
+  private final CompletionSequencer sequencer;
   private final ArrayBlockingQueue<RowMap> queue;
   private Thread thread;
   private StoppableTaskState taskState;
@@ -135,25 +160,56 @@ class MaxwellPubsubProducerWorker
                                      throws IOException {
     super(context);
 
+    MaxwellConfig config = context.getConfig();
+    BatchingSettings batchingSettings = buildBatchingSettings(config);
+
     this.projectId = pubsubProjectId;
     this.topic = TopicName.of(pubsubProjectId, pubsubTopic);
-    this.pubsub = Publisher.newBuilder(this.topic).build();
+    this.pubsub = Publisher.newBuilder(this.topic).setBatchingSettings(batchingSettings).build();
 
     if ( context.getConfig().outputConfig.outputDDL == true &&
          ddlPubsubTopic != pubsubTopic ) {
       this.ddlTopic = TopicName.of(pubsubProjectId, ddlPubsubTopic);
-      this.ddlPubsub = Publisher.newBuilder(this.ddlTopic).build();
+      this.ddlPubsub = Publisher.newBuilder(this.ddlTopic).setBatchingSettings(batchingSettings).build();
     } else {
       this.ddlTopic = this.topic;
       this.ddlPubsub = this.pubsub;
     }
 
-    Metrics metrics = context.getMetrics();
+    this.partitioner = new MaxwellPubsubPartitioner(config.producerPartitionKey, config.producerPartitionColumns, config.producerPartitionFallback);
+    this.includeOrderingKey = config.pubsubOrderingKey;
+    this.sequencer = new CompletionSequencer();
+    this.lanes = new ExecutorService[config.pubsubSerializerThreads];
+    for ( int i = 0; i < lanes.length; i++ ) {
+      final String name = "maxwell-pubsub-serializer-" + i;
+      lanes[i] = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+      });
+    }
 
     this.queue = queue;
     this.taskState = new StoppableTaskState("MaxwellPubsubProducerWorker");
   }
 
+  static BatchingSettings buildBatchingSettings(MaxwellConfig config) {
+    FlowControlSettings.Builder flowControl = FlowControlSettings.newBuilder()
+      .setLimitExceededBehavior(FlowController.LimitExceededBehavior.Block);
+
+    if ( config.pubsubFlowControlMaxMessages > 0 )
+      flowControl.setMaxOutstandingElementCount(config.pubsubFlowControlMaxMessages);
+    if ( config.pubsubFlowControlMaxBytes > 0 )
+      flowControl.setMaxOutstandingRequestBytes(config.pubsubFlowControlMaxBytes);
+
+    return BatchingSettings.newBuilder()
+      .setElementCountThreshold(config.pubsubBatchElementCount)
+      .setRequestByteThreshold(config.pubsubBatchBytes)
+      .setDelayThreshold(Duration.ofMillis(config.pubsubBatchDelayMS))
+      .setFlowControlSettings(flowControl.build())
+      .build();
+  }
+
   @Override
   public void run() {
     this.thread = Thread.currentThread();
@@ -174,33 +230,46 @@ class MaxwellPubsubProducerWorker
   }
 
   @Override
-  public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc)
+  public void sendAsync(final RowMap r, AbstractAsyncProducer.CallbackCompleter cc)
       throws Exception {
-    String message = r.toJSON(outputConfig);
-    ByteString data = ByteString.copyFromUtf8(message);
-    PubsubMessage pubsubMessage = PubsubMessage.newBuilder().setData(data).build();
+    final String orderingKey = partitioner.getOrderingKey(r);
+    cc.sequenceBy(sequencer);
+    ExecutorService lane = lanes[Math.abs(orderingKey.hashCode() % lanes.length)];
+
+    lane.execute(() -> {
+      try {
+        publish(r, orderingKey, cc);
+      } catch ( Exception e ) {
+        context.terminate(e);
+      }
+    });
+  }
 
-    if ( r instanceof DDLMap ) {
-	  ApiFuture<String> apiFuture = ddlPubsub.publish(pubsubMessage);
-	  PubsubCallback callback = new PubsubCallback(cc, r.getNextPosition(), message,
-			  this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
+  private void publish(RowMap r, String orderingKey, AbstractAsyncProducer.CallbackCompleter cc) throws Exception {
+    byte[] payload = serializer.serialize(r);
+    String message = PubsubCallback.LOGGER.isDebugEnabled() ? serializer.toDebugString(payload) : null;
 
-	  ApiFutures.addCallback(apiFuture, callback);
-    } else {
-	  ApiFuture<String> apiFuture = pubsub.publish(pubsubMessage);
-	  PubsubCallback callback = new PubsubCallback(cc, r.getNextPosition(), message,
-			  this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
+    PubsubMessage.Builder builder = PubsubMessage.newBuilder().setData(ByteString.copyFrom(payload));
+    if ( includeOrderingKey )
+      builder.putAttributes(ORDERING_KEY_ATTRIBUTE, orderingKey);
 
-	  ApiFutures.addCallback(apiFuture, callback);
-    }
+    Publisher publisher = r instanceof DDLMap ? ddlPubsub : pubsub;
+    ApiFuture<String> apiFuture = publisher.publish(builder.build());
+    PubsubCallback callback = new PubsubCallback(cc, r.getNextPosition(), message,
+        this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
+
+    ApiFutures.addCallback(apiFuture, callback);
   }
 
   @Override
   public void requestStop() throws Exception {
     taskState.requestStop();
+    for ( ExecutorService lane : lanes )
+      lane.shutdown();
+
     pubsub.shutdown();
 
-    if ( ddlPubsub != null ) {
+    if ( ddlPubsub != null && ddlPubsub != pubsub ) {
       ddlPubsub.shutdown();
     }
   }
@@ -1,104 +1,246 @@
 package com.zendesk.maxwell.producer;
 
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.util.StoppableTask;
+import com.zendesk.maxwell.util.StoppableTaskState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
-public class MaxwellRedisProducer extends AbstractProducer implements StoppableTask {
-	private static final Logger logger = LoggerFactory.getLogger(MaxwellRedisProducer.class);
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class MaxwellRedisProducer extends AbstractProducer {
+	private final ArrayBlockingQueue<RowMap> queue;
+	private final MaxwellRedisProducerWorker worker;
+
+	public MaxwellRedisProducer(MaxwellContext context, String redisPubChannel, String redisListKey, String redisType) {
+		super(context);
+		this.queue = new ArrayBlockingQueue<>(100);
+		this.worker = new MaxwellRedisProducerWorker(context, redisPubChannel, redisListKey, redisType, this.queue);
+		Thread thread = new Thread(this.worker, "maxwell-redis-worker");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void push(RowMap r) throws Exception {
+		this.queue.put(r);
+	}
+
+	@Override
+	public boolean completesRows() {
+		return worker.completesRows();
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this.worker;
+	}
+}
+
+/* rows are collected into batches of up to redis_batch_size, which are sent
+   as a single pipeline (one multi-value LPUSH, or a run of PUBLISHes) and
+   completed together once the pipeline syncs.  A batch goes out when it's
+   full, when redis_linger_ms has passed since its first row, or, with the
+   default linger of 0, as soon as no more rows are waiting. */
+class MaxwellRedisProducerWorker extends AbstractAsyncProducer implements Runnable, StoppableTask {
+	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellRedisProducer.class);
+
+	private static class PendingMessage {
+		final String message;
+		final CallbackCompleter cc;
+
+		PendingMessage(String message, CallbackCompleter cc) {
+			this.message = message;
+			this.cc = cc;
+		}
+	}
+
 	private final String channel;
 	private final String listkey;
 	private final String redistype;
-	private final Jedis jedis;
+	private final JedisPool pool;
+	private final int batchSize;
+	private final long lingerMS;
+	private final ArrayBlockingQueue<RowMap> queue;
+	private final List<PendingMessage> batch;
+	private long batchStartedAtMS;
+	private Thread thread;
+	private StoppableTaskState taskState;
 
-	public MaxwellRedisProducer(MaxwellContext context, String redisPubChannel, String redisListKey, String redisType) {
+	public MaxwellRedisProducerWorker(MaxwellContext context, String redisPubChannel, String redisListKey, String redisType, ArrayBlockingQueue<RowMap> queue) {
+		this(context, redisPubChannel, redisListKey, redisType, queue, makePool(context.getConfig()));
+	}
+
+	MaxwellRedisProducerWorker(MaxwellContext context, String redisPubChannel, String redisListKey, String redisType, ArrayBlockingQueue<RowMap> queue, JedisPool pool) {
 		super(context);
 
-		channel = redisPubChannel;
-		listkey = redisListKey;
-		redistype = redisType;
+		MaxwellConfig config = context.getConfig();
+		this.channel = redisPubChannel;
+		this.listkey = redisListKey;
+		this.redistype = redisType;
+		this.batchSize = config.redisBatchSize;
+		this.lingerMS = config.redisLingerMS;
+		this.pool = pool;
 
-		jedis = new Jedis(context.getConfig().redisHost, context.getConfig().redisPort);
-		jedis.connect();
-		if (context.getConfig().redisAuth != null) {
-			jedis.auth(context.getConfig().redisAuth);
-		}
-		if (context.getConfig().redisDatabase > 0) {
-			jedis.select(context.getConfig().redisDatabase);
-		}
+		this.queue = queue;
+		this.batch = new ArrayList<>(batchSize);
+		this.taskState = new StoppableTaskState("MaxwellRedisProducerWorker");
 	}
 
-	private void sendToRedis(String msg) {
-		switch (redistype) {
-			case "lpush":
-				jedis.lpush(this.listkey, msg);
-				break;
-			case "pubsub":
-			default:
-				jedis.publish(this.channel, msg);
-				break;
-		}
-		this.succeededMessageCount.inc();
-		this.succeededMessageMeter.mark();
+	private static JedisPool makePool(MaxwellConfig config) {
+		JedisPoolConfig poolConfig = new JedisPoolConfig();
+		poolConfig.setTestOnBorrow(true);
+		return new JedisPool(poolConfig, config.redisHost, config.redisPort, Protocol.DEFAULT_TIMEOUT, config.redisAuth, config.redisDatabase);
 	}
 
 	@Override
-	public void push(RowMap r) throws Exception {
-		if ( !r.shouldOutput(outputConfig) ) {
-			context.setPosition(r.getNextPosition());
-			return;
-		}
-
-		String msg = r.toJSON(outputConfig);
-		for (int cxErrors = 0; cxErrors < 2; cxErrors++) {
+	public void run() {
+		this.thread = Thread.currentThread();
+		while ( true ) {
 			try {
-				sendToRedis(msg);
-				break;
-			} catch (Exception e) {
-				if (e instanceof JedisConnectionException) {
-					logger.warn("lost connection to server, trying to reconnect...", e);
-					jedis.disconnect();
-					jedis.connect();
+				RowMap row;
+				if ( batch.isEmpty() ) {
+					row = queue.take();
 				} else {
-					this.failedMessageCount.inc();
-					this.failedMessageMeter.mark();
-					logger.error("Exception during put", e);
+					// once the batch's linger is up, send it before taking anything else on
+					long wait = batchStartedAtMS + lingerMS - System.currentTimeMillis();
+					if ( lingerMS == 0 )
+						row = queue.poll();
+					else
+						row = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
 
-					if (!context.getConfig().ignoreProducerError) {
-						throw new RuntimeException(e);
+					if ( row == null ) {
+						flush();
+						continue;
 					}
 				}
+
+				if ( !taskState.isRunning() ) {
+					taskState.stopped();
+					return;
+				}
+				this.push(row);
+			} catch ( Exception e ) {
+				taskState.stopped();
+				context.terminate(e);
+				return;
 			}
 		}
+	}
 
-		if (r.isTXCommit()) {
-			context.setPosition(r.getNextPosition());
+	@Override
+	public void sendAsync(RowMap r, CallbackCompleter cc) throws Exception {
+		if ( batch.isEmpty() )
+			batchStartedAtMS = System.currentTimeMillis();
+
+		batch.add(new PendingMessage(serializer.serializeText(r), cc));
+
+		if ( batch.size() >= batchSize )
+			flush();
+	}
+
+	private void flush() {
+		if ( batch.isEmpty() )
+			return;
+
+		for ( int cxErrors = 0; ; cxErrors++ ) {
+			try {
+				sendBatch();
+				break;
+			} catch ( JedisConnectionException e ) {
+				if ( cxErrors == 0 ) {
+					// the pool hands out a fresh connection on the retry
+					LOGGER.warn("lost connection to server, trying to reconnect...", e);
+					continue;
+				}
+				batchFailed(e);
+				break;
+			} catch ( Exception e ) {
+				batchFailed(e);
+				break;
+			}
 		}
 
-		if (logger.isDebugEnabled()) {
-			switch (redistype) {
+		// the next row starts a new batch, and with it a new linger deadline
+		batch.clear();
+		batchStartedAtMS = 0L;
+	}
+
+	private void sendBatch() {
+		try ( Jedis jedis = pool.getResource() ) {
+			Pipeline pipeline = jedis.pipelined();
+			switch ( redistype ) {
 				case "lpush":
-					logger.debug("->  queue:" + listkey + ", msg:" + msg);
+					String[] messages = new String[batch.size()];
+					for ( int i = 0; i < messages.length; i++ )
+						messages[i] = batch.get(i).message;
+					pipeline.lpush(this.listkey, messages);
 					break;
 				case "pubsub":
 				default:
-					logger.debug("->  channel:" + channel + ", msg:" + msg);
+					for ( PendingMessage m : batch )
+						pipeline.publish(this.channel, m.message);
 					break;
 			}
+			pipeline.sync();
+		}
+
+		for ( PendingMessage m : batch ) {
+			this.succeededMessageCount.inc();
+			this.succeededMessageMeter.mark();
+
+			if ( LOGGER.isDebugEnabled() ) {
+				switch ( redistype ) {
+					case "lpush":
+						LOGGER.debug("->  queue:" + listkey + ", msg:" + m.message);
+						break;
+					case "pubsub":
+					default:
+						LOGGER.debug("->  channel:" + channel + ", msg:" + m.message);
+						break;
+				}
+			}
+
+			m.cc.markCompleted();
+		}
+	}
+
+	private void batchFailed(Exception e) {
+		this.failedMessageCount.inc(batch.size());
+		this.failedMessageMeter.mark(batch.size());
+		LOGGER.error("Exception during put of " + batch.size() + " messages", e);
+
+		if ( !context.getConfig().ignoreProducerError ) {
+			context.terminate(new RuntimeException(e));
+			return;
 		}
+
+		for ( PendingMessage m : batch )
+			m.cc.markCompleted();
 	}
 
 	@Override
 	public void requestStop() {
-		jedis.close();
+		taskState.requestStop();
+		pool.close();
 	}
 
 	@Override
-	public void awaitStop(Long timeout) { }
+	public void awaitStop(Long timeout) throws TimeoutException {
+		taskState.awaitStop(thread, timeout);
+	}
 
 	@Override
 	public StoppableTask getStoppableTask() {
@@ -0,0 +1,183 @@
+package com.zendesk.maxwell.producer;
+
+/* writes rows into a memory-mapped ring file (see ipc.RingFile) for
+   consumers on the same host, which read it with ipc.RingFileReader.
+
+   Each reader named in ring_readers acknowledges what it has read in a
+   sidecar file.  A row completes -- and its position may be stored -- once
+   every one of them has acked it, and the writer won't overwrite a row any
+   of them hasn't acked; with no readers named, rows complete as soon as
+   they're written and slow readers are simply lapped. */
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.ipc.RingAckFile;
+import com.zendesk.maxwell.ipc.RingFileWriter;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import com.zendesk.maxwell.util.StoppableTaskState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+public class MaxwellRingProducer extends AbstractAsyncProducer implements Runnable, StoppableTask {
+	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellRingProducer.class);
+
+	private static final long POLL_NANOS = 50_000L;
+
+	private static class PendingRow {
+		final long sequence;
+		final long endPosition;
+		final CallbackCompleter cc;
+
+		PendingRow(long sequence, long endPosition, CallbackCompleter cc) {
+			this.sequence = sequence;
+			this.endPosition = endPosition;
+			this.cc = cc;
+		}
+	}
+
+	private final RingFileWriter writer;
+	private final List<RingAckFile> acks;
+	private final ConcurrentLinkedQueue<PendingRow> pending;
+	private final StoppableTaskState taskState;
+	private volatile long oldestUnacked;
+	private Thread ackThread;
+
+	public MaxwellRingProducer(MaxwellContext context) throws IOException {
+		super(context);
+
+		MaxwellConfig config = context.getConfig();
+		Path path = Paths.get(config.ringFile);
+		this.writer = new RingFileWriter(path, config.ringSize);
+		this.acks = new ArrayList<>();
+		for ( String reader : config.ringReaders )
+			acks.add(RingAckFile.open(path, reader));
+
+		this.pending = new ConcurrentLinkedQueue<>();
+		this.oldestUnacked = 0L;
+		this.taskState = new StoppableTaskState("MaxwellRingProducer");
+
+		if ( !acks.isEmpty() ) {
+			this.ackThread = new Thread(this, "maxwell-ring-acks");
+			this.ackThread.setDaemon(true);
+			this.ackThread.start();
+		}
+	}
+
+	@Override
+	public void sendAsync(RowMap r, CallbackCompleter cc) throws Exception {
+		byte[] payload = serializer.serialize(r);
+		if ( payload == null ) {
+			cc.markCompleted();
+			return;
+		}
+
+		if ( !writer.fits(payload.length) ) {
+			failed(cc, "row of " + payload.length + " bytes doesn't fit in a ring of " + writer.getCapacity() + " bytes");
+			return;
+		}
+
+		if ( acks.isEmpty() ) {
+			synchronized ( writer ) {
+				writer.write(payload);
+			}
+			succeeded(cc);
+			return;
+		}
+
+		long sequence;
+		while ( true ) {
+			awaitRoom(payload.length);
+
+			// the writer only ever uses up room, so re-check once we hold it
+			synchronized ( writer ) {
+				if ( !writer.hasRoom(payload.length, oldestUnacked) )
+					continue;
+
+				sequence = writer.write(payload);
+				pending.add(new PendingRow(sequence, writer.getPosition(), cc));
+				break;
+			}
+		}
+
+		if ( LOGGER.isDebugEnabled() )
+			LOGGER.debug("->  sequence:" + sequence + " " + serializer.toDebugString(payload));
+	}
+
+	/* back-pressure from the slowest reader; parks without holding the writer */
+	private void awaitRoom(int payloadLength) throws InterruptedException {
+		while ( !writer.hasRoom(payloadLength, oldestUnacked) ) {
+			if ( !taskState.isRunning() )
+				throw new InterruptedException("ring producer stopped while waiting for readers");
+			LockSupport.parkNanos(POLL_NANOS);
+		}
+	}
+
+	/* polls the readers' ack files, completing the rows they've all acked */
+	@Override
+	public void run() {
+		while ( taskState.isRunning() ) {
+			long acked = Long.MAX_VALUE;
+			for ( RingAckFile ack : acks )
+				acked = Math.min(acked, ack.getSequence(writer.getEpoch()));
+
+			PendingRow row = pending.peek();
+			if ( row == null || row.sequence > acked ) {
+				LockSupport.parkNanos(POLL_NANOS);
+				continue;
+			}
+
+			while ( row != null && row.sequence <= acked ) {
+				pending.poll();
+				oldestUnacked = row.endPosition;
+				succeeded(row.cc);
+				row = pending.peek();
+			}
+		}
+		taskState.stopped();
+	}
+
+	private void succeeded(CallbackCompleter cc) {
+		this.succeededMessageCount.inc();
+		this.succeededMessageMeter.mark();
+		cc.markCompleted();
+	}
+
+	private void failed(CallbackCompleter cc, String reason) {
+		this.failedMessageCount.inc();
+		this.failedMessageMeter.mark();
+		LOGGER.error(reason);
+
+		if ( !context.getConfig().ignoreProducerError ) {
+			context.terminate(new RuntimeException(reason));
+		} else {
+			cc.markCompleted();
+		}
+	}
+
+	@Override
+	public void requestStop() {
+		taskState.requestStop();
+		if ( ackThread == null )
+			taskState.stopped();
+	}
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException {
+		taskState.awaitStop(ackThread, timeout);
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this;
+	}
+}
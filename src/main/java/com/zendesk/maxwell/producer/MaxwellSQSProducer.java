@@ -5,70 +5,333 @@ import org.slf4j.LoggerFactory;
 
 import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.services.sqs.AmazonSQSAsync;
-import com.amazonaws.services.sqs.AmazonSQSAsyncClient;
 import com.amazonaws.services.sqs.AmazonSQSAsyncClientBuilder;
-import com.amazonaws.services.sqs.model.SendMessageRequest;
-import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.producer.partitioners.MaxwellSQSPartitioner;
+import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import com.zendesk.maxwell.util.StoppableTaskState;
 
-public class MaxwellSQSProducer extends AbstractAsyncProducer {
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-	private AmazonSQSAsync client;
-	private String queueUri;
+public class MaxwellSQSProducer extends AbstractProducer {
+	private final ArrayBlockingQueue<RowMap> queue;
+	private final MaxwellSQSProducerWorker worker;
 
 	public MaxwellSQSProducer(MaxwellContext context, String queueUri) {
 		super(context);
-		this.queueUri = queueUri;
-		this.client = AmazonSQSAsyncClientBuilder.defaultClient();
+		this.queue = new ArrayBlockingQueue<>(100);
+		this.worker = new MaxwellSQSProducerWorker(context, queueUri, this.queue);
+		Thread thread = new Thread(this.worker, "maxwell-sqs-worker");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 	@Override
-	public void sendAsync(RowMap r, CallbackCompleter cc) throws Exception {
-		String value = r.toJSON();
-		SendMessageRequest messageRequest = new SendMessageRequest(queueUri, value);
-		SQSCallback callback = new SQSCallback(cc, r.getNextPosition(), value, context);
-		client.sendMessageAsync(messageRequest, callback);
+	public void push(RowMap r) throws Exception {
+		this.queue.put(r);
 	}
 
-}
+	@Override
+	public boolean completesRows() {
+		return worker.completesRows();
+	}
 
-class SQSCallback implements AsyncHandler<SendMessageRequest, SendMessageResult> {
-	public static final Logger logger = LoggerFactory.getLogger(SQSCallback.class);
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this.worker;
+	}
+}
 
-	private final AbstractAsyncProducer.CallbackCompleter cc;
-	private final Position position;
-	private final String json;
-	private MaxwellContext context;
+class SQSBatchEntry {
+	final SendMessageBatchRequestEntry entry;
+	final AbstractAsyncProducer.CallbackCompleter cc;
+	final Position position;
+	int attempts;
 
-	public SQSCallback(AbstractAsyncProducer.CallbackCompleter cc, Position position, String json,
-			MaxwellContext context) {
+	SQSBatchEntry(SendMessageBatchRequestEntry entry, AbstractAsyncProducer.CallbackCompleter cc, Position position) {
+		this.entry = entry;
 		this.cc = cc;
 		this.position = position;
-		this.json = json;
-		this.context = context;
+		this.attempts = 0;
+	}
+}
+
+/* rows are packed into SendMessageBatch calls of up to sqs_batch_size
+   messages and 256KB.  A batch goes out when it's full, when sqs_linger_ms
+   has passed since its first row or, with the default linger of 0, as soon
+   as no more rows are waiting.  SQS reports success or failure per entry;
+   entries that failed on the SQS side are retried a few times.
+
+   FIFO queues only keep order within a message group if nothing newer is
+   sent while an older message may still be retried, so there a batch waits
+   until no earlier batch sharing one of its groups is in flight, and a batch
+   holds on to its groups until its retries are settled. */
+class MaxwellSQSProducerWorker extends AbstractAsyncProducer implements Runnable, StoppableTask {
+	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellSQSProducer.class);
+
+	static final int MAX_BATCH_BYTES = 256 * 1024;
+	static final int MAX_ATTEMPTS = 3;
+
+	private final AmazonSQSAsync client;
+	private final String queueUri;
+	private final boolean fifo;
+	private final MaxwellSQSPartitioner partitioner;
+	private final int batchSize;
+	private final long lingerMS;
+	private final ArrayBlockingQueue<RowMap> queue;
+	private List<SQSBatchEntry> batch;
+	private int batchBytes;
+	private long batchStartedAtMS;
+	private final Set<String> groupsInFlight = new HashSet<>();
+	private Thread thread;
+	private StoppableTaskState taskState;
+
+	public MaxwellSQSProducerWorker(MaxwellContext context, String queueUri, ArrayBlockingQueue<RowMap> queue) {
+		this(context, queueUri, queue, AmazonSQSAsyncClientBuilder.defaultClient());
+	}
+
+	MaxwellSQSProducerWorker(MaxwellContext context, String queueUri, ArrayBlockingQueue<RowMap> queue, AmazonSQSAsync client) {
+		super(context);
+
+		MaxwellConfig config = context.getConfig();
+		this.queueUri = queueUri;
+		this.fifo = queueUri.endsWith(".fifo");
+		this.partitioner = new MaxwellSQSPartitioner(config.producerPartitionKey, config.producerPartitionColumns, config.producerPartitionFallback);
+		this.batchSize = config.sqsBatchSize;
+		this.lingerMS = config.sqsLingerMS;
+		this.client = client;
+
+		this.queue = queue;
+		this.batch = new ArrayList<>(batchSize);
+		this.taskState = new StoppableTaskState("MaxwellSQSProducerWorker");
 	}
 
 	@Override
-	public void onError(Exception t) {
-		logger.error(t.getClass().getSimpleName() + " @ " + position + " -- ");
-		logger.error(t.getLocalizedMessage());
-		logger.error("Exception during put", t);
+	public void run() {
+		this.thread = Thread.currentThread();
+		while ( true ) {
+			try {
+				RowMap row;
+				if ( batch.isEmpty() ) {
+					row = queue.take();
+				} else {
+					// once the batch's linger is up, send it before taking anything else on
+					long wait = batchStartedAtMS + lingerMS - System.currentTimeMillis();
+					if ( lingerMS == 0 )
+						row = queue.poll();
+					else
+						row = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
 
-		if (!context.getConfig().ignoreProducerError) {
-			context.terminate(new RuntimeException(t));
-		} else {
-			cc.markCompleted();
+					if ( row == null ) {
+						flush();
+						continue;
+					}
+				}
+
+				if ( !taskState.isRunning() ) {
+					taskState.stopped();
+					return;
+				}
+				this.push(row);
+			} catch ( Exception e ) {
+				taskState.stopped();
+				context.terminate(e);
+				return;
+			}
 		}
-	};
+	}
 
 	@Override
-	public void onSuccess(SendMessageRequest request, SendMessageResult result) {
-		if (logger.isDebugEnabled()) {
-			logger.debug("-> Message id:" + result.getMessageId() + ", sequence number:" + result.getSequenceNumber()+"  "+json+"  "+position);
+	public void sendAsync(RowMap r, CallbackCompleter cc) throws Exception {
+		String value = serializer.serializeText(r);
+		int size = value.getBytes(StandardCharsets.UTF_8).length;
+
+		if ( !batch.isEmpty() && batchBytes + size > MAX_BATCH_BYTES )
+			flush();
+
+		SendMessageBatchRequestEntry entry = new SendMessageBatchRequestEntry(String.valueOf(batch.size()), value);
+		if ( fifo ) {
+			entry.setMessageGroupId(partitioner.getMessageGroupId(r));
+			entry.setMessageDeduplicationId(deduplicationId(r));
+		}
+
+		if ( batch.isEmpty() )
+			batchStartedAtMS = System.currentTimeMillis();
+
+		batch.add(new SQSBatchEntry(entry, cc, r.getNextPosition()));
+		batchBytes += size;
+
+		if ( batch.size() >= batchSize )
+			flush();
+	}
+
+	/* a row's place in the binlog identifies it across restarts, letting SQS drop
+	   the duplicates a replay would send; rows without one get a random id. */
+	private static String deduplicationId(RowMap r) {
+		if ( r.getXid() == null || r.getXoffset() == null )
+			return UUID.randomUUID().toString();
+
+		BinlogPosition p = r.getPosition().getBinlogPosition();
+		return p.getFile() + ":" + p.getOffset() + ":" + r.getXoffset();
+	}
+
+	private void flush() throws InterruptedException {
+		if ( batch.isEmpty() )
+			return;
+
+		Set<String> groups = Collections.emptySet();
+		if ( fifo ) {
+			groups = new HashSet<>();
+			for ( SQSBatchEntry e : batch )
+				groups.add(e.entry.getMessageGroupId());
+			acquireGroups(groups);
+		}
+
+		send(batch, groups);
+
+		// the next row starts a new batch, and with it a new linger deadline
+		batch = new ArrayList<>(batchSize);
+		batchBytes = 0;
+		batchStartedAtMS = 0L;
+	}
+
+	private void acquireGroups(Set<String> groups) throws InterruptedException {
+		synchronized ( groupsInFlight ) {
+			while ( !Collections.disjoint(groupsInFlight, groups) )
+				groupsInFlight.wait();
+			groupsInFlight.addAll(groups);
+		}
+	}
+
+	/* called once a batch, retries included, is done with */
+	void releaseGroups(Set<String> groups) {
+		if ( groups.isEmpty() )
+			return;
+
+		synchronized ( groupsInFlight ) {
+			groupsInFlight.removeAll(groups);
+			groupsInFlight.notifyAll();
 		}
-		cc.markCompleted();
 	}
 
+	void send(List<SQSBatchEntry> entries, Set<String> groups) {
+		List<SendMessageBatchRequestEntry> requestEntries = new ArrayList<>(entries.size());
+		Map<String, SQSBatchEntry> byId = new HashMap<>();
+		for ( int i = 0; i < entries.size(); i++ ) {
+			SQSBatchEntry e = entries.get(i);
+			e.entry.setId(String.valueOf(i));
+			e.attempts++;
+			requestEntries.add(e.entry);
+			byId.put(e.entry.getId(), e);
+		}
+
+		SendMessageBatchRequest request = new SendMessageBatchRequest(queueUri, requestEntries);
+		client.sendMessageBatchAsync(request, new SQSBatchCallback(this, byId, groups));
+	}
+
+	void completed(SQSBatchEntry e, String messageId) {
+		this.succeededMessageCount.inc();
+		this.succeededMessageMeter.mark();
+
+		if ( LOGGER.isDebugEnabled() ) {
+			LOGGER.debug("-> Message id:" + messageId + "  " + e.entry.getMessageBody() + "  " + e.position);
+		}
+		e.cc.markCompleted();
+	}
+
+	void failed(SQSBatchEntry e, String reason) {
+		this.failedMessageCount.inc();
+		this.failedMessageMeter.mark();
+		LOGGER.error("SQS send failed @ " + e.position + " -- " + reason);
+
+		if ( !context.getConfig().ignoreProducerError ) {
+			context.terminate(new RuntimeException(reason));
+		} else {
+			e.cc.markCompleted();
+		}
+	}
+
+	@Override
+	public void requestStop() {
+		taskState.requestStop();
+		client.shutdown();
+	}
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException {
+		taskState.awaitStop(thread, timeout);
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this;
+	}
+}
+
+class SQSBatchCallback implements AsyncHandler<SendMessageBatchRequest, SendMessageBatchResult> {
+	public static final Logger logger = LoggerFactory.getLogger(SQSBatchCallback.class);
+
+	private final MaxwellSQSProducerWorker worker;
+	private final Map<String, SQSBatchEntry> entries;
+	private final Set<String> groups;
+
+	public SQSBatchCallback(MaxwellSQSProducerWorker worker, Map<String, SQSBatchEntry> entries, Set<String> groups) {
+		this.worker = worker;
+		this.entries = entries;
+		this.groups = groups;
+	}
+
+	@Override
+	public void onError(Exception t) {
+		logger.error("Exception during batch put of " + entries.size() + " messages", t);
+		for ( SQSBatchEntry e : entries.values() )
+			worker.failed(e, t.getClass().getSimpleName() + ": " + t.getLocalizedMessage());
+		worker.releaseGroups(groups);
+	}
+
+	@Override
+	public void onSuccess(SendMessageBatchRequest request, SendMessageBatchResult result) {
+		for ( SendMessageBatchResultEntry ok : result.getSuccessful() )
+			worker.completed(entries.get(ok.getId()), ok.getMessageId());
+
+		List<SQSBatchEntry> retries = new ArrayList<>();
+		for ( BatchResultErrorEntry err : result.getFailed() ) {
+			SQSBatchEntry e = entries.get(err.getId());
+			String reason = err.getCode() + ": " + err.getMessage();
+
+			// sender faults (a message too large, say) will fail just the same on a retry
+			if ( !err.isSenderFault() && e.attempts < MaxwellSQSProducerWorker.MAX_ATTEMPTS ) {
+				logger.warn("SQS send failed @ " + e.position + ", retrying -- " + reason);
+				retries.add(e);
+			} else {
+				worker.failed(e, reason);
+			}
+		}
+
+		// the retries keep the batch's message groups, so nothing newer overtakes them
+		if ( !retries.isEmpty() )
+			worker.send(retries, groups);
+		else
+			worker.releaseGroups(groups);
+	}
 }
@@ -1,7 +1,13 @@
 package com.zendesk.maxwell.producer;
 
 import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.row.RowSerializer;
 
 public interface ProducerFactory {
 	AbstractProducer createProducer(MaxwellContext context);
+
+	/* return null to use the serializer selected by output_format */
+	default RowSerializer createRowSerializer(MaxwellContext context) {
+		return null;
+	}
 }
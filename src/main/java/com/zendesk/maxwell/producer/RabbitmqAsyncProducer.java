@@ -0,0 +1,221 @@
+package com.zendesk.maxwell.producer;
+
+/* publishes to rabbitmq with publisher confirms, completing each row once
+   the broker has confirmed it.
+
+   Publishes are spread over rabbitmq_channels channels by routing key, so
+   rows sharing a routing key keep their order.  Every channel is in confirm
+   mode and tracks its outstanding delivery tags; the broker acks them in
+   batches ("multiple" acks cover every tag up to the one given), and each
+   ack completes all the rows it covers.  On shutdown the channels are kept
+   open until every outstanding publish is confirmed or the stop times out. */
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.MessageProperties;
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeoutException;
+
+public class RabbitmqAsyncProducer extends AbstractAsyncProducer implements StoppableTask {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RabbitmqAsyncProducer.class);
+
+	private class ConfirmingChannel implements ConfirmListener {
+		private final Channel channel;
+		private final ConcurrentSkipListMap<Long, CallbackCompleter> outstanding;
+		// signalled when the last outstanding confirm comes in.  Not the channel's own monitor:
+		// a publish blocked on a flow-controlled connection mustn't hold up the confirms.
+		private final Object drained = new Object();
+
+		ConfirmingChannel(Channel channel) throws IOException {
+			this.channel = channel;
+			this.outstanding = new ConcurrentSkipListMap<>();
+
+			channel.confirmSelect();
+			channel.addConfirmListener(this);
+			channel.addShutdownListener(cause -> {
+				if ( !cause.isInitiatedByApplication() )
+					context.terminate(cause);
+			});
+		}
+
+		synchronized void publish(String routingKey, byte[] value, CallbackCompleter cc) throws IOException {
+			outstanding.put(channel.getNextPublishSeqNo(), cc);
+			channel.basicPublish(exchangeName, routingKey, props, value);
+		}
+
+		private List<CallbackCompleter> take(long deliveryTag, boolean multiple) {
+			List<CallbackCompleter> completers = new ArrayList<>();
+			if ( multiple ) {
+				ConcurrentNavigableMap<Long, CallbackCompleter> confirmed = outstanding.headMap(deliveryTag, true);
+				for ( Map.Entry<Long, CallbackCompleter> e : confirmed.entrySet() )
+					completers.add(e.getValue());
+				confirmed.clear();
+			} else {
+				CallbackCompleter cc = outstanding.remove(deliveryTag);
+				if ( cc != null )
+					completers.add(cc);
+			}
+
+			if ( outstanding.isEmpty() ) {
+				synchronized ( drained ) {
+					drained.notifyAll();
+				}
+			}
+			return completers;
+		}
+
+		/* wait until the broker has confirmed (or nacked) everything published so far */
+		void awaitConfirms(long deadlineMS) throws TimeoutException, InterruptedException {
+			synchronized ( drained ) {
+				while ( !outstanding.isEmpty() ) {
+					long remaining = deadlineMS - System.currentTimeMillis();
+					if ( remaining <= 0 )
+						throw new TimeoutException("rabbitmq still has " + outstanding.size() + " unconfirmed messages");
+					drained.wait(remaining);
+				}
+			}
+		}
+
+		int outstandingCount() {
+			return outstanding.size();
+		}
+
+		@Override
+		public void handleAck(long deliveryTag, boolean multiple) {
+			List<CallbackCompleter> completers = take(deliveryTag, multiple);
+			succeededMessageCount.inc(completers.size());
+			succeededMessageMeter.mark(completers.size());
+
+			for ( CallbackCompleter cc : completers )
+				cc.markCompleted();
+		}
+
+		@Override
+		public void handleNack(long deliveryTag, boolean multiple) {
+			List<CallbackCompleter> completers = take(deliveryTag, multiple);
+			failedMessageCount.inc(completers.size());
+			failedMessageMeter.mark(completers.size());
+
+			LOGGER.error("rabbitmq nacked " + completers.size() + " messages, up to delivery tag " + deliveryTag);
+			if ( !context.getConfig().ignoreProducerError ) {
+				context.terminate(new RuntimeException("rabbitmq nacked delivery tag " + deliveryTag));
+				return;
+			}
+
+			for ( CallbackCompleter cc : completers )
+				cc.markCompleted();
+		}
+
+		void close() throws IOException, TimeoutException {
+			if ( channel.isOpen() )
+				channel.close();
+		}
+	}
+
+	private final String exchangeName;
+	private final BasicProperties props;
+	private final TopicInterpolator routingKeyTemplate;
+	private final Connection connection;
+	private final ConfirmingChannel[] channels;
+
+	public RabbitmqAsyncProducer(MaxwellContext context) {
+		this(context, connect(context.getConfig()));
+	}
+
+	RabbitmqAsyncProducer(MaxwellContext context, Connection connection) {
+		super(context);
+
+		MaxwellConfig config = context.getConfig();
+		this.exchangeName = config.rabbitmqExchange;
+		this.props = config.rabbitmqMessagePersistent ? MessageProperties.MINIMAL_PERSISTENT_BASIC : null;
+		this.routingKeyTemplate = RabbitmqProducer.makeRoutingKeyTemplate(config);
+		this.channels = new ConfirmingChannel[config.rabbitmqChannels];
+		this.connection = connection;
+
+		try {
+			for ( int i = 0; i < channels.length; i++ ) {
+				Channel channel = connection.createChannel();
+				if ( i == 0 )
+					RabbitmqProducer.declareExchange(config, channel);
+				channels[i] = new ConfirmingChannel(channel);
+			}
+		} catch ( IOException e ) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Connection connect(MaxwellConfig config) {
+		try {
+			return RabbitmqProducer.connect(config);
+		} catch ( IOException | TimeoutException e ) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void sendAsync(RowMap r, CallbackCompleter cc) throws Exception {
+		byte[] value = serializer.serialize(r);
+		String routingKey = routingKeyTemplate.generate(r.getDatabase(), r.getTable());
+
+		ConfirmingChannel channel = channels[Math.abs(routingKey.hashCode() % channels.length)];
+		channel.publish(routingKey, value, cc);
+
+		if ( LOGGER.isDebugEnabled() ) {
+			LOGGER.debug("->  routing key:" + routingKey + ", partition:" + serializer.toDebugString(value));
+		}
+	}
+
+	/* publishing has stopped by the time we're asked to stop; the channels stay
+	   open until awaitStop has collected the confirms still on their way. */
+	@Override
+	public void requestStop() { }
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException {
+		long deadlineMS = System.currentTimeMillis() + timeout;
+		try {
+			for ( ConfirmingChannel channel : channels )
+				channel.awaitConfirms(deadlineMS);
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				for ( ConfirmingChannel channel : channels )
+					channel.close();
+				connection.close();
+			} catch ( IOException | TimeoutException e ) {
+				LOGGER.warn("error closing rabbitmq connection", e);
+			}
+		}
+	}
+
+	int outstandingConfirms() {
+		int count = 0;
+		for ( ConfirmingChannel channel : channels )
+			count += channel.outstandingCount();
+		return count;
+	}
+
+	ConfirmListener confirmListener(int channel) {
+		return channels[channel];
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this;
+	}
+}
@@ -2,8 +2,10 @@ package com.zendesk.maxwell.producer;
 
 import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.MessageProperties;
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.row.RowMap;
 import org.slf4j.Logger;
@@ -18,27 +20,42 @@ public class RabbitmqProducer extends AbstractProducer {
 	private static String exchangeName;
 	private static BasicProperties props;
 	private Channel channel;
+	private final TopicInterpolator routingKeyTemplate;
+
 	public RabbitmqProducer(MaxwellContext context) {
 		super(context);
 		exchangeName = context.getConfig().rabbitmqExchange;
 		props = context.getConfig().rabbitmqMessagePersistent ? MessageProperties.MINIMAL_PERSISTENT_BASIC : null;
+		routingKeyTemplate = makeRoutingKeyTemplate(context.getConfig());
 
-		ConnectionFactory factory = new ConnectionFactory();
-		factory.setHost(context.getConfig().rabbitmqHost);
-		factory.setPort(context.getConfig().rabbitmqPort);
-		factory.setUsername(context.getConfig().rabbitmqUser);
-		factory.setPassword(context.getConfig().rabbitmqPass);
-		factory.setVirtualHost(context.getConfig().rabbitmqVirtualHost);
 		try {
-			this.channel = factory.newConnection().createChannel();
-			if(context.getConfig().rabbitmqDeclareExchange) {
-				this.channel.exchangeDeclare(exchangeName, context.getConfig().rabbitmqExchangeType, context.getConfig().rabbitMqExchangeDurable, context.getConfig().rabbitMqExchangeAutoDelete, null);
-			}
+			this.channel = connect(context.getConfig()).createChannel();
+			declareExchange(context.getConfig(), this.channel);
 		} catch (IOException | TimeoutException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	static Connection connect(MaxwellConfig config) throws IOException, TimeoutException {
+		ConnectionFactory factory = new ConnectionFactory();
+		factory.setHost(config.rabbitmqHost);
+		factory.setPort(config.rabbitmqPort);
+		factory.setUsername(config.rabbitmqUser);
+		factory.setPassword(config.rabbitmqPass);
+		factory.setVirtualHost(config.rabbitmqVirtualHost);
+		return factory.newConnection();
+	}
+
+	static void declareExchange(MaxwellConfig config, Channel channel) throws IOException {
+		if(config.rabbitmqDeclareExchange) {
+			channel.exchangeDeclare(config.rabbitmqExchange, config.rabbitmqExchangeType, config.rabbitMqExchangeDurable, config.rabbitMqExchangeAutoDelete, null);
+		}
+	}
+
+	static TopicInterpolator makeRoutingKeyTemplate(MaxwellConfig config) {
+		return new TopicInterpolator(config.rabbitmqRoutingKeyTemplate, "%db%", "%table%");
+	}
+
 	@Override
 	public void push(RowMap r) throws Exception {
 		if ( !r.shouldOutput(outputConfig) ) {
@@ -47,23 +64,19 @@ public class RabbitmqProducer extends AbstractProducer {
 			return;
 		}
 
-		String value = r.toJSON(outputConfig);
+		byte[] value = serializer.serialize(r);
 		String routingKey = getRoutingKeyFromTemplate(r);
 
-		channel.basicPublish(exchangeName, routingKey, props, value.getBytes());
+		channel.basicPublish(exchangeName, routingKey, props, value);
 		if ( r.isTXCommit() ) {
 			context.setPosition(r.getNextPosition());
 		}
 		if ( LOGGER.isDebugEnabled()) {
-			LOGGER.debug("->  routing key:" + routingKey + ", partition:" + value);
+			LOGGER.debug("->  routing key:" + routingKey + ", partition:" + serializer.toDebugString(value));
 		}
 	}
 
 	private String getRoutingKeyFromTemplate(RowMap r) {
-		return context
-				.getConfig()
-				.rabbitmqRoutingKeyTemplate
-				.replace("%db%", r.getDatabase())
-				.replace("%table%", r.getTable());
+		return routingKeyTemplate.generate(r.getDatabase(), r.getTable());
 	}
 }
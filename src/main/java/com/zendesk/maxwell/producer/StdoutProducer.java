@@ -10,9 +10,9 @@ public class StdoutProducer extends AbstractProducer {
 
 	@Override
 	public void push(RowMap r) throws Exception {
-		String output = r.toJSON(outputConfig);
+		String output = r.shouldOutput(outputConfig) ? serializer.serializeText(r) : null;
 
-		if ( output != null && r.shouldOutput(outputConfig) )
+		if ( output != null )
 			System.out.println(output);
 
 
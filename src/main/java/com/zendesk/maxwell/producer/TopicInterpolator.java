@@ -0,0 +1,121 @@
+package com.zendesk.maxwell.producer;
+
+/* expands a topic (or routing key, channel...) template such as
+   "namespace_%{database}_%{table}" for a given database and table.
+
+   The template is split into literal and placeholder parts once, and the
+   expanded result is cached per (database, table), so the per-row cost is
+   two hash lookups instead of a pair of regex replacements.
+   */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TopicInterpolator {
+	private enum PartType { LITERAL, DATABASE, TABLE }
+
+	private static class Part {
+		final PartType type;
+		final String literal;
+
+		Part(PartType type, String literal) {
+			this.type = type;
+			this.literal = literal;
+		}
+	}
+
+	private final String template;
+	private final List<Part> parts;
+	private final boolean interpolated;
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> cache;
+
+	public TopicInterpolator(String template, String databaseToken, String tableToken) {
+		this.template = template;
+		this.parts = compile(template, databaseToken, tableToken);
+		this.interpolated = parts.size() != 1 || parts.get(0).type != PartType.LITERAL;
+		this.cache = new ConcurrentHashMap<>();
+	}
+
+	private static List<Part> compile(String template, String databaseToken, String tableToken) {
+		List<Part> parts = new ArrayList<>();
+		int i = 0;
+		int literalStart = 0;
+
+		while ( i < template.length() ) {
+			PartType type = null;
+			int tokenLength = 0;
+
+			if ( template.startsWith(databaseToken, i) ) {
+				type = PartType.DATABASE;
+				tokenLength = databaseToken.length();
+			} else if ( template.startsWith(tableToken, i) ) {
+				type = PartType.TABLE;
+				tokenLength = tableToken.length();
+			}
+
+			if ( type == null ) {
+				i++;
+				continue;
+			}
+
+			if ( i > literalStart )
+				parts.add(new Part(PartType.LITERAL, template.substring(literalStart, i)));
+			parts.add(new Part(type, null));
+
+			i += tokenLength;
+			literalStart = i;
+		}
+
+		if ( literalStart < template.length() || parts.isEmpty() )
+			parts.add(new Part(PartType.LITERAL, template.substring(literalStart)));
+
+		return parts;
+	}
+
+	public boolean isInterpolated() {
+		return interpolated;
+	}
+
+	public String generate(String database, String table) {
+		if ( !interpolated )
+			return template;
+
+		// ConcurrentHashMap can't hold null keys; these are rare enough to not bother caching.
+		if ( database == null || table == null )
+			return expand(database, table);
+
+		ConcurrentHashMap<String, String> byTable = cache.get(database);
+		if ( byTable == null ) {
+			byTable = new ConcurrentHashMap<>();
+			ConcurrentHashMap<String, String> existing = cache.putIfAbsent(database, byTable);
+			if ( existing != null )
+				byTable = existing;
+		}
+
+		String topic = byTable.get(table);
+		if ( topic == null ) {
+			topic = expand(database, table);
+			byTable.put(table, topic);
+		}
+		return topic;
+	}
+
+	private String expand(String database, String table) {
+		StringBuilder sb = new StringBuilder();
+		for ( Part p : parts ) {
+			switch ( p.type ) {
+				case LITERAL:
+					sb.append(p.literal);
+					break;
+				case DATABASE:
+					sb.append(database);
+					break;
+				case TABLE:
+					sb.append(table);
+					break;
+			}
+		}
+		return sb.toString();
+	}
+}
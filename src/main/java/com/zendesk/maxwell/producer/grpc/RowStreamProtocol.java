@@ -0,0 +1,127 @@
+package com.zendesk.maxwell.producer.grpc;
+
+/* the wire protocol of the grpc producer: a single bidirectional streaming
+   method, maxwell.RowStream/Publish.  The client sends batches of serialized
+   rows and the server answers each batch with an ack carrying its id, and an
+   error message if the batch was rejected.
+
+   Messages aren't protobufs, so services can implement the method without
+   generated code:
+
+     Batch:  int64 id | int32 row count | (int32 length | row bytes)*
+     Ack:    int64 id | uint8 has error | (UTF error message)?
+
+   all big-endian, as written by DataOutputStream. */
+
+import io.grpc.MethodDescriptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RowStreamProtocol {
+	public static final String SERVICE_NAME = "maxwell.RowStream";
+
+	public static class Batch {
+		public final long id;
+		public final List<byte[]> rows;
+
+		public Batch(long id, List<byte[]> rows) {
+			this.id = id;
+			this.rows = rows;
+		}
+	}
+
+	public static class Ack {
+		public final long id;
+		public final String error;
+
+		public Ack(long id, String error) {
+			this.id = id;
+			this.error = error;
+		}
+
+		public boolean isError() {
+			return error != null;
+		}
+	}
+
+	static final MethodDescriptor.Marshaller<Batch> BATCH_MARSHALLER = new MethodDescriptor.Marshaller<Batch>() {
+		@Override
+		public InputStream stream(Batch batch) {
+			int size = 12;
+			for ( byte[] row : batch.rows )
+				size += 4 + row.length;
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+			try ( DataOutputStream out = new DataOutputStream(bytes) ) {
+				out.writeLong(batch.id);
+				out.writeInt(batch.rows.size());
+				for ( byte[] row : batch.rows ) {
+					out.writeInt(row.length);
+					out.write(row);
+				}
+			} catch ( IOException e ) {
+				throw new UncheckedIOException(e);
+			}
+			return new ByteArrayInputStream(bytes.toByteArray());
+		}
+
+		@Override
+		public Batch parse(InputStream stream) {
+			try ( DataInputStream in = new DataInputStream(stream) ) {
+				long id = in.readLong();
+				int count = in.readInt();
+				List<byte[]> rows = new ArrayList<>(count);
+				for ( int i = 0; i < count; i++ ) {
+					byte[] row = new byte[in.readInt()];
+					in.readFully(row);
+					rows.add(row);
+				}
+				return new Batch(id, rows);
+			} catch ( IOException e ) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	};
+
+	static final MethodDescriptor.Marshaller<Ack> ACK_MARSHALLER = new MethodDescriptor.Marshaller<Ack>() {
+		@Override
+		public InputStream stream(Ack ack) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+			try ( DataOutputStream out = new DataOutputStream(bytes) ) {
+				out.writeLong(ack.id);
+				out.writeBoolean(ack.error != null);
+				if ( ack.error != null )
+					out.writeUTF(ack.error);
+			} catch ( IOException e ) {
+				throw new UncheckedIOException(e);
+			}
+			return new ByteArrayInputStream(bytes.toByteArray());
+		}
+
+		@Override
+		public Ack parse(InputStream stream) {
+			try ( DataInputStream in = new DataInputStream(stream) ) {
+				long id = in.readLong();
+				String error = in.readBoolean() ? in.readUTF() : null;
+				return new Ack(id, error);
+			} catch ( IOException e ) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	};
+
+	public static final MethodDescriptor<Batch, Ack> PUBLISH_METHOD = MethodDescriptor.<Batch, Ack>newBuilder()
+		.setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+		.setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "Publish"))
+		.setRequestMarshaller(BATCH_MARSHALLER)
+		.setResponseMarshaller(ACK_MARSHALLER)
+		.build();
+}
@@ -0,0 +1,103 @@
+package com.zendesk.maxwell.producer.grpc;
+
+/* an in-process stand-in for a service implementing RowStreamProtocol, for
+   integration tests.  Point the grpc producer at it with
+   grpc_target=inprocess:<name>; it records every row it receives and acks
+   each batch, or rejects them after rejectBatches(true). */
+
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RowStreamServer {
+	public static final String INPROCESS_PREFIX = "inprocess:";
+
+	private final String name;
+	private final List<byte[]> rows;
+	private volatile boolean rejectBatches;
+	private int batchCount;
+	private Server server;
+
+	public RowStreamServer(String name) {
+		this.name = name;
+		this.rows = new ArrayList<>();
+	}
+
+	public String getTarget() {
+		return INPROCESS_PREFIX + name;
+	}
+
+	public RowStreamServer start() throws IOException {
+		ServerServiceDefinition service = ServerServiceDefinition.builder(RowStreamProtocol.SERVICE_NAME)
+			.addMethod(RowStreamProtocol.PUBLISH_METHOD, ServerCalls.asyncBidiStreamingCall(this::publish))
+			.build();
+
+		this.server = InProcessServerBuilder.forName(name).addService(service).build().start();
+		return this;
+	}
+
+	public void stop() throws InterruptedException {
+		server.shutdownNow();
+		server.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	public void rejectBatches(boolean reject) {
+		this.rejectBatches = reject;
+	}
+
+	public synchronized List<byte[]> getRows() {
+		return new ArrayList<>(rows);
+	}
+
+	public synchronized int getBatchCount() {
+		return batchCount;
+	}
+
+	/* waits until at least `count` rows have arrived */
+	public synchronized boolean awaitRows(int count, long timeoutMS) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMS;
+		while ( rows.size() < count ) {
+			long left = deadline - System.currentTimeMillis();
+			if ( left <= 0 )
+				return false;
+			wait(left);
+		}
+		return true;
+	}
+
+	private synchronized void received(RowStreamProtocol.Batch batch) {
+		rows.addAll(batch.rows);
+		batchCount++;
+		notifyAll();
+	}
+
+	private StreamObserver<RowStreamProtocol.Batch> publish(final StreamObserver<RowStreamProtocol.Ack> acks) {
+		return new StreamObserver<RowStreamProtocol.Batch>() {
+			@Override
+			public void onNext(RowStreamProtocol.Batch batch) {
+				if ( rejectBatches ) {
+					acks.onNext(new RowStreamProtocol.Ack(batch.id, "rejected by stand-in server"));
+					return;
+				}
+
+				received(batch);
+				acks.onNext(new RowStreamProtocol.Ack(batch.id, null));
+			}
+
+			@Override
+			public void onError(Throwable t) { }
+
+			@Override
+			public void onCompleted() {
+				acks.onCompleted();
+			}
+		};
+	}
+}
@@ -73,4 +73,9 @@ public abstract class AbstractMaxwellPartitioner {
 	public String getHashString(RowMap r) {
 		return getHashString(r, partitionBy);
 	}
+
+	/* whether keys come from a small set of values (database or table names) */
+	protected boolean hasBoundedKeys() {
+		return partitionBy == PartitionBy.DATABASE || partitionBy == PartitionBy.TABLE;
+	}
 }
@@ -0,0 +1,17 @@
+package com.zendesk.maxwell.producer.partitioners;
+
+import com.zendesk.maxwell.row.RowMap;
+
+public class MaxwellGrpcPartitioner extends AbstractMaxwellPartitioner {
+	public MaxwellGrpcPartitioner(String partitionKey, String csvPartitionColumns, String partitionKeyFallback) {
+		super(partitionKey, csvPartitionColumns, partitionKeyFallback);
+	}
+
+	/* rows with the same key always go down the same stream, and so arrive in order */
+	public int getStream(RowMap r, int streams) {
+		String key = this.getHashString(r);
+		if ( key == null )
+			return 0;
+		return Math.abs(key.hashCode() % streams);
+	}
+}
@@ -1,25 +1,72 @@
 package com.zendesk.maxwell.producer.partitioners;
 
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.MurmurHash3;
 
 import org.apache.commons.codec.digest.DigestUtils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class MaxwellKinesisPartitioner extends AbstractMaxwellPartitioner {
-	boolean md5Keys;
+	public static final String KEY_HASH_NONE = "none";
+	public static final String KEY_HASH_MD5 = "md5";
+	public static final String KEY_HASH_MURMUR3 = "murmur3";
+
+	private static final int KEY_CACHE_SIZE = 10000;
+
+	private final String keyHash;
+	private final Map<String, String> keyCache;
 
 	public MaxwellKinesisPartitioner(String partitionKey, String csvPartitionColumns, String partitionKeyFallback, boolean md5Keys) {
+		this(partitionKey, csvPartitionColumns, partitionKeyFallback, md5Keys ? KEY_HASH_MD5 : KEY_HASH_NONE);
+	}
+
+	public MaxwellKinesisPartitioner(String partitionKey, String csvPartitionColumns, String partitionKeyFallback, String keyHash) {
 		super(partitionKey, csvPartitionColumns, partitionKeyFallback);
 
-		this.md5Keys = md5Keys;
+		this.keyHash = keyHash;
+
+		// database and table keys repeat endlessly, so their hashes are worth keeping around
+		if ( !KEY_HASH_NONE.equals(keyHash) && hasBoundedKeys() ) {
+			this.keyCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+					return size() > KEY_CACHE_SIZE;
+				}
+			};
+		} else {
+			this.keyCache = null;
+		}
 	}
 
 	public String getKinesisKey(RowMap r) {
 		String key = this.getHashString(r);
 
-		if(md5Keys) {
-			return DigestUtils.md5Hex(key);
+		if ( keyCache == null )
+			return hashKey(key);
+
+		synchronized(keyCache) {
+			String hashed = keyCache.get(key);
+			if ( hashed == null ) {
+				hashed = hashKey(key);
+				keyCache.put(key, hashed);
+			}
+			return hashed;
 		}
+	}
 
-		return key;
+	/* kinesis md5s the partition key to pick a shard regardless, so the hash
+	   here only has to bring long keys under the 256 character limit;
+	   murmur3 does that for a fraction of md5's cost. */
+	private String hashKey(String key) {
+		switch ( keyHash ) {
+			case KEY_HASH_MD5:
+				return DigestUtils.md5Hex(key);
+			case KEY_HASH_MURMUR3:
+				return Integer.toHexString(MurmurHash3.murmurhash3_x86_32(key, 0, key.length(), 0));
+			default:
+				return key;
+		}
 	}
 }
@@ -0,0 +1,15 @@
+package com.zendesk.maxwell.producer.partitioners;
+
+import com.zendesk.maxwell.row.RowMap;
+
+public class MaxwellPubsubPartitioner extends AbstractMaxwellPartitioner {
+	public MaxwellPubsubPartitioner(String partitionKey, String csvPartitionColumns, String partitionKeyFallback) {
+		super(partitionKey, csvPartitionColumns, partitionKeyFallback);
+	}
+
+	/* rows with the same ordering key are published in order */
+	public String getOrderingKey(RowMap r) {
+		String key = this.getHashString(r);
+		return key == null ? "" : key;
+	}
+}
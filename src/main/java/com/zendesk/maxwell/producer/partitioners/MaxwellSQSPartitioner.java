@@ -0,0 +1,33 @@
+package com.zendesk.maxwell.producer.partitioners;
+
+import com.zendesk.maxwell.row.RowMap;
+import org.apache.commons.codec.digest.DigestUtils;
+
+public class MaxwellSQSPartitioner extends AbstractMaxwellPartitioner {
+	private static final int MAX_GROUP_ID_LENGTH = 128;
+
+	public MaxwellSQSPartitioner(String partitionKey, String csvPartitionColumns, String partitionKeyFallback) {
+		super(partitionKey, csvPartitionColumns, partitionKeyFallback);
+	}
+
+	/* FIFO queues deliver messages in order within a MessageGroupId, which is
+	   limited to 128 printable ascii characters; other keys are hashed to fit. */
+	public String getMessageGroupId(RowMap r) {
+		String key = this.getHashString(r);
+		if ( key == null || key.isEmpty() )
+			return "maxwell";
+		else if ( key.length() > MAX_GROUP_ID_LENGTH || !isPrintableAscii(key) )
+			return DigestUtils.md5Hex(key);
+		else
+			return key;
+	}
+
+	private static boolean isPrintableAscii(String s) {
+		for ( int i = 0; i < s.length(); i++ ) {
+			char c = s.charAt(i);
+			if ( c < '!' || c > '~' )
+				return false;
+		}
+		return true;
+	}
+}
@@ -158,6 +158,7 @@ public class BinlogConnectorEvent {
 			rowQuery
 		);
 
+		map.setTableSchema(table);
 		writeData(table, map, data, includedColumns);
 		return map;
 	}
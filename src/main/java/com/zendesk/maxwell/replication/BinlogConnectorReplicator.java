@@ -356,6 +356,22 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 	}
 
 
+	private static String rowType(EventType eventType) {
+		switch ( eventType ) {
+			case WRITE_ROWS:
+			case EXT_WRITE_ROWS:
+				return "insert";
+			case UPDATE_ROWS:
+			case EXT_UPDATE_ROWS:
+				return "update";
+			case DELETE_ROWS:
+			case EXT_DELETE_ROWS:
+				return "delete";
+			default:
+				return null;
+		}
+	}
+
 	private boolean shouldOutputRowMap(String database, String table, RowMap rowMap, Filter filter) {
 		return filter.isSystemWhitelisted(database, table) ||
 			filter.includes(database, table, rowMap.getData());
@@ -449,7 +465,10 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 				case EXT_DELETE_ROWS:
 					Table table = tableCache.getTable(event.getTableID());
 
-					if ( table != null && shouldOutputEvent(table.getDatabase(), table.getName(), filter, table.getColumnNames()) ) {
+					// checked before any RowMap is built; filtered-out row types are never decoded
+					if ( table != null
+						&& Filter.includesRowType(filter, table.getDatabase(), rowType(eventType))
+						&& shouldOutputEvent(table.getDatabase(), table.getName(), filter, table.getColumnNames()) ) {
 						for ( RowMap r : event.jsonMaps(table, getLastHeartbeatRead(), currentQuery) )
 							if (shouldOutputRowMap(table.getDatabase(), table.getName(), r, filter)) {
 								buffer.add(r);
@@ -0,0 +1,202 @@
+package com.zendesk.maxwell.row;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the payloads of another {@link RowSerializer}; selected with {@code payload_compression}.
+ *
+ * Payloads shorter than the threshold, or that don't shrink, are passed through untouched.  The
+ * others are wrapped in an envelope consumers can recognize:
+ *
+ * <pre>
+ *   0  3 bytes  magic, "MXZ"
+ *   3  1 byte   format version, 1
+ *   4  1 byte   codec: 1 = lz4 block, 2 = gzip
+ *   5  int32    length of the uncompressed payload, big-endian
+ *   9  compressed payload
+ * </pre>
+ *
+ * {@link #serializeText(RowMap)} compresses the wrapped serializer's text and base64-encodes the
+ * envelope, so compressed text payloads start with "TVhaAQ".  Either way, {@link #decompress(byte[])}
+ * gives back exactly what the wrapped serializer produced.  Since an uncompressed payload could
+ * happen to start with the magic too, a payload only counts as compressed if the rest of its
+ * header is consistent: a known version and codec, and an uncompressed length larger than the
+ * compressed bytes that follow.
+ */
+public class CompressingRowSerializer implements RowSerializer {
+	public static final byte CODEC_LZ4 = 1;
+	public static final byte CODEC_GZIP = 2;
+
+	static final byte[] MAGIC = { 'M', 'X', 'Z' };
+	static final byte VERSION = 1;
+	static final int HEADER_SIZE = 9;
+	static final String TEXT_PREFIX = "TVhaAQ"; // base64 of the magic and version
+
+	private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+	private final RowSerializer serializer;
+	private final byte codec;
+	private final int threshold;
+
+	public CompressingRowSerializer(RowSerializer serializer, String codec, int threshold) {
+		this.serializer = serializer;
+		this.codec = codecFor(codec);
+		this.threshold = threshold;
+	}
+
+	static byte codecFor(String name) {
+		switch ( name ) {
+			case "lz4":
+				return CODEC_LZ4;
+			case "gzip":
+				return CODEC_GZIP;
+			default:
+				throw new IllegalArgumentException("unknown payload compression: " + name);
+		}
+	}
+
+	@Override
+	public byte[] serialize(RowMap r) throws Exception {
+		return compress(serializer.serialize(r));
+	}
+
+	@Override
+	public String serializeText(RowMap r) throws Exception {
+		String text = serializer.serializeText(r);
+		// chars are a lower bound on the UTF-8 length
+		if ( text == null || text.length() < threshold )
+			return text;
+
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = compress(bytes);
+		return compressed == bytes ? text : Base64.getEncoder().encodeToString(compressed);
+	}
+
+	@Override
+	public String serializeKey(RowMap r, RowMap.KeyFormat keyFormat) throws IOException {
+		return serializer.serializeKey(r, keyFormat);
+	}
+
+	@Override
+	public String toDebugString(byte[] payload) {
+		try {
+			return serializer.toDebugString(decompress(payload));
+		} catch ( IOException e ) {
+			return "<" + payload.length + " bytes of undecodable compressed payload>";
+		}
+	}
+
+	byte[] compress(byte[] payload) throws IOException {
+		if ( payload == null || payload.length < threshold )
+			return payload;
+
+		byte[] envelope;
+		if ( codec == CODEC_LZ4 ) {
+			LZ4Compressor compressor = LZ4.fastCompressor();
+			byte[] out = new byte[HEADER_SIZE + compressor.maxCompressedLength(payload.length)];
+			int len = compressor.compress(payload, 0, payload.length, out, HEADER_SIZE, out.length - HEADER_SIZE);
+			envelope = Arrays.copyOf(out, HEADER_SIZE + len);
+		} else {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + HEADER_SIZE);
+			out.write(new byte[HEADER_SIZE]);
+			try ( GZIPOutputStream gzip = new GZIPOutputStream(out) ) {
+				gzip.write(payload);
+			}
+			envelope = out.toByteArray();
+		}
+
+		if ( envelope.length >= payload.length )
+			return payload;
+
+		ByteBuffer header = ByteBuffer.wrap(envelope, 0, HEADER_SIZE);
+		header.put(MAGIC).put(VERSION).put(codec).putInt(payload.length);
+		return envelope;
+	}
+
+	public static boolean isCompressed(byte[] payload) {
+		if ( payload == null || payload.length <= HEADER_SIZE )
+			return false;
+		if ( payload[0] != MAGIC[0] || payload[1] != MAGIC[1] || payload[2] != MAGIC[2] || payload[3] != VERSION )
+			return false;
+
+		byte codec = payload[4];
+		if ( codec != CODEC_LZ4 && codec != CODEC_GZIP )
+			return false;
+
+		// only payloads that shrank are compressed
+		int length = ByteBuffer.wrap(payload, 5, 4).getInt();
+		return length > payload.length - HEADER_SIZE;
+	}
+
+	/**
+	 * @return the original payload of a compressed one; other payloads are returned as they are
+	 */
+	public static byte[] decompress(byte[] payload) throws IOException {
+		if ( !isCompressed(payload) )
+			return payload;
+
+		ByteBuffer header = ByteBuffer.wrap(payload, 0, HEADER_SIZE);
+		header.position(MAGIC.length + 1);
+		byte codec = header.get();
+		int length = header.getInt();
+
+		switch ( codec ) {
+			case CODEC_LZ4:
+				LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+				byte[] out = new byte[length];
+				int compressedLength;
+				try {
+					compressedLength = decompressor.decompress(payload, HEADER_SIZE, out, 0, length);
+				} catch ( LZ4Exception e ) {
+					throw new IOException("corrupt lz4 payload", e);
+				}
+				if ( compressedLength != payload.length - HEADER_SIZE )
+					throw new IOException("lz4 payload has " + (payload.length - HEADER_SIZE) + " compressed bytes, expected " + compressedLength);
+				return out;
+			case CODEC_GZIP:
+				byte[] result = new byte[length];
+				try ( InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload, HEADER_SIZE, payload.length - HEADER_SIZE)) ) {
+					int read = 0;
+					while ( read < length ) {
+						int n = in.read(result, read, length - read);
+						if ( n < 0 )
+							throw new IOException("truncated gzip payload");
+						read += n;
+					}
+				}
+				return result;
+			default:
+				throw new IOException("unknown payload compression codec " + codec);
+		}
+	}
+
+	/**
+	 * @return the original text of a payload produced by {@link #serializeText(RowMap)}
+	 */
+	public static String decompressText(String payload) throws IOException {
+		if ( payload == null || !payload.startsWith(TEXT_PREFIX) )
+			return payload;
+
+		byte[] bytes;
+		try {
+			bytes = Base64.getDecoder().decode(payload);
+		} catch ( IllegalArgumentException e ) {
+			return payload;
+		}
+		return isCompressed(bytes) ? new String(decompress(bytes), StandardCharsets.UTF_8) : payload;
+	}
+}
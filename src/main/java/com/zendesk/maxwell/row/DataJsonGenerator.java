@@ -3,9 +3,10 @@ package com.zendesk.maxwell.row;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 
+import com.zendesk.maxwell.producer.EncryptionCipher;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import org.apache.commons.codec.binary.Base64;
 
 interface DataJsonGenerator {
 	// A wrapper around JsonGenerator for the `data` (and `old`) payload in a RowMap,
@@ -37,14 +38,21 @@ class PlaintextJsonGenerator implements DataJsonGenerator {
 	}
 }
 
+/* lets the generators' output be encrypted in place, without copying it out first */
+class JsonBuffer extends ByteArrayOutputStream {
+	byte[] array() {
+		return buf;
+	}
+}
+
 class EncryptingJsonGenerator implements DataJsonGenerator {
 	final private JsonGenerator rawGenerator;
-	final private ByteArrayOutputStream buffer;
+	final private JsonBuffer buffer;
 	final private JsonGenerator encryptedGenerator;
 
 	public EncryptingJsonGenerator(
 		JsonGenerator generator, JsonFactory jsonFactory) throws IOException {
-		this.buffer = new ByteArrayOutputStream();
+		this.buffer = new JsonBuffer();
 		this.rawGenerator = generator;
 		this.encryptedGenerator = jsonFactory.createGenerator(buffer);
 	}
@@ -66,9 +74,9 @@ class EncryptingJsonGenerator implements DataJsonGenerator {
 
 	private void endRaw(EncryptionContext ctx) throws Exception {
 		encryptedGenerator.flush();
-		String json = buffer.toString();
+		byte[] encrypted = RowEncrypt.encrypt(buffer.array(), 0, buffer.size(), ctx);
 		buffer.reset();
-		writeEncryptedField(json, ctx);
+		writeEncryptedField(encrypted, ctx);
 	}
 
 	private void endObject(EncryptionContext ctx) throws Exception {
@@ -76,17 +84,19 @@ class EncryptingJsonGenerator implements DataJsonGenerator {
 		endRaw(ctx);
 	}
 
-	public void writeEncryptedObject(String rawJson, EncryptionContext ctx) throws Exception {
+	public void writeEncryptedObject(byte[] encrypted, EncryptionContext ctx) throws Exception {
 		rawGenerator.writeStartObject();
-		writeEncryptedField(rawJson, ctx);
+		writeEncryptedField(encrypted, ctx);
 		rawGenerator.writeEndObject();
 	}
 
-	private  void writeEncryptedField(String rawJson, EncryptionContext ctx) throws Exception {
-		String encryptedJSON = RowEncrypt.encrypt(rawJson, ctx.secretKey, ctx.iv);
+	// jackson's default base64 variant is plain, unchunked base64
+	private void writeEncryptedField(byte[] encrypted, EncryptionContext ctx) throws Exception {
 		rawGenerator.writeObjectFieldStart("encrypted");
-		rawGenerator.writeStringField("iv", Base64.encodeBase64String(ctx.iv));
-		rawGenerator.writeStringField("bytes", encryptedJSON);
+		rawGenerator.writeBinaryField("iv", ctx.iv);
+		rawGenerator.writeBinaryField("bytes", encrypted);
+		if ( ctx.cipher != EncryptionCipher.AES_CBC )
+			rawGenerator.writeStringField("cipher", ctx.cipher.transformation);
 		rawGenerator.writeEndObject();
 	}
 }
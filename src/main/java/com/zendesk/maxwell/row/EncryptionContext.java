@@ -1,23 +1,26 @@
 package com.zendesk.maxwell.row;
 
-import java.security.NoSuchAlgorithmException;
+import com.zendesk.maxwell.producer.EncryptionCipher;
+
 import java.security.SecureRandom;
 
 class EncryptionContext {
-	String secretKey;
-	byte[] iv;
+	// SecureRandom is thread-safe; seeding one per row was most of the cost of encryption
+	private static final SecureRandom random = new SecureRandom();
+
+	final String secretKey;
+	final byte[] iv;
+	final EncryptionCipher cipher;
 
-	EncryptionContext(String secretKey, byte[] iv) {
+	EncryptionContext(String secretKey, byte[] iv, EncryptionCipher cipher) {
 		this.secretKey = secretKey;
 		this.iv = iv;
+		this.cipher = cipher;
 	}
 
-	public static EncryptionContext create(String secretKey) throws NoSuchAlgorithmException {
-		SecureRandom randomSecureRandom = SecureRandom.getInstance("SHA1PRNG");
-		byte[] iv = new byte[16];
-		randomSecureRandom.nextBytes(iv);
-		return new EncryptionContext(secretKey, iv);
+	public static EncryptionContext create(String secretKey, EncryptionCipher cipher) {
+		byte[] iv = new byte[cipher.ivLength];
+		random.nextBytes(iv);
+		return new EncryptionContext(secretKey, iv, cipher);
 	}
 }
-
-
@@ -0,0 +1,27 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maxwell's standard JSON output; see {@link RowMap#toJSON(MaxwellOutputConfig)}.
+ */
+public class JsonRowSerializer implements RowSerializer {
+	private final MaxwellOutputConfig outputConfig;
+
+	public JsonRowSerializer(MaxwellOutputConfig outputConfig) {
+		this.outputConfig = outputConfig;
+	}
+
+	@Override
+	public byte[] serialize(RowMap r) throws Exception {
+		String json = r.toJSON(outputConfig);
+		return json == null ? null : json.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String serializeText(RowMap r) throws Exception {
+		return r.toJSON(outputConfig);
+	}
+}
@@ -8,7 +8,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.script.ScriptException;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
 
@@ -16,7 +15,7 @@ public class MaxwellJson {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MaxwellJson.class);
 	private static final JsonFactory jsonFactory = new JsonFactory();
 
-	private final ByteArrayOutputStream buffer;
+	private final JsonBuffer buffer;
 	private final JsonGenerator jsonGenerator;
 	private final PlaintextJsonGenerator plaintextGenerator;
 	private final EncryptingJsonGenerator encryptingGenerator;
@@ -31,7 +30,7 @@ public class MaxwellJson {
 	});
 
 	private MaxwellJson() throws IOException {
-		buffer = new ByteArrayOutputStream();
+		buffer = new JsonBuffer();
 		jsonGenerator = jsonFactory.createGenerator(buffer);
 		jsonGenerator.setRootValueSeparator(null);
 		plaintextGenerator = new PlaintextJsonGenerator(jsonGenerator);
@@ -55,6 +54,14 @@ public class MaxwellJson {
 		return jsonGenerator;
 	}
 
+	/* replaces everything written so far with an {"encrypted": ...} object */
+	void encryptContents(EncryptionContext ctx) throws Exception {
+		jsonGenerator.flush();
+		byte[] encrypted = RowEncrypt.encrypt(buffer.array(), 0, buffer.size(), ctx);
+		buffer.reset();
+		encryptingGenerator.writeEncryptedObject(encrypted, ctx);
+	}
+
 	public String consume() throws IOException {
 		jsonGenerator.flush();
 		String s = buffer.toString();
@@ -1,6 +1,9 @@
 package com.zendesk.maxwell.row;
 
+import com.zendesk.maxwell.producer.EncryptionCipher;
+
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -8,34 +11,63 @@ import org.apache.commons.codec.binary.Base64;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RowEncrypt {
 	private final static String TEXT_ENCODING = "UTF-8";
 	private final static String BYTE_ENCODING = "ASCII";
+	private final static int GCM_TAG_BITS = 128;
+
+	// Cipher.getInstance is slow and Ciphers aren't thread-safe, so each thread keeps its own
+	private static final ThreadLocal<EnumMap<EncryptionCipher, Cipher>> ciphers =
+		ThreadLocal.withInitial(() -> new EnumMap<>(EncryptionCipher.class));
+	private static final ConcurrentHashMap<String, SecretKeySpec> keys = new ConcurrentHashMap<>();
 
 	public static String encrypt(String value, String secretKey, byte[] initVector) throws Exception {
-		IvParameterSpec ivSpec = new IvParameterSpec(initVector);
-		Cipher cipher = getCipher();
-		cipher.init(Cipher.ENCRYPT_MODE, loadKey(secretKey), ivSpec);
+		byte[] bytes = value.getBytes(TEXT_ENCODING);
+		return Base64.encodeBase64String(encrypt(bytes, 0, bytes.length, secretKey, initVector, EncryptionCipher.AES_CBC));
+	}
+
+	public static byte[] encrypt(byte[] value, int offset, int length, String secretKey, byte[] initVector, EncryptionCipher c) throws Exception {
+		Cipher cipher = getCipher(c);
+		cipher.init(Cipher.ENCRYPT_MODE, loadKey(secretKey), parameterSpec(c, initVector));
+		return cipher.doFinal(value, offset, length);
+	}
 
-		byte[] encrypted = cipher.doFinal(value.getBytes(TEXT_ENCODING));
-		return Base64.encodeBase64String(encrypted);
+	static byte[] encrypt(byte[] value, int offset, int length, EncryptionContext ctx) throws Exception {
+		return encrypt(value, offset, length, ctx.secretKey, ctx.iv, ctx.cipher);
 	}
 
 	public static String decrypt(String value, String secretKey, String initVector) throws Exception {
-		IvParameterSpec ivSpec = new IvParameterSpec(base64Decode(initVector));
-		Cipher cipher = getCipher();
-		cipher.init(Cipher.DECRYPT_MODE, loadKey(secretKey), ivSpec);
+		return decrypt(value, secretKey, initVector, EncryptionCipher.AES_CBC);
+	}
+
+	public static String decrypt(String value, String secretKey, String initVector, EncryptionCipher c) throws Exception {
+		Cipher cipher = getCipher(c);
+		cipher.init(Cipher.DECRYPT_MODE, loadKey(secretKey), parameterSpec(c, base64Decode(initVector)));
 
 		return new String(cipher.doFinal(base64Decode(value)), Charset.forName(TEXT_ENCODING));
 	}
 
-	private static Cipher getCipher() throws Exception {
-		return Cipher.getInstance("AES/CBC/PKCS5PADDING");
+	private static Cipher getCipher(EncryptionCipher c) throws GeneralSecurityException {
+		EnumMap<EncryptionCipher, Cipher> cache = ciphers.get();
+		Cipher cipher = cache.get(c);
+		if ( cipher == null ) {
+			cipher = Cipher.getInstance(c.transformation);
+			cache.put(c, cipher);
+		}
+		return cipher;
+	}
+
+	private static AlgorithmParameterSpec parameterSpec(EncryptionCipher c, byte[] iv) {
+		return c == EncryptionCipher.AES_GCM ? new GCMParameterSpec(GCM_TAG_BITS, iv) : new IvParameterSpec(iv);
 	}
 
-	private static SecretKeySpec loadKey(String secretKey) throws IOException {
-		return new SecretKeySpec(secretKey.getBytes(TEXT_ENCODING), "AES");
+	private static SecretKeySpec loadKey(String secretKey) {
+		return keys.computeIfAbsent(secretKey, k -> new SecretKeySpec(k.getBytes(Charset.forName(TEXT_ENCODING)), "AES"));
 	}
 
 	private static byte[] base64Decode(String value) throws IOException {
@@ -5,6 +5,7 @@ import com.zendesk.maxwell.producer.EncryptionMode;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +51,13 @@ public class RowMap implements Serializable {
 	private final List<String> pkColumns;
 	private RowIdentity rowIdentity;
 
+	// the table definition this row was decoded with, for encoders that derive a schema from it.
+	// It isn't serialized; RowMapBuffer re-attaches it to the rows it spills to disk.
+	private transient Table tableSchema;
+
+	// run once the producer has delivered the row, for producers that report it (see AbstractProducer#completesRows)
+	private transient Runnable completionCallback;
+
 	private long approximateSize;
 
 	public RowMap(String type, String database, String table, Long timestampMillis, List<String> pkColumns,
@@ -199,7 +207,7 @@ public class RowMap implements Serializable {
 
 		EncryptionContext encryptionContext = null;
 		if (outputConfig.encryptionEnabled()) {
-			encryptionContext = EncryptionContext.create(outputConfig.secretKey);
+			encryptionContext = EncryptionContext.create(outputConfig.secretKey, outputConfig.encryptionCipher);
 		}
 
 		DataJsonGenerator dataWriter = outputConfig.encryptionMode == EncryptionMode.ENCRYPT_DATA
@@ -216,8 +224,7 @@ public class RowMap implements Serializable {
 		g.writeEndObject(); // end of row
 
 		if(outputConfig.encryptionMode == EncryptionMode.ENCRYPT_ALL){
-			String plaintext = json.consume();
-			json.getEncryptingGenerator().writeEncryptedObject(plaintext, encryptionContext);
+			json.encryptContents(encryptionContext);
 		}
 
 		return json.consume();
@@ -385,6 +392,22 @@ public class RowMap implements Serializable {
 		this.suppressed = true;
 	}
 
+	public Table getTableSchema() {
+		return this.tableSchema;
+	}
+
+	public void setTableSchema(Table table) {
+		this.tableSchema = table;
+	}
+
+	public Runnable getCompletionCallback() {
+		return this.completionCallback;
+	}
+
+	public void setCompletionCallback(Runnable callback) {
+		this.completionCallback = callback;
+	}
+
 	public String getKafkaTopic() {
 		return this.kafkaTopic;
 	}
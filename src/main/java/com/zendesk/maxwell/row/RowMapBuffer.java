@@ -1,10 +1,22 @@
 package com.zendesk.maxwell.row;
 
+import com.zendesk.maxwell.schema.Table;
 import com.zendesk.maxwell.util.ListWithDiskBuffer;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 
 public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
+	/* spilled rows leave their table definition behind; it's kept here, in runs of rows that share it */
+	private static class TableRun {
+		final Table table;
+		long count;
+
+		TableRun(Table table) {
+			this.table = table;
+		}
+	}
+
 	private static long FlushOutputStreamBytes = 10000000;
 	private Long xid;
 	private Long xoffset = 0L;
@@ -14,6 +26,7 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 	private long memorySize = 0;
 	private long outputStreamCacheSize = 0;
 	private final long maxMemory;
+	private final ArrayDeque<TableRun> spilledTables = new ArrayDeque<>();
 
 	public RowMapBuffer(long maxInMemoryElements) {
 		super(maxInMemoryElements);
@@ -41,6 +54,13 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 		RowMap r = super.evict();
 		this.memorySize -= r.getApproximateSize();
 
+		TableRun run = spilledTables.peekLast();
+		if ( run == null || run.table != r.getTableSchema() ) {
+			run = new TableRun(r.getTableSchema());
+			spilledTables.addLast(run);
+		}
+		run.count++;
+
 		/* For performance reasons, the output stream will hold on to cached objects.
 		 * There's probably a smarter thing to do (write our own serdes, maybe?), but
 		 * for now we forcibly flush its cache when it gets too big. */
@@ -54,7 +74,14 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 	}
 
 	public RowMap removeFirst() throws IOException, ClassNotFoundException {
+		boolean spilled = size() > inMemorySize();
 		RowMap r = super.removeFirst(RowMap.class);
+		if ( spilled ) {
+			TableRun run = spilledTables.peekFirst();
+			r.setTableSchema(run.table);
+			if ( --run.count == 0 )
+				spilledTables.removeFirst();
+		}
 		r.setXid(this.xid);
 		r.setXoffset(this.xoffset++);
 		r.setServerId(this.serverId);
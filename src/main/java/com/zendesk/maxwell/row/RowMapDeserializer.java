@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 import com.zendesk.maxwell.errors.ParseException;
+import com.zendesk.maxwell.producer.EncryptionCipher;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -45,10 +46,12 @@ public class RowMapDeserializer extends StdDeserializer<RowMap> {
 		if (encrypted != null) {
 			String iv = encrypted.get("iv").textValue();
 			String bytes = encrypted.get("bytes").textValue();
+			JsonNode cipher = encrypted.get("cipher");
 
 			String decryptedData;
 			try {
-				decryptedData = RowEncrypt.decrypt(bytes, this.secret_key, iv);
+				EncryptionCipher c = cipher == null ? EncryptionCipher.AES_CBC : EncryptionCipher.forTransformation(cipher.textValue());
+				decryptedData = RowEncrypt.decrypt(bytes, this.secret_key, iv, c);
 			} catch (Exception e) {
 				throw new IOException(e);
 			}
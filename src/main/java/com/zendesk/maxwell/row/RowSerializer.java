@@ -0,0 +1,32 @@
+package com.zendesk.maxwell.row;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns a row into the payload a producer sends.
+ *
+ * Producers whose sink takes bytes call {@link #serialize(RowMap)}; sinks that can only carry
+ * text (stdout, files, SQS) call {@link #serializeText(RowMap)}, which binary formats
+ * implement with some text-safe encoding.  Both return null for rows that produce no output.
+ *
+ * Implementations are picked with the {@code output_format} option or by
+ * {@link com.zendesk.maxwell.producer.ProducerFactory#createRowSerializer}, and may be called
+ * from several producer threads at once.
+ */
+public interface RowSerializer {
+	byte[] serialize(RowMap r) throws Exception;
+
+	String serializeText(RowMap r) throws Exception;
+
+	default String serializeKey(RowMap r, RowMap.KeyFormat keyFormat) throws IOException {
+		return r.pkToJson(keyFormat);
+	}
+
+	/**
+	 * @return a loggable rendering of a payload produced by {@link #serialize(RowMap)}
+	 */
+	default String toDebugString(byte[] payload) {
+		return payload == null ? null : new String(payload, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,113 @@
+package com.zendesk.maxwell.row.protobuf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A schema registry kept in a local directory, for testing and single-host setups.
+ *
+ * Each schema is stored as {@code <id>.schema}; {@code index.tsv} maps ids to subjects
+ * and versions, one "id, subject, version" line per registration.
+ */
+public class FileSchemaRegistry implements SchemaRegistry {
+	static final Logger LOGGER = LoggerFactory.getLogger(FileSchemaRegistry.class);
+	private static final String INDEX_FILE = "index.tsv";
+
+	private static class Entry {
+		final int id;
+		final int version;
+		final byte[] schema;
+
+		Entry(int id, int version, byte[] schema) {
+			this.id = id;
+			this.version = version;
+			this.schema = schema;
+		}
+	}
+
+	private final File directory;
+	private final Map<String, Entry> latestBySubject;
+	private final Map<Integer, Entry> byId;
+	private int maxId = 0;
+
+	public FileSchemaRegistry(String directory) throws IOException {
+		this.directory = new File(directory);
+		this.latestBySubject = new HashMap<>();
+		this.byId = new HashMap<>();
+
+		if ( !this.directory.isDirectory() && !this.directory.mkdirs() )
+			throw new IOException("Couldn't create schema registry directory " + directory);
+
+		load();
+	}
+
+	private void load() throws IOException {
+		File index = new File(directory, INDEX_FILE);
+		if ( !index.exists() )
+			return;
+
+		List<String> lines = Files.readAllLines(index.toPath(), StandardCharsets.UTF_8);
+		for ( String line : lines ) {
+			if ( line.isEmpty() )
+				continue;
+
+			String[] fields = line.split("\t");
+			int id = Integer.parseInt(fields[0]);
+			String subject = fields[1];
+			int version = Integer.parseInt(fields[2]);
+
+			Entry e = new Entry(id, version, Files.readAllBytes(schemaFile(id).toPath()));
+			byId.put(id, e);
+			latestBySubject.put(subject, e);
+			maxId = Math.max(maxId, id);
+		}
+
+		LOGGER.info("Loaded " + byId.size() + " schemas from " + directory);
+	}
+
+	private File schemaFile(int id) {
+		return new File(directory, id + ".schema");
+	}
+
+	@Override
+	public synchronized int register(String subject, byte[] schema) throws IOException {
+		Entry latest = latestBySubject.get(subject);
+		if ( latest != null && Arrays.equals(latest.schema, schema) )
+			return latest.id;
+
+		int id = maxId + 1;
+		int version = latest == null ? 1 : latest.version + 1;
+
+		Files.write(schemaFile(id).toPath(), schema);
+		String line = id + "\t" + subject + "\t" + version + "\n";
+		Files.write(new File(directory, INDEX_FILE).toPath(), line.getBytes(StandardCharsets.UTF_8),
+			StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+		Entry e = new Entry(id, version, schema);
+		byId.put(id, e);
+		latestBySubject.put(subject, e);
+		maxId = id;
+
+		LOGGER.info("Registered schema " + id + " for " + subject + ", version " + version);
+		return id;
+	}
+
+	@Override
+	public synchronized byte[] lookup(int id) throws IOException {
+		Entry e = byId.get(id);
+		if ( e == null )
+			throw new FileNotFoundException("No schema with id " + id + " in " + directory);
+		return e.schema;
+	}
+}
@@ -0,0 +1,288 @@
+package com.zendesk.maxwell.row.protobuf;
+
+/* encodes rows as protobuf messages framed with the id of their schema:
+
+     0x00 | schema id (4 bytes, big-endian) | message
+
+   Schemas are built from the row's Table and registered on first use; the
+   compiled descriptor is cached per database.table along with maxwell's
+   schema id, and is only rebuilt when a new schema id brings a table
+   definition that differs column-wise from the cached one.  A DDL drops the cached schema for the table it touched, so the
+   next row re-registers and, if the columns changed, gets a new version.
+   */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.row.RawJSONString;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.RowSerializer;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.ddl.DDLMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ProtobufRowEncoder implements RowSerializer {
+	public static final byte MAGIC_BYTE = 0x0;
+	public static final String DDL_SUBJECT = "maxwell.ddl";
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private static class CompiledSchema {
+		final Table table;
+		final Long schemaID; // maxwell's schema version the table was taken from
+		final int id;
+		final Descriptor row;
+		final Descriptor data;
+		final Map<String, FieldDescriptor> columns;
+
+		CompiledSchema(Table table, Long schemaID, int id, Descriptor row) {
+			this.table = table;
+			this.schemaID = schemaID;
+			this.id = id;
+			this.row = row;
+			this.data = row.findNestedTypeByName(ProtobufSchemaBuilder.DATA_MESSAGE);
+			this.columns = new HashMap<>();
+			if ( data != null ) {
+				for ( FieldDescriptor f : data.getFields() )
+					columns.put(f.getJsonName(), f);
+			}
+		}
+	}
+
+	private final SchemaRegistry registry;
+	private final MaxwellOutputConfig outputConfig;
+	private final ConcurrentHashMap<String, CompiledSchema> schemas;
+	private CompiledSchema ddlSchema;
+
+	public ProtobufRowEncoder(SchemaRegistry registry, MaxwellOutputConfig outputConfig) {
+		this.registry = registry;
+		this.outputConfig = outputConfig;
+		this.schemas = new ConcurrentHashMap<>();
+	}
+
+	public static String subject(String database, String table) {
+		return "maxwell." + database + "." + table;
+	}
+
+	@Override
+	public byte[] serialize(RowMap r) throws IOException {
+		return encode(r);
+	}
+
+	/* text-only sinks get the framed message base64-encoded */
+	@Override
+	public String serializeText(RowMap r) throws IOException {
+		byte[] encoded = encode(r);
+		return encoded == null ? null : Base64.getEncoder().encodeToString(encoded);
+	}
+
+	@Override
+	public String toDebugString(byte[] payload) {
+		return payload == null ? null : "<" + payload.length + " bytes of protobuf>";
+	}
+
+	/* null for rows that produce no output, heartbeats among them */
+	public byte[] encode(RowMap r) throws IOException {
+		if ( !r.shouldOutput(outputConfig) )
+			return null;
+
+		if ( r instanceof DDLMap )
+			return encodeDDL((DDLMap) r);
+
+		CompiledSchema schema = schemaFor(r);
+		DynamicMessage.Builder row = DynamicMessage.newBuilder(schema.row);
+		Descriptor d = schema.row;
+
+		row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.DATABASE), r.getDatabase());
+		row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TABLE), r.getTable());
+		row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TYPE), r.getRowType());
+		row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TIMESTAMP), r.getTimestamp());
+
+		if ( outputConfig.includesRowQuery && r.getRowQuery() != null )
+			row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.QUERY), r.getRowQuery());
+
+		if ( outputConfig.includesCommitInfo ) {
+			if ( r.getXid() != null )
+				row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TRANSACTION_ID), r.getXid());
+
+			if ( outputConfig.includesXOffset && r.getXoffset() != null && !r.isTXCommit() )
+				row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TRANSACTION_OFFSET), r.getXoffset());
+
+			if ( r.isTXCommit() )
+				row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.COMMIT), true);
+		}
+
+		setPositionFields(row, d, r);
+
+		if ( outputConfig.includesServerId && r.getServerId() != null )
+			row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.SERVER_ID), r.getServerId());
+
+		if ( outputConfig.includesThreadId && r.getThreadId() != null )
+			row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.THREAD_ID), r.getThreadId());
+
+		if ( outputConfig.includesSchemaId && r.getSchemaId() != null )
+			row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.SCHEMA_ID), r.getSchemaId());
+
+		if ( !r.getExtraAttributes().isEmpty() )
+			row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.EXTRA), mapper.writeValueAsString(r.getExtraAttributes()));
+
+		row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.DATA), buildData(schema, r.getData()));
+
+		if ( !r.getOldData().isEmpty() ) {
+			row.setField(d.findFieldByNumber(ProtobufSchemaBuilder.OLD), buildData(schema, r.getOldData()));
+
+			FieldDescriptor oldNulls = d.findFieldByNumber(ProtobufSchemaBuilder.OLD_NULLS);
+			for ( Map.Entry<String, Object> e : r.getOldData().entrySet() ) {
+				if ( e.getValue() == null && schema.columns.containsKey(e.getKey()) )
+					row.addRepeatedField(oldNulls, e.getKey());
+			}
+		}
+
+		return frame(schema.id, row.build());
+	}
+
+	private byte[] encodeDDL(DDLMap r) throws IOException {
+		CompiledSchema schema = ddlSchema();
+		Descriptor d = schema.row;
+		DynamicMessage.Builder ddl = DynamicMessage.newBuilder(d);
+
+		if ( r.getDatabase() != null )
+			ddl.setField(d.findFieldByNumber(ProtobufSchemaBuilder.DATABASE), r.getDatabase());
+		if ( r.getTable() != null )
+			ddl.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TABLE), r.getTable());
+		ddl.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TYPE), r.getRowType());
+		ddl.setField(d.findFieldByNumber(ProtobufSchemaBuilder.TIMESTAMP), r.getTimestamp());
+		ddl.setField(d.findFieldByNumber(ProtobufSchemaBuilder.QUERY), r.getSql());
+		String json = r.toJSON(outputConfig);
+		if ( json != null )
+			ddl.setField(d.findFieldByNumber(ProtobufSchemaBuilder.DDL_JSON), json);
+		setPositionFields(ddl, d, r);
+
+		if ( outputConfig.includesSchemaId && r.getSchemaId() != null )
+			ddl.setField(d.findFieldByNumber(ProtobufSchemaBuilder.SCHEMA_ID), r.getSchemaId());
+
+		// the table's next row re-registers its schema, picking up the new column list
+		if ( r.getDatabase() != null ) {
+			if ( r.getTable() != null )
+				schemas.remove(subject(r.getDatabase(), r.getTable()));
+			else
+				schemas.keySet().removeIf(k -> k.startsWith(subject(r.getDatabase(), "")));
+		}
+
+		return frame(schema.id, ddl.build());
+	}
+
+	private void setPositionFields(DynamicMessage.Builder b, Descriptor d, RowMap r) {
+		BinlogPosition binlogPosition = r.getPosition().getBinlogPosition();
+		if ( outputConfig.includesBinlogPosition )
+			b.setField(d.findFieldByNumber(ProtobufSchemaBuilder.POSITION), binlogPosition.getFile() + ":" + binlogPosition.getOffset());
+
+		if ( outputConfig.includesGtidPosition && binlogPosition.getGtid() != null )
+			b.setField(d.findFieldByNumber(ProtobufSchemaBuilder.GTID), binlogPosition.getGtid());
+	}
+
+	private DynamicMessage buildData(CompiledSchema schema, Map<String, Object> values) {
+		DynamicMessage.Builder data = DynamicMessage.newBuilder(schema.data);
+		for ( Map.Entry<String, Object> e : values.entrySet() ) {
+			FieldDescriptor f = schema.columns.get(e.getKey());
+			Object value = e.getValue();
+
+			// excluded or unknown columns aren't in the schema; nulls are left unset
+			if ( f == null || value == null )
+				continue;
+
+			if ( f.isRepeated() ) {
+				for ( Object v : (List<?>) value )
+					data.addRepeatedField(f, v.toString());
+			} else {
+				data.setField(f, convert(f, value));
+			}
+		}
+		return data.build();
+	}
+
+	private static Object convert(FieldDescriptor f, Object value) {
+		switch ( f.getJavaType() ) {
+			case LONG:
+				return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+			case DOUBLE:
+				return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+			default:
+				return value instanceof RawJSONString ? ((RawJSONString) value).json : value.toString();
+		}
+	}
+
+	private CompiledSchema schemaFor(RowMap r) throws IOException {
+		Table table = r.getTableSchema();
+		if ( table == null )
+			throw new IOException("No table definition attached to row for " + r.getDatabase() + "." + r.getTable());
+
+		String subject = subject(r.getDatabase(), r.getTable());
+		CompiledSchema schema = schemas.get(subject);
+		if ( schema != null && schema.schemaID != null && schema.schemaID.equals(r.getSchemaId()) )
+			return schema;
+
+		if ( schema != null && sameDefinition(schema.table, table) ) {
+			// another schema version (or a reloaded copy of the table), but this table didn't change
+			schema = new CompiledSchema(table, r.getSchemaId(), schema.id, schema.row);
+		} else {
+			FileDescriptorProto proto = ProtobufSchemaBuilder.buildRowSchema(table, outputConfig);
+			schema = compile(subject, proto, ProtobufSchemaBuilder.ROW_MESSAGE, table, r.getSchemaId());
+		}
+		schemas.put(subject, schema);
+		return schema;
+	}
+
+	private static boolean sameDefinition(Table a, Table b) {
+		if ( a == b )
+			return true;
+
+		List<String> diffs = new ArrayList<>();
+		a.diff(diffs, b, "cached", "row");
+		return diffs.isEmpty();
+	}
+
+	private synchronized CompiledSchema ddlSchema() throws IOException {
+		if ( ddlSchema == null )
+			ddlSchema = compile(DDL_SUBJECT, ProtobufSchemaBuilder.buildDDLSchema(), ProtobufSchemaBuilder.DDL_MESSAGE, null, null);
+		return ddlSchema;
+	}
+
+	private CompiledSchema compile(String subject, FileDescriptorProto proto, String messageName, Table table, Long schemaID) throws IOException {
+		try {
+			Descriptors.FileDescriptor file = Descriptors.FileDescriptor.buildFrom(proto, new Descriptors.FileDescriptor[0]);
+			int id = registry.register(subject, proto.toByteArray());
+			return new CompiledSchema(table, schemaID, id, file.findMessageTypeByName(messageName));
+		} catch ( Descriptors.DescriptorValidationException e ) {
+			throw new IOException("Couldn't build protobuf schema for " + subject, e);
+		}
+	}
+
+	private static byte[] frame(int schemaID, DynamicMessage message) throws IOException {
+		int size = message.getSerializedSize();
+		byte[] out = new byte[5 + size];
+		out[0] = MAGIC_BYTE;
+		out[1] = (byte) (schemaID >>> 24);
+		out[2] = (byte) (schemaID >>> 16);
+		out[3] = (byte) (schemaID >>> 8);
+		out[4] = (byte) schemaID;
+
+		CodedOutputStream stream = CodedOutputStream.newInstance(out, 5, size);
+		message.writeTo(stream);
+		stream.checkNoSpaceLeft();
+		return out;
+	}
+}
@@ -0,0 +1,182 @@
+package com.zendesk.maxwell.row.protobuf;
+
+/* builds a protobuf (proto2) schema for the rows of a table.
+
+   The envelope mirrors maxwell's JSON output; the row's columns become a
+   nested "Data" message that is used for both "data" and "old".  Column
+   fields are numbered by column position, so a consumer holding an older
+   version of the schema can still read every column that didn't move.
+   */
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.row.FieldNames;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.BigIntColumnDef;
+import com.zendesk.maxwell.schema.columndef.BitColumnDef;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import com.zendesk.maxwell.schema.columndef.FloatColumnDef;
+import com.zendesk.maxwell.schema.columndef.IntColumnDef;
+import com.zendesk.maxwell.schema.columndef.SetColumnDef;
+import com.zendesk.maxwell.schema.columndef.YearColumnDef;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public class ProtobufSchemaBuilder {
+	public static final String ROW_MESSAGE = "Row";
+	public static final String DATA_MESSAGE = "Data";
+	public static final String DDL_MESSAGE = "Ddl";
+
+	static final int DATABASE = 1;
+	static final int TABLE = 2;
+	static final int TYPE = 3;
+	static final int TIMESTAMP = 4;
+	static final int TRANSACTION_ID = 5;
+	static final int TRANSACTION_OFFSET = 6;
+	static final int COMMIT = 7;
+	static final int POSITION = 8;
+	static final int GTID = 9;
+	static final int SERVER_ID = 10;
+	static final int THREAD_ID = 11;
+	static final int SCHEMA_ID = 12;
+	static final int QUERY = 13;
+	static final int DATA = 14;
+	static final int OLD = 15;
+	static final int EXTRA = 16;
+	static final int OLD_NULLS = 17;
+	static final int DDL_JSON = 18;
+
+	public static FileDescriptorProto buildRowSchema(Table table, MaxwellOutputConfig outputConfig) {
+		DescriptorProto.Builder data = DescriptorProto.newBuilder().setName(DATA_MESSAGE);
+		Set<String> fieldNames = new HashSet<>();
+
+		for ( ColumnDef c : table.getColumnList() ) {
+			if ( isExcluded(c.getName(), outputConfig) )
+				continue;
+
+			String fieldName = sanitize(c.getName());
+			if ( !fieldNames.add(fieldName) ) {
+				fieldName = fieldName + "_" + (c.getPos() + 1);
+				fieldNames.add(fieldName);
+			}
+
+			FieldDescriptorProto.Builder field = FieldDescriptorProto.newBuilder()
+				.setName(fieldName)
+				.setJsonName(c.getName())
+				.setNumber(c.getPos() + 1)
+				.setType(fieldType(c))
+				.setLabel(c instanceof SetColumnDef ? FieldDescriptorProto.Label.LABEL_REPEATED : FieldDescriptorProto.Label.LABEL_OPTIONAL);
+			data.addField(field);
+		}
+
+		DescriptorProto.Builder row = DescriptorProto.newBuilder().setName(ROW_MESSAGE)
+			.addNestedType(data)
+			.addField(scalar(FieldNames.DATABASE, DATABASE, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.TABLE, TABLE, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.TYPE, TYPE, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.TIMESTAMP, TIMESTAMP, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar(FieldNames.TRANSACTION_ID, TRANSACTION_ID, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar(FieldNames.TRANSACTION_OFFSET, TRANSACTION_OFFSET, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar(FieldNames.COMMIT, COMMIT, FieldDescriptorProto.Type.TYPE_BOOL))
+			.addField(scalar(FieldNames.POSITION, POSITION, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.GTID, GTID, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.SERVER_ID, SERVER_ID, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar(FieldNames.THREAD_ID, THREAD_ID, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar(FieldNames.SCHEMA_ID, SCHEMA_ID, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar(FieldNames.QUERY, QUERY, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(message(FieldNames.DATA, DATA, DATA_MESSAGE))
+			.addField(message(FieldNames.OLD, OLD, DATA_MESSAGE))
+			.addField(scalar("extra", EXTRA, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(FieldDescriptorProto.newBuilder()
+				.setName("old_nulls")
+				.setNumber(OLD_NULLS)
+				.setType(FieldDescriptorProto.Type.TYPE_STRING)
+				.setLabel(FieldDescriptorProto.Label.LABEL_REPEATED));
+
+		return FileDescriptorProto.newBuilder()
+			.setName(table.getDatabase() + "/" + table.getName() + ".proto")
+			.setPackage("maxwell." + sanitize(table.getDatabase()) + "." + sanitize(table.getName()))
+			.setSyntax("proto2")
+			.addMessageType(row)
+			.build();
+	}
+
+	public static FileDescriptorProto buildDDLSchema() {
+		DescriptorProto.Builder ddl = DescriptorProto.newBuilder().setName(DDL_MESSAGE)
+			.addField(scalar(FieldNames.DATABASE, DATABASE, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.TABLE, TABLE, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.TYPE, TYPE, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.TIMESTAMP, TIMESTAMP, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar(FieldNames.POSITION, POSITION, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.GTID, GTID, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar(FieldNames.SCHEMA_ID, SCHEMA_ID, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(scalar("sql", QUERY, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(scalar("json", DDL_JSON, FieldDescriptorProto.Type.TYPE_STRING));
+
+		return FileDescriptorProto.newBuilder()
+			.setName("maxwell/ddl.proto")
+			.setPackage("maxwell")
+			.setSyntax("proto2")
+			.addMessageType(ddl)
+			.build();
+	}
+
+	static boolean isExcluded(String column, MaxwellOutputConfig outputConfig) {
+		for ( Pattern p : outputConfig.excludeColumns ) {
+			if ( p.matcher(column).matches() )
+				return true;
+		}
+		return false;
+	}
+
+	private static FieldDescriptorProto.Type fieldType(ColumnDef c) {
+		if ( c instanceof IntColumnDef || c instanceof YearColumnDef )
+			return FieldDescriptorProto.Type.TYPE_SINT64;
+		else if ( c instanceof BigIntColumnDef )
+			return ((BigIntColumnDef) c).isSigned() ? FieldDescriptorProto.Type.TYPE_SINT64 : FieldDescriptorProto.Type.TYPE_UINT64;
+		else if ( c instanceof BitColumnDef )
+			return FieldDescriptorProto.Type.TYPE_UINT64;
+		else if ( c instanceof FloatColumnDef )
+			return FieldDescriptorProto.Type.TYPE_DOUBLE;
+		else
+			return FieldDescriptorProto.Type.TYPE_STRING;
+	}
+
+	private static FieldDescriptorProto.Builder scalar(String name, int number, FieldDescriptorProto.Type type) {
+		return FieldDescriptorProto.newBuilder()
+			.setName(name)
+			.setNumber(number)
+			.setType(type)
+			.setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+	}
+
+	private static FieldDescriptorProto.Builder message(String name, int number, String typeName) {
+		return FieldDescriptorProto.newBuilder()
+			.setName(name)
+			.setNumber(number)
+			.setType(FieldDescriptorProto.Type.TYPE_MESSAGE)
+			.setTypeName(typeName)
+			.setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+	}
+
+	/* protobuf identifiers are [A-Za-z_][A-Za-z0-9_]*; mysql's are a good deal looser. */
+	static String sanitize(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 1);
+		for ( int i = 0; i < name.length(); i++ ) {
+			char c = name.charAt(i);
+			if ( (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' )
+				sb.append(c);
+			else
+				sb.append('_');
+		}
+
+		if ( sb.length() == 0 || Character.isDigit(sb.charAt(0)) )
+			sb.insert(0, '_');
+
+		return sb.toString();
+	}
+}
@@ -0,0 +1,17 @@
+package com.zendesk.maxwell.row.protobuf;
+
+import java.io.IOException;
+
+/**
+ * Stores the schemas binary-encoded rows are written with.
+ *
+ * Every encoded message is prefixed with the id its schema was registered under, so a
+ * consumer can fetch the schema and decode the message.  Registering a schema identical
+ * to the latest version of a subject must return that version's id; a different schema
+ * becomes the next version of the subject.
+ */
+public interface SchemaRegistry {
+	int register(String subject, byte[] schema) throws IOException;
+
+	byte[] lookup(int id) throws IOException;
+}
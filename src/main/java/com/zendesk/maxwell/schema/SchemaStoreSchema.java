@@ -120,6 +120,10 @@ public class SchemaStoreSchema {
 			performAlter(c, "alter table `bootstrap` add column where_clause varchar(1024)");
 		}
 
+		if ( !getTableColumns("bootstrap", c).containsKey("last_chunk_pk") ) {
+			performAlter(c, "alter table `bootstrap` add column last_chunk_pk bigint null default null after total_rows");
+		}
+
 		HashMap<String, String> schemaColumns = getTableColumns("schemas", c);
 		if ( !schemaColumns.containsKey("charset")) {
 			String[] charsetTables = { "schemas", "databases", "tables", "columns" };
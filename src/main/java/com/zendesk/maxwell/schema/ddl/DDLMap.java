@@ -78,4 +78,9 @@ public class DDLMap extends RowMap {
 	public String getSql() {
 		return sql;
 	}
+
+	@Override
+	public Long getSchemaId() {
+		return schemaId;
+	}
 }
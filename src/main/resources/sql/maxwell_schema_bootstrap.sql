@@ -6,6 +6,7 @@ CREATE TABLE IF NOT EXISTS `bootstrap` (
   is_complete     tinyint(1) unsigned NOT NULL default 0,
   inserted_rows   bigint(20) unsigned NOT NULL DEFAULT 0,
   total_rows      bigint(20) unsigned NOT NULL DEFAULT 0,
+  last_chunk_pk   bigint(20) default NULL,
   created_at      DATETIME default NULL,
   started_at      DATETIME default NULL,
   completed_at    DATETIME default NULL,
@@ -0,0 +1,92 @@
+package com.twilio.maxwell.benchmark;
+
+import com.google.common.base.Optional;
+
+import com.twilio.domain.account.Account;
+import com.twilio.maxwell.service.TwilioRowMapServiceImpl;
+import com.twilio.piedpiper.protocol.DebugEventRecord;
+import com.twilio.sids.AccountSid;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowMap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Measures TwilioRowMapServiceImpl.buildDebugEventRecord, the per-row cost of the twilio producer.
+ *
+ * usage: DebugEventRecordBenchmark [iterations] [rounds]
+ *
+ * Each round reports the mean time per record, and, where the JVM supports it,
+ * the bytes allocated per record.
+ */
+public class DebugEventRecordBenchmark {
+	private static final int WARMUP_ROUNDS = 5;
+
+	// keeps the JIT from discarding the work
+	private static volatile Object sink;
+
+	private static RowMap buildRow(int i) {
+		Position position = new Position(new BinlogPosition(4L, "master.000001"), 0L);
+		RowMap row = new RowMap("insert", "notifications", "notifications", 1000L, Arrays.asList("sid"), position, position, null);
+		row.putData("sid", String.format("NO%032d", i));
+		row.putData("accountsid", "AC12345678901234567890123456789012");
+		row.putData("callsid", "CA12345678901234567890123456789555");
+		row.putData("datecreated", "2019-02-14 11:25:15");
+		row.putData("errorcode", 11200L);
+		row.putData("messagetext", "Msg=HTTP+retrieval+failure&url=https%3A%2F%2Fexample.com%2Fsms");
+		row.putData("requesturl", "https://example.com/sms");
+		row.putData("requestmethod", "POST");
+		row.putData("requestvariables", "To=%2B15555550100&From=%2B15555550101&Body=hello");
+		row.putData("responseheaders", "Content-Type=text%2Fhtml");
+		row.putData("responsebody", "<html>503 Service Unavailable</html>");
+		return row;
+	}
+
+	private static long round(TwilioRowMapServiceImpl service, RowMap[] rows, Account account, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for ( int i = 0; i < iterations; i++ ) {
+			DebugEventRecord record = service.buildDebugEventRecord(rows[i % rows.length], account);
+			sink = record;
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long allocatedBytes(ThreadMXBean bean) {
+		if ( bean instanceof com.sun.management.ThreadMXBean )
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		TwilioRowMapServiceImpl service = new TwilioRowMapServiceImpl();
+		Account account = mock(Account.class);
+		when(account.getParentAccountSid()).thenReturn(Optional.absent());
+		when(account.getSid()).thenReturn(AccountSid.parse("AC12345678901234567890123456789012"));
+
+		RowMap[] rows = new RowMap[1024];
+		for ( int i = 0; i < rows.length; i++ )
+			rows[i] = buildRow(i);
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		for ( int i = 0; i < WARMUP_ROUNDS; i++ )
+			round(service, rows, account, iterations);
+
+		for ( int i = 0; i < rounds; i++ ) {
+			long bytesBefore = allocatedBytes(bean);
+			long elapsed = round(service, rows, account, iterations);
+			long bytesAfter = allocatedBytes(bean);
+
+			String allocated = bytesBefore < 0 ? "n/a" : String.valueOf((bytesAfter - bytesBefore) / iterations);
+			System.out.println(String.format("round %d: %.1f ns/op, %s bytes/op", i, (double) elapsed / iterations, allocated));
+		}
+	}
+}
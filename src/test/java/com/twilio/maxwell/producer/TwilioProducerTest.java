@@ -11,11 +11,13 @@ import com.twilio.maxwell.service.TwilioRowMapService;
 import com.twilio.maxwell.service.TwilioRowMapServiceImpl;
 import com.twilio.piedpiper.client.PiedPiperProducer;
 import com.twilio.sids.AccountSid;
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.MaxwellTestJSON;
 import com.zendesk.maxwell.MaxwellTestSupport;
 import com.zendesk.maxwell.MaxwellTestWithIsolatedServer;
 import com.zendesk.maxwell.MysqlIsolatedServer;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
 import com.zendesk.maxwell.producer.EncryptionMode;
 import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import com.zendesk.maxwell.row.RowMap;
@@ -25,6 +27,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +41,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -107,8 +111,9 @@ public class TwilioProducerTest extends MaxwellTestWithIsolatedServer {
 		twilioProducer.push(list.get(0));
 
 
-		verify(piedPiperProducer, times(1)).send(any());
+		verify(piedPiperProducer, timeout(5000).times(1)).send(any());
 
+		awaitCount(succeededMessageCount, 1L);
 		assertThat(failedMessageCount.getCount(), is(0L));
 		assertThat(succeededMessageCount.getCount(), is(1L));
 
@@ -119,6 +124,7 @@ public class TwilioProducerTest extends MaxwellTestWithIsolatedServer {
 		twilioProducer.push(list.get(0));
 
 
+		awaitCount(failedMessageCount, 1L);
 		assertThat(failedMessageCount.getCount(), is(1L));
 		assertThat(succeededMessageCount.getCount(), is(1L));
 
@@ -131,11 +137,78 @@ public class TwilioProducerTest extends MaxwellTestWithIsolatedServer {
 
 		twilioProducer.push(list.get(0));
 
+		awaitCount(failedMessageCount, 2L);
 		assertThat(failedMessageCount.getCount(), is(2L));
 		assertThat(succeededMessageCount.getCount(), is(1L));
 
 	}
 
+	@Test
+	public void testResolvesEachAccountOncePerBatch() throws Exception {
+		MaxwellContext context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(new MaxwellConfig());
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+
+		ClientService clientService = mock(ClientService.class);
+		TwilioRowMapService rowMapService = mock(TwilioRowMapService.class);
+		PiedPiperProducer piedPiperProducer = mock(PiedPiperProducer.class);
+
+		when(rowMapService.isNotInsert(any())).thenReturn(false);
+		when(rowMapService.getAccountSid(any())).thenReturn("AC12345678901234567890123456789012");
+		when(rowMapService.buildDebugEventRecord(any(), any())).thenThrow(new TwilioRowMapService.ParseException("test"));
+
+		TwilioProducer twilioProducer = new TwilioProducer(context, clientService, rowMapService, piedPiperProducer, 10, 1000, 2, 100);
+		for ( int i = 0; i < 10; i++ )
+			twilioProducer.push(new RowMap("insert", "db", "twilioevent", 1000L, new ArrayList<String>(), null));
+
+		verify(rowMapService, timeout(5000).times(10)).buildDebugEventRecord(any(), any());
+		verify(clientService, times(1)).getAccount("AC12345678901234567890123456789012");
+		twilioProducer.getStoppableTask().requestStop();
+	}
+
+	@Test
+	public void testSendsInGroups() throws Exception {
+		MaxwellContext context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(new MaxwellConfig());
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+
+		ClientService clientService = mock(ClientService.class);
+		PiedPiperProducer piedPiperProducer = mock(PiedPiperProducer.class);
+		RecordMetadata recordMetadata = new RecordMetadata(new TopicPartition("topic",1), 1L,1L,1L,1L,1,1);
+		when(piedPiperProducer.send(any())).thenAnswer(correctAnswer(recordMetadata));
+
+		Account account = mock(Account.class);
+		when(account.getParentAccountSid()).thenReturn(Optional.absent());
+		when(account.getSid()).thenReturn(AccountSid.parse("AC12345678901234567890123456789012"));
+		when(clientService.getAccount("AC12345678901234567890123456789012")).thenReturn(account);
+
+		// 7 rows in one batch go out as groups of 3, 3 and 1
+		TwilioProducer twilioProducer = new TwilioProducer(context, clientService, new TwilioRowMapServiceImpl(), piedPiperProducer, 10, 1000, 2, 100, 3);
+
+		Field sf = twilioProducer.getClass().getSuperclass().getDeclaredField("succeededMessageCount");
+		sf.setAccessible(true);
+		Counter succeededMessageCount = (Counter) sf.get(twilioProducer);
+
+		for ( int i = 0; i < 7; i++ ) {
+			RowMap r = new RowMap("insert", "db", "twilioevent", 1000L, new ArrayList<String>(), null);
+			r.putData("accountsid", "AC12345678901234567890123456789012");
+			r.putData("sid", "NO1234567890123456789012345678901" + i);
+			r.putData("datecreated", "2019-02-14 11:25:15");
+			twilioProducer.push(r);
+		}
+
+		verify(piedPiperProducer, timeout(5000).times(7)).send(any());
+		awaitCount(succeededMessageCount, 7L);
+		assertThat(succeededMessageCount.getCount(), is(7L));
+		twilioProducer.getStoppableTask().requestStop();
+	}
+
+	private static void awaitCount(Counter counter, long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( counter.getCount() < count && System.currentTimeMillis() < deadline )
+			Thread.sleep(10);
+	}
+
 
 	private static Answer<ListenableFuture<RecordMetadata>> correctAnswer(RecordMetadata recordMetadata) {
 		return invocationOnMock ->
@@ -0,0 +1,133 @@
+package com.twilio.maxwell.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.twilio.client.account.AccountClient;
+import com.twilio.domain.account.Account;
+import com.twilio.sids.AccountSid;
+import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CacheClientServiceTest {
+	private static final String SID = "AC0123456789abcdef0123456789abcdef";
+
+	private AccountClient accountClient;
+	private Metrics metrics;
+
+	@Before
+	public void setUp() {
+		// whatever future type the client hands back, deep stubs give us one to stub
+		accountClient = mock(AccountClient.class, RETURNS_DEEP_STUBS);
+		metrics = new NoOpMetrics() {
+			@Override
+			public <T extends Metric> void register(String name, T metric) {
+				metricRegistry.register(name, metric);
+			}
+		};
+	}
+
+	private CacheClientService buildService(long expireAfterWriteMS, long refreshAfterWriteMS, long negativeTtlMS) {
+		return new CacheClientService(accountClient, metrics, 100, expireAfterWriteMS, refreshAfterWriteMS, negativeTtlMS, 1);
+	}
+
+	private long loads() {
+		return metrics.getRegistry().timer(metrics.metricName("account_cache", "load", "time")).getCount();
+	}
+
+	private long gauge(String name) {
+		Gauge<?> gauge = metrics.getRegistry().getGauges().get(metrics.metricName("account_cache", name));
+		return ((Number) gauge.getValue()).longValue();
+	}
+
+	@Test
+	public void testRemembersUnknownAccounts() throws Exception {
+		when(accountClient.get(any(AccountSid.class)).get()).thenReturn(null);
+		CacheClientService service = buildService(60000L, 60000L, 60000L);
+
+		assertNull(service.getAccount(SID));
+		assertNull(service.getAccount(SID));
+		assertEquals(1, loads());
+		assertEquals(1, gauge("unknown_hits"));
+	}
+
+	@Test
+	public void testRetriesUnknownAccountsAfterNegativeTtl() throws Exception {
+		Account account = mock(Account.class);
+		when(accountClient.get(any(AccountSid.class)).get()).thenReturn(null, account);
+		CacheClientService service = buildService(60000L, 60000L, 50L);
+
+		assertNull(service.getAccount(SID));
+		Thread.sleep(100);
+		assertSame(account, service.getAccount(SID));
+		assertEquals(2, loads());
+	}
+
+	@Test
+	public void testMalformedSidsAreUnknownWithoutALoad() throws Exception {
+		CacheClientService service = buildService(60000L, 60000L, 60000L);
+
+		assertNull(service.getAccount("not-a-sid"));
+		assertEquals(0, loads());
+	}
+
+	@Test
+	public void testRefreshesInTheBackgroundAfterWrite() throws Exception {
+		Account first = mock(Account.class);
+		Account second = mock(Account.class);
+		when(accountClient.get(any(AccountSid.class)).get()).thenReturn(first, second);
+		CacheClientService service = buildService(60000L, 50L, 60000L);
+
+		assertSame(first, service.getAccount(SID));
+		Thread.sleep(100);
+
+		// the stale entry keeps being served while it reloads
+		Account account = service.getAccount(SID);
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( account != second && System.currentTimeMillis() < deadline ) {
+			assertSame(first, account);
+			Thread.sleep(10);
+			account = service.getAccount(SID);
+		}
+		assertSame(second, account);
+		assertEquals(2, loads());
+	}
+
+	@Test
+	public void testGetCachedAccountDoesNotLoad() throws Exception {
+		Account account = mock(Account.class);
+		when(accountClient.get(any(AccountSid.class)).get()).thenReturn(account);
+		CacheClientService service = buildService(60000L, 60000L, 60000L);
+
+		assertNull(service.getCachedAccount(SID));
+		assertEquals(0, loads());
+
+		service.getAccount(SID);
+		assertSame(account, service.getCachedAccount(SID));
+		assertEquals(1, loads());
+	}
+
+	@Test
+	public void testReportsCacheMetrics() throws Exception {
+		Account account = mock(Account.class);
+		when(accountClient.get(any(AccountSid.class)).get()).thenReturn(account);
+		CacheClientService service = buildService(60000L, 60000L, 60000L);
+
+		service.getAccount(SID);
+		service.getAccount(SID);
+		service.getAccount(SID);
+
+		assertEquals(1, gauge("size"));
+		assertEquals(1, gauge("misses"));
+		assertEquals(2, gauge("hits"));
+		assertEquals(0, gauge("load_failures"));
+		assertEquals(1, loads());
+	}
+}
@@ -25,6 +25,19 @@ public class BootstrapIntegrationTest extends MaxwellTestWithIsolatedServer {
 		runJSON("json/bootstrap-multiple-row");
 	}
 
+	@Test
+	public void testChunkedBootstrap() throws Exception {
+		runJSON("json/bootstrap-multiple-row", (c) -> {
+			c.bootstrapChunkSize = 1;
+			c.bootstrapThreads = 2;
+		});
+	}
+
+	@Test
+	public void testChunkedBootstrapWithWhereclause() throws Exception {
+		runJSON("json/bootstrap-multiple-row-with-whereclause", (c) -> c.bootstrapChunkSize = 2);
+	}
+
 	@Test
 	public void testMultipleRowBootstrapWithWhereclause() throws Exception {
 		runJSON("json/bootstrap-multiple-row-with-whereclause");
@@ -3,6 +3,8 @@ package com.zendesk.maxwell;
 import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.producer.ProducerFactory;
 import com.zendesk.maxwell.producer.StdoutProducer;
+import com.zendesk.maxwell.row.JsonRowSerializer;
+import com.zendesk.maxwell.row.RowSerializer;
 import joptsimple.OptionException;
 import org.junit.Rule;
 import org.junit.Test;
@@ -82,6 +84,19 @@ public class MaxwellConfigTest
 		assertEquals("100", config.kafkaProperties.getProperty("retries"));
 	}
 	
+	@Test
+	public void testDefaultRowSerializer() {
+		config = new MaxwellConfig(new String[] {});
+		assertTrue(config.buildRowSerializer(config.outputConfig) instanceof JsonRowSerializer);
+	}
+
+	@Test
+	public void testRowSerializerFromOutputFormat() {
+		config = new MaxwellConfig(new String[] { "--output_format=" + JsonRowSerializer.class.getName() });
+		RowSerializer serializer = config.buildRowSerializer(config.outputConfig);
+		assertTrue(serializer instanceof JsonRowSerializer);
+	}
+
 	private String getTestConfigDir() {
 		return System.getProperty("user.dir") + "/src/test/resources/config/";
 	}
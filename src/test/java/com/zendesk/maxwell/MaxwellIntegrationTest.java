@@ -263,6 +263,25 @@ public class MaxwellIntegrationTest extends MaxwellTestWithIsolatedServer {
 		assertThat(list.get(0).getTable(), is("bars"));
 	}
 
+	@Test
+	public void testFilterRowTypes() throws Exception {
+		List<RowMap> list;
+		String input[] = {
+			"INSERT into foo.bars set something = 'hi'",
+			"UPDATE foo.bars set something = 'there'",
+			"DELETE from foo.bars"
+		};
+
+		Filter filter = new Filter();
+		filter.setRowTypes("insert,delete");
+
+		list = getRowsForSQL(filter, input, createDBs);
+
+		assertThat(list.size(), is(2));
+		assertThat(list.get(0).getRowType(), is("insert"));
+		assertThat(list.get(1).getRowType(), is("delete"));
+	}
+
 	@Test
 	public void testExcludeColumns() throws Exception {
 		List<RowMap> list;
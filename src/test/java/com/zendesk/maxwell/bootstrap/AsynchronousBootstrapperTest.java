@@ -0,0 +1,144 @@
+package com.zendesk.maxwell.bootstrap;
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.producer.AbstractProducer;
+import com.zendesk.maxwell.replication.Replicator;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class AsynchronousBootstrapperTest {
+	private MaxwellContext context;
+	private SynchronousBootstrapper synchronousBootstrapper;
+	private AbstractProducer producer;
+	private Replicator replicator;
+	private CountDownLatch release;
+
+	@Before
+	public void setUp() throws Exception {
+		MaxwellConfig config = new MaxwellConfig();
+		config.bootstrapConcurrency = 2;
+
+		// no recorded start position: every skipped row is replayed
+		ResultSet resultSet = mock(ResultSet.class);
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(statement.executeQuery()).thenReturn(resultSet);
+		Connection connection = mock(Connection.class);
+		when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+		context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMaxwellConnection()).thenReturn(connection);
+
+		release = new CountDownLatch(1);
+		synchronousBootstrapper = mock(SynchronousBootstrapper.class);
+		doAnswer(invocation -> {
+			release.await();
+			return null;
+		}).when(synchronousBootstrapper).startBootstrap(any(), any(), any());
+
+		producer = mock(AbstractProducer.class);
+		replicator = mock(Replicator.class);
+	}
+
+	private AsynchronousBootstrapper buildBootstrapper() throws Exception {
+		final SynchronousBootstrapper s = synchronousBootstrapper;
+		return new AsynchronousBootstrapper(context) {
+			@Override
+			protected SynchronousBootstrapper getSynchronousBootstrapper() {
+				return s;
+			}
+		};
+	}
+
+	private RowMap bootstrapRow(long id, String table) {
+		RowMap row = new RowMap("insert", "maxwell", "bootstrap", 1000L, new ArrayList<String>(), null);
+		row.putData("id", id);
+		row.putData("database_name", "db");
+		row.putData("table_name", table);
+		return row;
+	}
+
+	private RowMap row(String table) {
+		return new RowMap("insert", "db", table, 1000L, new ArrayList<String>(), null);
+	}
+
+	@Test
+	public void testBootstrapsTablesConcurrently() throws Exception {
+		AsynchronousBootstrapper bootstrapper = buildBootstrapper();
+
+		bootstrapper.startBootstrap(bootstrapRow(1, "a"), producer, replicator);
+		bootstrapper.startBootstrap(bootstrapRow(2, "b"), producer, replicator);
+		bootstrapper.startBootstrap(bootstrapRow(3, "c"), producer, replicator);
+
+		// two run, the third waits for a slot
+		verify(synchronousBootstrapper, timeout(5000).times(2)).startBootstrap(any(), any(), any());
+		assertTrue(bootstrapper.isRunning());
+
+		RowMap skipped = row("a");
+		assertTrue(bootstrapper.shouldSkip(skipped));
+		assertTrue(bootstrapper.shouldSkip(row("c")));
+		assertFalse(bootstrapper.shouldSkip(row("d")));
+
+		release.countDown();
+		bootstrapper.completeBootstrap(bootstrapRow(1, "a"), producer, replicator);
+
+		verify(producer).push(argThat(r -> r != null && "a".equals(r.getTable())));
+		verify(synchronousBootstrapper).completeBootstrap(any(), any(), any());
+		verify(synchronousBootstrapper, timeout(5000).times(3)).startBootstrap(any(), any(), any());
+		assertFalse(bootstrapper.shouldSkip(row("a")));
+		assertTrue(bootstrapper.shouldSkip(row("c")));
+	}
+
+	@Test
+	public void testRepeatedTableWaitsForEarlierRequest() throws Exception {
+		AsynchronousBootstrapper bootstrapper = buildBootstrapper();
+
+		bootstrapper.startBootstrap(bootstrapRow(1, "a"), producer, replicator);
+		bootstrapper.startBootstrap(bootstrapRow(2, "a"), producer, replicator);
+
+		Thread.sleep(100);
+		verify(synchronousBootstrapper, times(1)).startBootstrap(any(), any(), any());
+
+		release.countDown();
+		bootstrapper.completeBootstrap(bootstrapRow(1, "a"), producer, replicator);
+		verify(synchronousBootstrapper, timeout(5000).times(2)).startBootstrap(any(), any(), any());
+		assertTrue(bootstrapper.shouldSkip(row("a")));
+	}
+
+	@Test
+	public void testCompletesBootstrapWithTheBootstrapperThatStartedIt() throws Exception {
+		// the first is the shared one, the rest one per bootstrap
+		final List<SynchronousBootstrapper> created = new ArrayList<>();
+		AsynchronousBootstrapper bootstrapper = new AsynchronousBootstrapper(context) {
+			@Override
+			protected SynchronousBootstrapper getSynchronousBootstrapper() {
+				SynchronousBootstrapper s = mock(SynchronousBootstrapper.class);
+				created.add(s);
+				return s;
+			}
+		};
+
+		bootstrapper.startBootstrap(bootstrapRow(1, "a"), producer, replicator);
+		bootstrapper.join();
+		bootstrapper.completeBootstrap(bootstrapRow(1, "a"), producer, replicator);
+
+		assertEquals(2, created.size());
+		verify(created.get(1)).startBootstrap(any(), any(), any());
+		verify(created.get(1)).completeBootstrap(any(), any(), any());
+		verify(created.get(0), never()).completeBootstrap(any(), any(), any());
+	}
+}
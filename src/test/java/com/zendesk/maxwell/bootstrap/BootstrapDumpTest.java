@@ -0,0 +1,137 @@
+package com.zendesk.maxwell.bootstrap;
+
+import com.zendesk.maxwell.replication.BinlogPosition;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BootstrapDumpTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String MYDUMPER_METADATA =
+		"Started dump at: 2019-02-14 11:25:15\n" +
+		"SHOW MASTER STATUS:\n" +
+		"\tLog: mysql-bin.000003\n" +
+		"\tPos: 1234\n" +
+		"\tGTID:3e11fa47-71ca-11e1-9e33-c80aa9429562:1-5\n" +
+		"\n" +
+		"SHOW SLAVE STATUS:\n" +
+		"\tHost: 10.0.0.1\n" +
+		"\tLog: mysql-bin.000099\n" +
+		"\tPos: 99\n" +
+		"Finished dump at: 2019-02-14 11:25:20\n";
+
+	private File write(String name, String content) throws IOException {
+		File f = new File(folder.getRoot(), name);
+		f.getParentFile().mkdirs();
+		Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return f;
+	}
+
+	private DumpFileReader reader(String content, boolean csv) {
+		return new DumpFileReader("test", new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), csv);
+	}
+
+	private String field(byte[][] record, int i) {
+		return record[i] == null ? null : new String(record[i], StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testParsesMydumperMetadata() throws Exception {
+		BinlogPosition p = BootstrapDump.parseBinlogPosition(MYDUMPER_METADATA, false, "metadata");
+		assertEquals("mysql-bin.000003", p.getFile());
+		assertEquals(1234L, p.getOffset());
+
+		p = BootstrapDump.parseBinlogPosition(MYDUMPER_METADATA, true, "metadata");
+		assertEquals("3e11fa47-71ca-11e1-9e33-c80aa9429562:1-5", p.getGtidSetStr());
+	}
+
+	@Test(expected = IOException.class)
+	public void testEmptyValueDoesntTakeTheNextLine() throws Exception {
+		BootstrapDump.parseBinlogPosition(
+			"SHOW MASTER STATUS:\n" +
+			"\tLog: mysql-bin.000003\n" +
+			"\tPos: 1234\n" +
+			"\tGTID:\n" +
+			"\n" +
+			"SHOW SLAVE STATUS:\n" +
+			"\tGTID:3e11fa47-71ca-11e1-9e33-c80aa9429562:1-5\n", true, "metadata");
+	}
+
+	@Test
+	public void testParsesChangeMasterMetadata() throws Exception {
+		BinlogPosition p = BootstrapDump.parseBinlogPosition(
+			"CHANGE MASTER TO MASTER_LOG_FILE='mysql-bin.000007', MASTER_LOG_POS=154;\n", false, "metadata");
+		assertEquals("mysql-bin.000007", p.getFile());
+		assertEquals(154L, p.getOffset());
+	}
+
+	@Test(expected = IOException.class)
+	public void testRequiresPosition() throws Exception {
+		BootstrapDump.parseBinlogPosition("Started dump at: 2019-02-14 11:25:15\n", false, "metadata");
+	}
+
+	@Test
+	public void testFindsDataFilesInChunkOrder() throws Exception {
+		write("metadata", MYDUMPER_METADATA);
+		write("shard_1.minimal.00010.csv", "");
+		write("shard_1.minimal.00002.csv", "");
+		write("shard_1.minimal-schema.sql", "");
+		write("shard_1.minimal_other.00001.csv", "");
+		write("shard_2/other.txt", "");
+
+		BootstrapDump dump = BootstrapDump.open(folder.getRoot().getPath(), false);
+		List<File> files = dump.dataFiles("shard_1", "minimal");
+		assertEquals(2, files.size());
+		assertEquals("shard_1.minimal.00002.csv", files.get(0).getName());
+		assertEquals("shard_1.minimal.00010.csv", files.get(1).getName());
+
+		assertEquals("other.txt", dump.dataFiles("shard_2", "other").get(0).getName());
+		assertTrue(dump.dataFiles("shard_1", "missing").isEmpty());
+	}
+
+	@Test
+	public void testReadsTabSeparatedRecords() throws Exception {
+		DumpFileReader reader = reader("1\thello\\tworld\t\\N\n2\tline\\\nbreak\t\n", false);
+
+		byte[][] record = reader.next();
+		assertEquals(3, record.length);
+		assertEquals("1", field(record, 0));
+		assertEquals("hello\tworld", field(record, 1));
+		assertNull(field(record, 2));
+
+		record = reader.next();
+		assertEquals("line\nbreak", field(record, 1));
+		assertEquals("", field(record, 2));
+
+		assertNull(reader.next());
+	}
+
+	@Test
+	public void testReadsCSVRecords() throws Exception {
+		DumpFileReader reader = reader("1,\"a, \"\"quoted\"\" value\",\\N,\"\\N\"\n2,plain,\"multi\nline\",x", true);
+
+		byte[][] record = reader.next();
+		assertEquals(4, record.length);
+		assertEquals("a, \"quoted\" value", field(record, 1));
+		assertNull(field(record, 2));
+		assertNull(field(record, 3));
+
+		record = reader.next();
+		assertEquals("plain", field(record, 1));
+		assertEquals("multi\nline", field(record, 2));
+		assertEquals("x", field(record, 3));
+
+		assertNull(reader.next());
+	}
+}
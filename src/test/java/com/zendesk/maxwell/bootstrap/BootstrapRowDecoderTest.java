@@ -0,0 +1,80 @@
+package com.zendesk.maxwell.bootstrap;
+
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.*;
+
+public class BootstrapRowDecoderTest {
+	private Table buildTable() {
+		return new Table("db", "t", "utf8", Arrays.asList(
+			ColumnDef.build("id", null, "int", (short) 0, true, null, null),
+			ColumnDef.build("name", "utf8", "varchar", (short) 1, false, null, 255L),
+			ColumnDef.build("blob", "binary", "varbinary", (short) 2, false, null, 255L),
+			ColumnDef.build("parent_id", null, "bigint", (short) 3, true, null, null)
+		), Arrays.asList("id"));
+	}
+
+	@Test
+	public void testDecodesWithTypedGetters() throws Exception {
+		ResultSet resultSet = mock(ResultSet.class);
+		when(resultSet.getLong(1)).thenReturn(42L);
+		when(resultSet.getString(2)).thenReturn("hello");
+		when(resultSet.getBytes(3)).thenReturn(new byte[] { 1, 2, 3 });
+		when(resultSet.getLong(4)).thenReturn(0L);
+		// id is not null, parent_id is
+		when(resultSet.wasNull()).thenReturn(false, true);
+
+		RowMap row = new RowMap("bootstrap-insert", "db", "t", 1000L, new ArrayList<String>(), null);
+		new BootstrapRowDecoder(buildTable()).decode(resultSet, row);
+
+		assertEquals(42L, row.getData("id"));
+		assertEquals("hello", row.getData("name"));
+		assertEquals("AQID", row.getData("blob"));
+		assertNull(row.getData("parent_id"));
+		verify(resultSet, never()).getObject(anyInt());
+	}
+
+	private byte[] text(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testDecodesDumpFields() throws Exception {
+		Table table = new Table("db", "t", "utf8", Arrays.asList(
+			ColumnDef.build("id", null, "bigint", (short) 0, false, null, null),
+			ColumnDef.build("name", "utf8", "varchar", (short) 1, false, null, 255L),
+			ColumnDef.build("price", null, "decimal", (short) 2, true, null, null),
+			ColumnDef.build("created_at", null, "datetime", (short) 3, true, null, 0L),
+			ColumnDef.build("deleted_at", null, "datetime", (short) 4, true, null, 0L)
+		), Arrays.asList("id"));
+
+		RowMap row = new RowMap("bootstrap-insert", "db", "t", 1000L, new ArrayList<String>(), null);
+		new BootstrapRowDecoder(table).decode(new byte[][] {
+			text("18446744073709551615"), text("h\u00e9llo"), text("12.50"), text("2019-02-14 11:25:15"), null
+		}, row);
+
+		assertEquals(new BigInteger("18446744073709551615"), row.getData("id"));
+		assertEquals("h\u00e9llo", row.getData("name"));
+		assertEquals(new BigDecimal("12.50"), row.getData("price"));
+		assertEquals("2019-02-14 11:25:15", row.getData("created_at"));
+		assertNull(row.getData("deleted_at"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsWrongFieldCount() throws Exception {
+		RowMap row = new RowMap("bootstrap-insert", "db", "t", 1000L, new ArrayList<String>(), null);
+		new BootstrapRowDecoder(buildTable()).decode(new byte[][] { text("1") }, row);
+	}
+}
@@ -171,5 +171,24 @@ public class FilterTest {
 		assertEquals("exclude: *.*.foo=*", rules.get(0).toString());
 		assertEquals("include: *.*.foo=bar", rules.get(1).toString());
 	}
-}
 
+	@Test
+	public void TestRowTypes() throws Exception {
+		Filter f = new Filter("maxwell", "");
+		assertTrue(f.includesRowType("foo", "update"));
+
+		f.setRowTypes("insert, DELETE");
+		assertTrue(f.includesRowType("foo", "insert"));
+		assertTrue(f.includesRowType("foo", "delete"));
+		assertFalse(f.includesRowType("foo", "update"));
+		assertTrue(f.includesRowType("maxwell", "update"));
+
+		f.setRowTypes("insert,update,delete");
+		assertTrue(f.includesRowType("foo", "update"));
+	}
+
+	@Test(expected = InvalidFilterException.class)
+	public void TestUnknownRowType() throws Exception {
+		new Filter("maxwell", "").setRowTypes("insert,upsert");
+	}
+}
@@ -0,0 +1,69 @@
+package com.zendesk.maxwell.ipc;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RingFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] record(int i) {
+		return String.format("{\"id\":%040d}", i).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testReadsAcrossWraps() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("maxwell.ring");
+		RingFileWriter writer = new RingFileWriter(path, 1024);
+		RingFileReader reader = new RingFileReader(path, "test");
+		RingAckFile acks = RingAckFile.open(path, "test");
+
+		for ( int i = 1; i <= 100; i++ ) {
+			assertEquals(i, writer.write(record(i)));
+			assertEquals(new String(record(i), StandardCharsets.UTF_8), new String(reader.poll(), StandardCharsets.UTF_8));
+			assertNull(reader.poll());
+
+			reader.ack();
+			assertEquals(i, acks.getSequence(writer.getEpoch()));
+		}
+	}
+
+	@Test(expected = RingFileReader.RingOverrunException.class)
+	public void testDetectsOverrun() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("maxwell.ring");
+		RingFileWriter writer = new RingFileWriter(path, 1024);
+		RingFileReader reader = new RingFileReader(path, "test");
+
+		for ( int i = 1; i <= 30; i++ )
+			writer.write(record(i));
+
+		reader.poll();
+	}
+
+	@Test
+	public void testReaderResumesAfterAckAndFollowsRestart() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("maxwell.ring");
+		RingFileWriter writer = new RingFileWriter(path, 1024);
+		writer.write(record(1));
+		writer.write(record(2));
+
+		RingFileReader reader = new RingFileReader(path, "test");
+		reader.poll();
+		reader.ack();
+
+		RingFileReader resumed = new RingFileReader(path, "test");
+		assertEquals(new String(record(2), StandardCharsets.UTF_8), new String(resumed.poll(), StandardCharsets.UTF_8));
+
+		RingFileWriter restarted = new RingFileWriter(path, 1024);
+		assertNull(resumed.poll());
+		restarted.write(record(3));
+		assertEquals(new String(record(3), StandardCharsets.UTF_8), new String(resumed.poll(), StandardCharsets.UTF_8));
+	}
+}
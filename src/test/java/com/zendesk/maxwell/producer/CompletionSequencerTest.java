@@ -0,0 +1,29 @@
+package com.zendesk.maxwell.producer;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class CompletionSequencerTest {
+	@Test
+	public void testCompletesInDispatchOrder() {
+		CompletionSequencer sequencer = new CompletionSequencer();
+		AbstractAsyncProducer.CallbackCompleter first = mock(AbstractAsyncProducer.CallbackCompleter.class);
+		AbstractAsyncProducer.CallbackCompleter second = mock(AbstractAsyncProducer.CallbackCompleter.class);
+		sequencer.register(first);
+		sequencer.register(second);
+
+		sequencer.completed(second);
+		verify(first, never()).complete();
+		verify(second, never()).complete();
+		assertEquals(2, sequencer.size());
+
+		sequencer.completed(first);
+		InOrder inOrder = inOrder(first, second);
+		inOrder.verify(first).complete();
+		inOrder.verify(second).complete();
+		assertEquals(0, sequencer.size());
+	}
+}
@@ -0,0 +1,161 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class FileProducerTest {
+	private static final Position POSITION = new Position(new BinlogPosition(4L, "binlog-0001"), 0L);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MaxwellContext buildContext(MaxwellConfig config) {
+		MaxwellContext context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+		return context;
+	}
+
+	private RowMap row(int id, boolean commit) {
+		RowMap r = new RowMap("insert", "db", "tbl", 1000L, new ArrayList<String>(), POSITION);
+		r.putData("id", id);
+		if ( commit )
+			r.setTXCommit();
+		return r;
+	}
+
+	@Test
+	public void testPositionIsStoredOnlyAfterSync() throws Exception {
+		File out = new File(folder.getRoot(), "out.json");
+		MaxwellConfig config = new MaxwellConfig();
+		config.fileSyncIntervalMS = 60000L;
+		MaxwellContext context = buildContext(config);
+
+		FileProducer producer = new FileProducer(context, out.getPath());
+		producer.push(row(1, false));
+		producer.push(row(2, true));
+		verify(context, never()).setPosition(any(Position.class));
+
+		producer.sync();
+		verify(context).setPosition(POSITION);
+
+		List<String> lines = Files.readAllLines(out.toPath());
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(1).contains("\"id\":2"));
+		producer.requestStop();
+	}
+
+	@Test
+	public void testBatchIsSyncedOnce() throws Exception {
+		File out = new File(folder.getRoot(), "out.json");
+		MaxwellConfig config = new MaxwellConfig();
+		config.fileSyncIntervalMS = 0L;
+		MaxwellContext context = buildContext(config);
+
+		FileProducer producer = new FileProducer(context, out.getPath());
+		producer.pushBatch(Arrays.asList(row(1, false), row(2, true), row(3, true)));
+		verify(context, times(1)).setPosition(POSITION);
+		assertEquals(3, Files.readAllLines(out.toPath()).size());
+		producer.requestStop();
+	}
+
+	@Test
+	public void testRotatesCompressedSegments() throws Exception {
+		File out = new File(folder.getRoot(), "out.json.gz");
+		MaxwellConfig config = new MaxwellConfig();
+		config.fileSyncIntervalMS = 0L;
+		config.fileRotateBytes = 1L;
+		config.fileCompression = "gzip";
+
+		FileProducer producer = new FileProducer(buildContext(config), out.getPath());
+		producer.push(row(1, true));
+		producer.push(row(2, true));
+		producer.requestStop();
+
+		File[] segments = folder.getRoot().listFiles();
+		assertEquals(2, segments.length);
+
+		List<String> lines = new ArrayList<>();
+		for ( File f : segments ) {
+			try ( BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(f)), StandardCharsets.UTF_8)) ) {
+				lines.addAll(reader.lines().collect(Collectors.toList()));
+			}
+		}
+		assertEquals(2, lines.size());
+	}
+
+	private List<String> readGzipSegments() throws Exception {
+		List<String> lines = new ArrayList<>();
+		for ( File f : folder.getRoot().listFiles() ) {
+			try ( BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(f)), StandardCharsets.UTF_8)) ) {
+				lines.addAll(reader.lines().collect(Collectors.toList()));
+			}
+		}
+		return lines;
+	}
+
+	@Test
+	public void testRotatedNamesDontCollide() throws Exception {
+		File out = new File(folder.getRoot(), "out.json.gz");
+		MaxwellConfig config = new MaxwellConfig();
+		config.fileSyncIntervalMS = 0L;
+		config.fileRotateBytes = 1L;
+		config.fileCompression = "gzip";
+
+		// several rotations within the same millisecond get distinct names
+		FileProducer producer = new FileProducer(buildContext(config), out.getPath());
+		for ( int i = 0; i < 5; i++ )
+			producer.push(row(i, true));
+		producer.requestStop();
+
+		assertEquals(5, folder.getRoot().listFiles().length);
+		assertEquals(5, readGzipSegments().size());
+	}
+
+	@Test
+	public void testRotatesCompressedFileLeftFromPreviousRun() throws Exception {
+		File out = new File(folder.getRoot(), "out.json.gz");
+		MaxwellConfig config = new MaxwellConfig();
+		config.fileSyncIntervalMS = 0L;
+		config.fileCompression = "gzip";
+
+		FileProducer producer = new FileProducer(buildContext(config), out.getPath());
+		producer.push(row(1, true));
+		producer.requestStop();
+
+		producer = new FileProducer(buildContext(config), out.getPath());
+		producer.push(row(2, true));
+		producer.requestStop();
+
+		assertEquals(2, folder.getRoot().listFiles().length);
+		try ( BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(out)), StandardCharsets.UTF_8)) ) {
+			List<String> lines = reader.lines().collect(Collectors.toList());
+			assertEquals(1, lines.size());
+			assertTrue(lines.get(0).contains("\"id\":2"));
+		}
+		assertEquals(2, readGzipSegments().size());
+	}
+}
@@ -0,0 +1,62 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.row.RowMap;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class KafkaPartitionLanesTest {
+	private RowMap row(String table) {
+		return new RowMap("insert", "db", table, 1000L, new ArrayList<String>(), null);
+	}
+
+	@Test
+	public void testSendsRowsInDispatchOrderSequence() throws Exception {
+		MaxwellKafkaProducerWorker worker = mock(MaxwellKafkaProducerWorker.class);
+		KafkaPartitionLanes lanes = new KafkaPartitionLanes(mock(MaxwellContext.class), 2, worker);
+
+		try {
+			for ( int p = 0; p < 4; p++ ) {
+				RowMap r = row("t" + p);
+				AbstractAsyncProducer.CallbackCompleter cc = mock(AbstractAsyncProducer.CallbackCompleter.class);
+				ProducerRecord<String, byte[]> record = new ProducerRecord<>("maxwell", p, "key", new byte[0]);
+				KafkaCallback callback = mock(KafkaCallback.class);
+
+				when(worker.makeProducerRecord("maxwell", p, r)).thenReturn(record);
+				when(worker.makeCallback(record, r, cc)).thenReturn(callback);
+
+				lanes.dispatch("maxwell", p, r, cc);
+
+				// the row completes through its own callback, in dispatch order across lanes
+				verify(cc).sequenceBy(any(CompletionSequencer.class));
+				verify(worker, timeout(5000)).sendAsync(record, callback);
+			}
+		} finally {
+			lanes.requestStop();
+			lanes.awaitStop(5000L);
+		}
+	}
+
+	@Test
+	public void testSamePartitionAlwaysMapsToSameLane() {
+		int lane = KafkaPartitionLanes.laneFor("maxwell", 17, 8);
+		for ( int i = 0; i < 10; i++ )
+			assertEquals(lane, KafkaPartitionLanes.laneFor("maxwell", 17, 8));
+
+		for ( int p = 0; p < 256; p++ ) {
+			int l = KafkaPartitionLanes.laneFor("some_db_some_table", p, 8);
+			assertTrue("lane " + l + " out of range", l >= 0 && l < 8);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRequiresALane() {
+		KafkaPartitionLanes.laneFor("maxwell", 1, 0);
+	}
+}
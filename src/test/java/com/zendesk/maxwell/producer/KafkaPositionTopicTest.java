@@ -0,0 +1,44 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class KafkaPositionTopicTest {
+	@Test
+	public void testEncodeDecode() throws Exception {
+		Position position = new Position(BinlogPosition.at(4L, "master.000001"), 1234L);
+		Position decoded = KafkaPositionTopic.decode(KafkaPositionTopic.encode(position));
+
+		assertEquals(position, decoded);
+		assertNull(decoded.getBinlogPosition().getGtidSetStr());
+	}
+
+	@Test
+	public void testEncodeDecodeWithGtid() throws Exception {
+		String gtidSet = "3e11fa47-71ca-11e1-9e33-c80aa9429562:1-5";
+		Position position = new Position(BinlogPosition.at(gtidSet, 154L, "master.000003"), 0L);
+		Position decoded = KafkaPositionTopic.decode(KafkaPositionTopic.encode(position));
+
+		assertEquals("master.000003", decoded.getBinlogPosition().getFile());
+		assertEquals(154L, decoded.getBinlogPosition().getOffset());
+		assertEquals(gtidSet, decoded.getBinlogPosition().getGtidSetStr());
+	}
+
+	@Test
+	public void testRecordIsKeyedByClientID() throws Exception {
+		Position position = new Position(BinlogPosition.at(4L, "master.000001"), 0L);
+		ProducerRecord<String, byte[]> record = new KafkaPositionTopic("maxwell_positions", "client").makeRecord(position);
+
+		assertEquals("maxwell_positions", record.topic());
+		assertEquals(Integer.valueOf(0), record.partition());
+		assertEquals("client", record.key());
+		assertEquals(position, KafkaPositionTopic.decode(new String(record.value(), StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,102 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.producer.grpc.RowStreamServer;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class MaxwellGrpcProducerTest {
+	private static final Position POSITION = new Position(new BinlogPosition(4L, "binlog-0001"), 0L);
+
+	private RowStreamServer server;
+	private MaxwellGrpcProducer producer;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new RowStreamServer("grpc-producer-test-" + UUID.randomUUID()).start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if ( producer != null )
+			producer.getStoppableTask().requestStop();
+		server.stop();
+	}
+
+	private MaxwellContext buildContext(MaxwellConfig config) {
+		MaxwellContext context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+		return context;
+	}
+
+	private MaxwellConfig buildConfig() {
+		MaxwellConfig config = new MaxwellConfig();
+		config.grpcTarget = server.getTarget();
+		config.grpcStreams = 2;
+		config.grpcBatchSize = 10;
+		config.producerPartitionKey = "table";
+		return config;
+	}
+
+	private RowMap row(String table, int id, boolean commit) {
+		RowMap r = new RowMap("insert", "db", table, 1000L, new ArrayList<String>(), POSITION);
+		r.putData("id", id);
+		if ( commit )
+			r.setTXCommit();
+		return r;
+	}
+
+	@Test
+	public void testStreamsRowsAndStoresPositionOnAck() throws Exception {
+		MaxwellContext context = buildContext(buildConfig());
+		producer = new MaxwellGrpcProducer(context);
+
+		producer.push(row("users", 1, false));
+		producer.push(row("orders", 2, false));
+		producer.push(row("users", 3, true));
+
+		assertTrue(server.awaitRows(3, 5000));
+		verify(context, timeout(5000)).setPosition(POSITION);
+
+		List<byte[]> rows = server.getRows();
+		assertEquals(3, rows.size());
+
+		List<String> users = new ArrayList<>();
+		for ( byte[] row : rows ) {
+			String json = new String(row, StandardCharsets.UTF_8);
+			if ( json.contains("\"table\":\"users\"") )
+				users.add(json);
+		}
+		assertEquals(2, users.size());
+		assertTrue(users.get(0).contains("\"id\":1"));
+		assertTrue(users.get(1).contains("\"id\":3"));
+	}
+
+	@Test
+	public void testRejectedBatchTerminates() throws Exception {
+		server.rejectBatches(true);
+		MaxwellContext context = buildContext(buildConfig());
+		producer = new MaxwellGrpcProducer(context);
+
+		producer.push(row("users", 1, true));
+
+		verify(context, timeout(5000)).terminate(any(RuntimeException.class));
+		verify(context, never()).setPosition(any(Position.class));
+	}
+}
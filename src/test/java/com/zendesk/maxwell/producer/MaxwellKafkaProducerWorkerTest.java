@@ -3,13 +3,26 @@ package com.zendesk.maxwell.producer;
 import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowMap;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Properties;
 import java.util.concurrent.TimeoutException;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
 
 public class MaxwellKafkaProducerWorkerTest {
 
@@ -26,4 +39,82 @@ public class MaxwellKafkaProducerWorkerTest {
 		MaxwellKafkaProducerWorker worker = new MaxwellKafkaProducerWorker(context, kafkaProperties, kafkaTopic, null);
 		worker.close();
 	}
+
+	private MaxwellContext transactionalContext(int batchSize) {
+		MaxwellContext context = mock(MaxwellContext.class);
+		MaxwellConfig config = new MaxwellConfig();
+		config.kafkaTransactional = true;
+		config.kafkaTransactionBatchSize = batchSize;
+		config.kafkaTransactionMaxMS = 60000L;
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+		return context;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Producer<String, byte[]> mockKafka() {
+		Producer<String, byte[]> kafka = mock(Producer.class);
+		when(kafka.partitionsFor(anyString()))
+			.thenReturn(Collections.singletonList(new PartitionInfo("maxwell", 0, null, null, null)));
+		return kafka;
+	}
+
+	private KafkaPositionTopic positionTopic() throws Exception {
+		KafkaPositionTopic positionTopic = spy(new KafkaPositionTopic("maxwell_positions", "maxwell"));
+		doReturn(null).when(positionTopic).readCommitted(any(Properties.class));
+		return positionTopic;
+	}
+
+	private RowMap commitRow(long offset) {
+		Position position = new Position(BinlogPosition.at(offset, "master.000001"), 0L);
+		RowMap r = new RowMap("insert", "db", "t", 1000L, new ArrayList<String>(), position, position, null);
+		r.putData("id", offset);
+		r.setTXCommit();
+		return r;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRowsCompleteOnlyAfterCommit() throws Exception {
+		Producer<String, byte[]> kafka = mockKafka();
+		MaxwellKafkaProducerWorker worker = new MaxwellKafkaProducerWorker(
+			transactionalContext(2), new Properties(), "maxwell", null, kafka, positionTopic());
+
+		AbstractAsyncProducer.CallbackCompleter first = mock(AbstractAsyncProducer.CallbackCompleter.class);
+		AbstractAsyncProducer.CallbackCompleter second = mock(AbstractAsyncProducer.CallbackCompleter.class);
+
+		worker.sendAsync(commitRow(4L), first);
+		verify(kafka, never()).commitTransaction();
+		verify(first, never()).markCompleted();
+
+		worker.sendAsync(commitRow(8L), second);
+
+		InOrder inOrder = inOrder(kafka, first, second);
+		inOrder.verify(kafka).beginTransaction();
+		inOrder.verify(kafka).send(any(ProducerRecord.class));
+		inOrder.verify(kafka).commitTransaction();
+		inOrder.verify(first).markCompleted();
+		inOrder.verify(second).markCompleted();
+	}
+
+	@Test
+	public void testFailedCommitAbortsAndLeavesRowsIncomplete() throws Exception {
+		Producer<String, byte[]> kafka = mockKafka();
+		KafkaException failure = new KafkaException("commit failed");
+		doThrow(failure).when(kafka).commitTransaction();
+
+		MaxwellKafkaProducerWorker worker = new MaxwellKafkaProducerWorker(
+			transactionalContext(1), new Properties(), "maxwell", null, kafka, positionTopic());
+		AbstractAsyncProducer.CallbackCompleter cc = mock(AbstractAsyncProducer.CallbackCompleter.class);
+
+		try {
+			worker.sendAsync(commitRow(4L), cc);
+			fail("expected the commit to fail");
+		} catch ( KafkaException e ) {
+			assertSame(failure, e);
+		}
+
+		verify(kafka).abortTransaction();
+		verify(cc, never()).markCompleted();
+	}
 }
@@ -0,0 +1,155 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class MaxwellRedisProducerWorkerTest {
+	private MaxwellContext context;
+	private MaxwellConfig config;
+	private JedisPool pool;
+	private Pipeline pipeline;
+
+	@Before
+	public void setUp() {
+		context = mock(MaxwellContext.class);
+		config = new MaxwellConfig();
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+
+		pool = mock(JedisPool.class);
+		Jedis jedis = mock(Jedis.class);
+		pipeline = mock(Pipeline.class);
+		when(pool.getResource()).thenReturn(jedis);
+		when(jedis.pipelined()).thenReturn(pipeline);
+	}
+
+	private MaxwellRedisProducerWorker worker(String type, int batchSize, long lingerMS, ArrayBlockingQueue<RowMap> queue) {
+		config.redisBatchSize = batchSize;
+		config.redisLingerMS = lingerMS;
+		return new MaxwellRedisProducerWorker(context, "maxwell", "maxwell_list", type, queue, pool);
+	}
+
+	private RowMap row(long id) {
+		RowMap r = new RowMap("insert", "db", "t", 1000L, new ArrayList<String>(), null);
+		r.putData("id", id);
+		return r;
+	}
+
+	@Test
+	public void testSendsFullBatchAsOnePipeline() throws Exception {
+		MaxwellRedisProducerWorker worker = worker("lpush", 3, 0L, null);
+		AbstractAsyncProducer.CallbackCompleter cc = mock(AbstractAsyncProducer.CallbackCompleter.class);
+
+		RowMap a = row(1L), b = row(2L), c = row(3L);
+		worker.sendAsync(a, cc);
+		worker.sendAsync(b, cc);
+		verify(pool, never()).getResource();
+		verify(cc, never()).markCompleted();
+
+		worker.sendAsync(c, cc);
+		verify(pipeline).lpush("maxwell_list",
+			worker.serializer.serializeText(a), worker.serializer.serializeText(b), worker.serializer.serializeText(c));
+		verify(pipeline, times(1)).sync();
+		verify(cc, times(3)).markCompleted();
+	}
+
+	@Test
+	public void testRunsCompletionCallbacksOnceRowsAreSent() throws Exception {
+		MaxwellRedisProducerWorker worker = worker("lpush", 2, 0L, null);
+		AtomicInteger completed = new AtomicInteger();
+
+		RowMap a = row(1L), b = row(2L);
+		a.setCompletionCallback(completed::incrementAndGet);
+		b.setCompletionCallback(completed::incrementAndGet);
+
+		worker.push(a);
+		assertEquals(0, completed.get());
+
+		worker.push(b);
+		verify(pipeline, times(1)).sync();
+		assertEquals(2, completed.get());
+	}
+
+	@Test
+	public void testLingerSendsPartialBatches() throws Exception {
+		ArrayBlockingQueue<RowMap> queue = new ArrayBlockingQueue<>(10);
+		MaxwellRedisProducerWorker worker = worker("pubsub", 100, 100L, queue);
+		Thread thread = new Thread(worker, "redis-worker-test");
+		thread.setDaemon(true);
+		thread.start();
+
+		try {
+			RowMap a = row(1L);
+			queue.put(a);
+			verify(pipeline, timeout(5000)).publish("maxwell", worker.serializer.serializeText(a));
+			verify(pipeline, timeout(5000).times(1)).sync();
+
+			// a row arriving after the first batch went out starts a new linger window
+			RowMap b = row(2L), c = row(3L);
+			queue.put(b);
+			queue.put(c);
+			verify(pipeline, timeout(5000)).publish("maxwell", worker.serializer.serializeText(c));
+			verify(pipeline, timeout(5000).times(2)).sync();
+			verify(pipeline).publish("maxwell", worker.serializer.serializeText(b));
+		} finally {
+			worker.requestStop();
+			worker.awaitStop(1000L);
+		}
+	}
+
+	@Test
+	public void testRetriesOnceAfterLostConnection() throws Exception {
+		doThrow(new JedisConnectionException("gone")).doNothing().when(pipeline).sync();
+		MaxwellRedisProducerWorker worker = worker("pubsub", 1, 0L, null);
+		AbstractAsyncProducer.CallbackCompleter cc = mock(AbstractAsyncProducer.CallbackCompleter.class);
+
+		worker.sendAsync(row(1L), cc);
+
+		verify(pool, times(2)).getResource();
+		verify(cc).markCompleted();
+		verify(context, never()).terminate(any());
+	}
+
+	@Test
+	public void testTerminatesOnError() throws Exception {
+		config.ignoreProducerError = false;
+		doThrow(new JedisConnectionException("gone")).when(pipeline).sync();
+		MaxwellRedisProducerWorker worker = worker("pubsub", 1, 0L, null);
+		AbstractAsyncProducer.CallbackCompleter cc = mock(AbstractAsyncProducer.CallbackCompleter.class);
+
+		worker.sendAsync(row(1L), cc);
+
+		verify(context).terminate(any(RuntimeException.class));
+		verify(cc, never()).markCompleted();
+	}
+
+	@Test
+	public void testCompletesFailedBatchWhenIgnoringErrors() throws Exception {
+		config.ignoreProducerError = true;
+		doThrow(new IllegalStateException("boom")).when(pipeline).sync();
+		MaxwellRedisProducerWorker worker = worker("pubsub", 2, 0L, null);
+		AbstractAsyncProducer.CallbackCompleter cc = mock(AbstractAsyncProducer.CallbackCompleter.class);
+
+		worker.sendAsync(row(1L), cc);
+		worker.sendAsync(row(2L), cc);
+
+		verify(context, never()).terminate(any());
+		verify(cc, times(2)).markCompleted();
+	}
+}
@@ -0,0 +1,117 @@
+package com.zendesk.maxwell.producer;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class MaxwellSQSProducerWorkerTest {
+	private MaxwellContext context;
+	private MaxwellConfig config;
+	private AmazonSQSAsync client;
+
+	@Before
+	public void setUp() {
+		context = mock(MaxwellContext.class);
+		config = new MaxwellConfig();
+		config.sqsBatchSize = 1;
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+		client = mock(AmazonSQSAsync.class);
+	}
+
+	private RowMap row(String database, long id) {
+		RowMap r = new RowMap("insert", database, "t", 1000L, new ArrayList<String>(), null);
+		r.putData("id", id);
+		return r;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<SQSBatchCallback> callbacks(int count) {
+		ArgumentCaptor<AsyncHandler> captor = ArgumentCaptor.forClass(AsyncHandler.class);
+		verify(client, timeout(5000).times(count)).sendMessageBatchAsync(any(SendMessageBatchRequest.class), captor.capture());
+		List<SQSBatchCallback> callbacks = new ArrayList<>();
+		for ( AsyncHandler h : captor.getAllValues() )
+			callbacks.add((SQSBatchCallback) h);
+		return callbacks;
+	}
+
+	private SendMessageBatchResult failure(String id) {
+		BatchResultErrorEntry err = new BatchResultErrorEntry().withId(id).withCode("InternalError").withSenderFault(false);
+		return new SendMessageBatchResult().withFailed(err);
+	}
+
+	private SendMessageBatchResult success(String id) {
+		return new SendMessageBatchResult().withSuccessful(new SendMessageBatchResultEntry().withId(id).withMessageId("m" + id));
+	}
+
+	@Test
+	public void testFifoRetriesBeforeSendingNewerRowsOfTheGroup() throws Exception {
+		MaxwellSQSProducerWorker worker = new MaxwellSQSProducerWorker(context, "https://sqs/queue.fifo", null, client);
+		AbstractAsyncProducer.CallbackCompleter first = mock(AbstractAsyncProducer.CallbackCompleter.class);
+		AbstractAsyncProducer.CallbackCompleter second = mock(AbstractAsyncProducer.CallbackCompleter.class);
+
+		worker.sendAsync(row("shop", 1L), first);
+		SQSBatchCallback firstBatch = callbacks(1).get(0);
+
+		// same message group: has to wait for the first batch
+		Thread sender = new Thread(() -> {
+			try {
+				worker.sendAsync(row("shop", 2L), second);
+			} catch ( Exception e ) {
+				throw new RuntimeException(e);
+			}
+		});
+		sender.start();
+		Thread.sleep(100);
+		verify(client, times(1)).sendMessageBatchAsync(any(SendMessageBatchRequest.class), any(AsyncHandler.class));
+
+		// the failed entry goes out again, still ahead of the newer row
+		firstBatch.onSuccess(null, failure("0"));
+		SQSBatchCallback retry = callbacks(2).get(1);
+		Thread.sleep(100);
+		assertTrue(sender.isAlive());
+
+		retry.onSuccess(null, success("0"));
+		verify(first).markCompleted();
+		sender.join(5000);
+		callbacks(3);
+	}
+
+	@Test
+	public void testFifoSendsOtherGroupsConcurrently() throws Exception {
+		MaxwellSQSProducerWorker worker = new MaxwellSQSProducerWorker(context, "https://sqs/queue.fifo", null, client);
+
+		worker.sendAsync(row("shop", 1L), mock(AbstractAsyncProducer.CallbackCompleter.class));
+		worker.sendAsync(row("billing", 1L), mock(AbstractAsyncProducer.CallbackCompleter.class));
+
+		assertEquals(2, callbacks(2).size());
+	}
+
+	@Test
+	public void testStandardQueueDoesNotWait() throws Exception {
+		MaxwellSQSProducerWorker worker = new MaxwellSQSProducerWorker(context, "https://sqs/queue", null, client);
+
+		worker.sendAsync(row("shop", 1L), mock(AbstractAsyncProducer.CallbackCompleter.class));
+		worker.sendAsync(row("shop", 2L), mock(AbstractAsyncProducer.CallbackCompleter.class));
+
+		assertEquals(2, callbacks(2).size());
+	}
+}
@@ -0,0 +1,150 @@
+package com.zendesk.maxwell.producer;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class RabbitmqAsyncProducerTest {
+	private MaxwellContext context;
+	private MaxwellConfig config;
+	private Connection connection;
+	private Channel channel;
+
+	@Before
+	public void setUp() throws Exception {
+		context = mock(MaxwellContext.class);
+		config = new MaxwellConfig();
+		config.rabbitmqChannels = 1;
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+
+		connection = mock(Connection.class);
+		channel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(channel);
+		when(channel.getNextPublishSeqNo()).thenReturn(1L, 2L, 3L, 4L);
+		when(channel.isOpen()).thenReturn(true);
+	}
+
+	private AbstractAsyncProducer.CallbackCompleter[] publish(RabbitmqAsyncProducer producer, int count) throws Exception {
+		AbstractAsyncProducer.CallbackCompleter[] completers = new AbstractAsyncProducer.CallbackCompleter[count];
+		for ( int i = 0; i < count; i++ ) {
+			RowMap r = new RowMap("insert", "db", "t", 1000L, new ArrayList<String>(), null);
+			r.putData("id", i);
+			completers[i] = mock(AbstractAsyncProducer.CallbackCompleter.class);
+			producer.sendAsync(r, completers[i]);
+		}
+		return completers;
+	}
+
+	@Test
+	public void testSingleAckCompletesOneMessage() throws Exception {
+		RabbitmqAsyncProducer producer = new RabbitmqAsyncProducer(context, connection);
+		AbstractAsyncProducer.CallbackCompleter[] cc = publish(producer, 3);
+
+		producer.confirmListener(0).handleAck(2L, false);
+
+		verify(cc[1]).markCompleted();
+		verify(cc[0], never()).markCompleted();
+		verify(cc[2], never()).markCompleted();
+		assertEquals(2, producer.outstandingConfirms());
+	}
+
+	@Test
+	public void testMultipleAckCompletesEverythingUpToTag() throws Exception {
+		RabbitmqAsyncProducer producer = new RabbitmqAsyncProducer(context, connection);
+		AbstractAsyncProducer.CallbackCompleter[] cc = publish(producer, 4);
+		ConfirmListener listener = producer.confirmListener(0);
+
+		listener.handleAck(3L, true);
+		verify(cc[0]).markCompleted();
+		verify(cc[1]).markCompleted();
+		verify(cc[2]).markCompleted();
+		verify(cc[3], never()).markCompleted();
+
+		// a repeated or overlapping ack doesn't complete anything twice
+		listener.handleAck(4L, true);
+		verify(cc[0], times(1)).markCompleted();
+		verify(cc[3]).markCompleted();
+		assertEquals(0, producer.outstandingConfirms());
+	}
+
+	@Test
+	public void testNackTerminatesWithoutCompleting() throws Exception {
+		config.ignoreProducerError = false;
+		RabbitmqAsyncProducer producer = new RabbitmqAsyncProducer(context, connection);
+		AbstractAsyncProducer.CallbackCompleter[] cc = publish(producer, 2);
+
+		producer.confirmListener(0).handleNack(2L, true);
+
+		verify(context).terminate(any(RuntimeException.class));
+		verify(cc[0], never()).markCompleted();
+		verify(cc[1], never()).markCompleted();
+		assertEquals(0, producer.outstandingConfirms());
+	}
+
+	@Test
+	public void testNackCompletesWhenIgnoringErrors() throws Exception {
+		config.ignoreProducerError = true;
+		RabbitmqAsyncProducer producer = new RabbitmqAsyncProducer(context, connection);
+		AbstractAsyncProducer.CallbackCompleter[] cc = publish(producer, 2);
+
+		producer.confirmListener(0).handleNack(1L, false);
+
+		verify(context, never()).terminate(any());
+		verify(cc[0]).markCompleted();
+		verify(cc[1], never()).markCompleted();
+	}
+
+	@Test
+	public void testAwaitStopWaitsForConfirms() throws Exception {
+		RabbitmqAsyncProducer producer = new RabbitmqAsyncProducer(context, connection);
+		publish(producer, 2);
+
+		Thread confirmer = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+				producer.confirmListener(0).handleAck(2L, true);
+			} catch ( Exception e ) {
+				throw new RuntimeException(e);
+			}
+		});
+		confirmer.start();
+
+		producer.requestStop();
+		producer.awaitStop(5000L);
+		confirmer.join();
+
+		assertEquals(0, producer.outstandingConfirms());
+		verify(channel).close();
+		verify(connection).close();
+	}
+
+	@Test
+	public void testAwaitStopTimesOut() throws Exception {
+		RabbitmqAsyncProducer producer = new RabbitmqAsyncProducer(context, connection);
+		publish(producer, 1);
+
+		producer.requestStop();
+		try {
+			producer.awaitStop(50L);
+			fail("expected a timeout");
+		} catch ( TimeoutException e ) { }
+
+		verify(channel).close();
+		verify(connection).close();
+	}
+}
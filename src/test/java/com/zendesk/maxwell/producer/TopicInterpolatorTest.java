@@ -0,0 +1,32 @@
+package com.zendesk.maxwell.producer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TopicInterpolatorTest {
+	@Test
+	public void testStaticTopic() {
+		TopicInterpolator t = new TopicInterpolator("maxwell", "%{database}", "%{table}");
+		assertFalse(t.isInterpolated());
+		assertEquals("maxwell", t.generate("db", "tbl"));
+	}
+
+	@Test
+	public void testInterpolatedTopic() {
+		TopicInterpolator t = new TopicInterpolator("ns_%{database}_%{table}", "%{database}", "%{table}");
+		assertTrue(t.isInterpolated());
+		assertEquals("ns_shard_1_users", t.generate("shard_1", "users"));
+		assertEquals("ns_shard_2_users", t.generate("shard_2", "users"));
+		assertSame(t.generate("shard_1", "users"), t.generate("shard_1", "users"));
+	}
+
+	@Test
+	public void testReplacementIsLiteral() {
+		TopicInterpolator t = new TopicInterpolator("%db%.%table%", "%db%", "%table%");
+		assertEquals("a$1.b\\c", t.generate("a$1", "b\\c"));
+	}
+}
@@ -0,0 +1,34 @@
+package com.zendesk.maxwell.producer.partitioners;
+
+import com.zendesk.maxwell.row.RowMap;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+
+public class MaxwellKinesisPartitionerTest {
+	private static RowMap row(String database) {
+		return new RowMap("insert", database, "tbl", 0L, new ArrayList<>(), null);
+	}
+
+	@Test
+	public void testKeyHashes() {
+		RowMap r = row("db");
+
+		assertEquals("db", new MaxwellKinesisPartitioner("database", null, null, "none").getKinesisKey(r));
+		assertEquals(DigestUtils.md5Hex("db"), new MaxwellKinesisPartitioner("database", null, null, true).getKinesisKey(r));
+		assertEquals(DigestUtils.md5Hex("db"), new MaxwellKinesisPartitioner("database", null, null, "md5").getKinesisKey(r));
+	}
+
+	@Test
+	public void testMurmur3KeysAreStableAndDistinct() {
+		MaxwellKinesisPartitioner p = new MaxwellKinesisPartitioner("database", null, null, "murmur3");
+
+		assertEquals(p.getKinesisKey(row("db")), p.getKinesisKey(row("db")));
+		assertNotEquals(p.getKinesisKey(row("db")), p.getKinesisKey(row("other_db")));
+		assertEquals(p.getKinesisKey(row("db")), new MaxwellKinesisPartitioner("database", null, null, "murmur3").getKinesisKey(row("db")));
+	}
+}
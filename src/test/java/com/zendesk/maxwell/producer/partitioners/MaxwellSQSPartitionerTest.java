@@ -0,0 +1,27 @@
+package com.zendesk.maxwell.producer.partitioners;
+
+import com.zendesk.maxwell.row.RowMap;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+
+public class MaxwellSQSPartitionerTest {
+	@Test
+	public void testGroupIdIsPartitionKey() {
+		RowMap r = new RowMap("insert", "db", "tbl", 0L, new ArrayList<>(), null);
+
+		assertEquals("db", new MaxwellSQSPartitioner("database", null, null).getMessageGroupId(r));
+		assertEquals("tbl", new MaxwellSQSPartitioner("table", null, null).getMessageGroupId(r));
+	}
+
+	@Test
+	public void testUnacceptableGroupIdsAreHashed() {
+		String database = "db with spaces";
+		RowMap r = new RowMap("insert", database, "tbl", 0L, new ArrayList<>(), null);
+
+		assertEquals(DigestUtils.md5Hex(database), new MaxwellSQSPartitioner("database", null, null).getMessageGroupId(r));
+	}
+}
@@ -0,0 +1,82 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class CompressingRowSerializerTest {
+	private static RowMap wideRow() {
+		RowMap r = new RowMap("insert", "db", "tbl", 1000L, new ArrayList<String>(), null);
+		StringBuilder text = new StringBuilder();
+		for ( int i = 0; i < 200; i++ )
+			text.append("lorem ipsum dolor sit amet ");
+		r.putData("id", 1);
+		r.putData("body", text.toString());
+		return r;
+	}
+
+	private static RowMap narrowRow() {
+		RowMap r = new RowMap("insert", "db", "tbl", 1000L, new ArrayList<String>(), null);
+		r.putData("id", 1);
+		return r;
+	}
+
+	private void assertRoundTrip(String codec) throws Exception {
+		JsonRowSerializer json = new JsonRowSerializer(new MaxwellOutputConfig());
+		CompressingRowSerializer serializer = new CompressingRowSerializer(json, codec, 1024);
+
+		RowMap r = wideRow();
+		byte[] original = json.serialize(r);
+		byte[] compressed = serializer.serialize(r);
+
+		assertTrue(CompressingRowSerializer.isCompressed(compressed));
+		assertTrue(compressed.length < original.length / 4);
+		assertArrayEquals(original, CompressingRowSerializer.decompress(compressed));
+		assertEquals(new String(original, StandardCharsets.UTF_8), serializer.toDebugString(compressed));
+
+		String text = serializer.serializeText(r);
+		assertTrue(text.startsWith("TVhaAQ"));
+		assertEquals(json.serializeText(r), CompressingRowSerializer.decompressText(text));
+	}
+
+	@Test
+	public void testLZ4RoundTrip() throws Exception {
+		assertRoundTrip("lz4");
+	}
+
+	@Test
+	public void testGzipRoundTrip() throws Exception {
+		assertRoundTrip("gzip");
+	}
+
+	@Test
+	public void testSmallPayloadsPassThrough() throws Exception {
+		JsonRowSerializer json = new JsonRowSerializer(new MaxwellOutputConfig());
+		CompressingRowSerializer serializer = new CompressingRowSerializer(json, "lz4", 1024);
+
+		RowMap r = narrowRow();
+		assertArrayEquals(json.serialize(r), serializer.serialize(r));
+		assertEquals(json.serializeText(r), serializer.serializeText(r));
+		assertEquals(json.serializeText(r), CompressingRowSerializer.decompressText(serializer.serializeText(r)));
+	}
+
+	@Test
+	public void testMagicAloneIsNotEnough() throws Exception {
+		// an uncompressed payload that happens to start with the magic
+		byte[] plain = "MXZ, a perfectly ordinary text payload".getBytes(StandardCharsets.UTF_8);
+		assertFalse(CompressingRowSerializer.isCompressed(plain));
+		assertArrayEquals(plain, CompressingRowSerializer.decompress(plain));
+
+		// right magic, unknown version
+		byte[] compressed = new CompressingRowSerializer(new JsonRowSerializer(new MaxwellOutputConfig()), "lz4", 1024).serialize(wideRow());
+		compressed[3] = 2;
+		assertFalse(CompressingRowSerializer.isCompressed(compressed));
+
+		String text = "TVhanot base64 at all";
+		assertEquals(text, CompressingRowSerializer.decompressText(text));
+	}
+}
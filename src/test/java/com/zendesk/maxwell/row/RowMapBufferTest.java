@@ -3,10 +3,13 @@ package com.zendesk.maxwell.row;
 import com.zendesk.maxwell.TestWithNameLogging;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -29,6 +32,25 @@ public class RowMapBufferTest extends TestWithNameLogging {
 		assertThat(buffer.removeFirst().getTimestamp(), is(3L));
 	}
 
+	@Test
+	public void TestOverflowToDiskKeepsTableSchema() throws Exception {
+		RowMapBuffer buffer = new RowMapBuffer(1, 0);
+		Table bar = new Table("foo", "bar", "utf8", new ArrayList<ColumnDef>(), null);
+		Table baz = new Table("foo", "baz", "utf8", new ArrayList<ColumnDef>(), null);
+
+		for ( Table t : Arrays.asList(bar, bar, baz, bar) ) {
+			RowMap r = new RowMap("insert", "foo", t.getName(), 1000L, new ArrayList<String>(), new Position(new BinlogPosition(3, "mysql.1"), 0L));
+			r.setTableSchema(t);
+			buffer.add(r);
+		}
+		assertThat(buffer.inMemorySize(), is(0L));
+
+		assertThat(buffer.removeFirst().getTableSchema(), is(sameInstance(bar)));
+		assertThat(buffer.removeFirst().getTableSchema(), is(sameInstance(bar)));
+		assertThat(buffer.removeFirst().getTableSchema(), is(sameInstance(baz)));
+		assertThat(buffer.removeFirst().getTableSchema(), is(sameInstance(bar)));
+	}
+
 	@Test
 	public void TestXOffsetIncrement() throws IOException, ClassNotFoundException {
 		RowMapBuffer buffer = new RowMapBuffer(100);
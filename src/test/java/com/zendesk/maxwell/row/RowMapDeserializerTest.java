@@ -8,11 +8,15 @@ import com.fasterxml.jackson.databind.node.IntNode;
 import com.fasterxml.jackson.databind.node.LongNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 import com.google.common.io.ByteStreams;
+import com.zendesk.maxwell.producer.EncryptionCipher;
+import com.zendesk.maxwell.producer.EncryptionMode;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 
 public class RowMapDeserializerTest {
 	@Test
@@ -132,4 +136,31 @@ public class RowMapDeserializerTest {
 		Assert.assertEquals(1, rowMap.getData("account_id"));
 		Assert.assertEquals("goodbye", rowMap.getData("text_field"));
 	}
+
+	private void assertEncryptedRoundTrip(EncryptionMode mode, EncryptionCipher cipher) throws Exception {
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+		outputConfig.encryptionMode = mode;
+		outputConfig.encryptionCipher = cipher;
+		outputConfig.secretKey = "aaaaaaaaaaaaaaaa";
+
+		RowMap r = new RowMap("insert", "shard_1", "minimal", 1000L, new ArrayList<String>(), null);
+		r.putData("id", 1);
+		r.putData("text_field", "h\u00e9llo");
+
+		String json = r.toJSON(outputConfig);
+		Assert.assertFalse(json.contains("text_field"));
+
+		RowMap rowMap = RowMapDeserializer.createFromString(json, "aaaaaaaaaaaaaaaa");
+		Assert.assertEquals("minimal", rowMap.getTable());
+		Assert.assertEquals(1, rowMap.getData("id"));
+		Assert.assertEquals("h\u00e9llo", rowMap.getData("text_field"));
+	}
+
+	@Test
+	public void testEncryptedRoundTrip() throws Exception {
+		assertEncryptedRoundTrip(EncryptionMode.ENCRYPT_DATA, EncryptionCipher.AES_CBC);
+		assertEncryptedRoundTrip(EncryptionMode.ENCRYPT_ALL, EncryptionCipher.AES_CBC);
+		assertEncryptedRoundTrip(EncryptionMode.ENCRYPT_DATA, EncryptionCipher.AES_GCM);
+		assertEncryptedRoundTrip(EncryptionMode.ENCRYPT_ALL, EncryptionCipher.AES_GCM);
+	}
 }
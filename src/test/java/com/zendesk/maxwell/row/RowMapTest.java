@@ -5,9 +5,15 @@ import com.zendesk.maxwell.errors.ProtectedAttributeNameException;
 import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -175,4 +181,22 @@ public class RowMapTest {
 
 		return outputConfig;
 	}
+
+	@Test
+	public void testTableSchemaIsNotSerialized() throws Exception {
+		RowMap rowMap = new RowMap("insert", "MyDatabase", "MyTable", TIMESTAMP_MILLISECONDS, new ArrayList<String>(), POSITION);
+		rowMap.setTableSchema(new Table("MyDatabase", "MyTable", "utf8", new ArrayList<ColumnDef>(), new ArrayList<String>()));
+		rowMap.putData("id", 1);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( ObjectOutputStream out = new ObjectOutputStream(bytes) ) {
+			out.writeObject(rowMap);
+		}
+
+		try ( ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())) ) {
+			RowMap read = (RowMap) in.readObject();
+			Assert.assertEquals(1, read.getData("id"));
+			Assert.assertNull(read.getTableSchema());
+		}
+	}
 }
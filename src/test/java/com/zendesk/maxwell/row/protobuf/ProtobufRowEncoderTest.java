@@ -0,0 +1,152 @@
+package com.zendesk.maxwell.row.protobuf;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.HeartbeatRowMap;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ProtobufRowEncoderTest {
+	private String registryDir;
+	private Position position;
+
+	@Before
+	public void setUp() throws Exception {
+		registryDir = Files.createTempDirectory("maxwell-schemas").toString();
+		position = new Position(new BinlogPosition(4L, "binlog.000001"), 0L);
+	}
+
+	private Table buildTable(String... columns) {
+		List<ColumnDef> defs = new ArrayList<>();
+		defs.add(ColumnDef.build("id", null, "bigint", (short) 0, true, null, null));
+		for ( int i = 0; i < columns.length; i++ )
+			defs.add(ColumnDef.build(columns[i], "utf8", "varchar", (short) (i + 1), false, null, null));
+		return new Table("shop", "orders", "utf8", defs, Collections.singletonList("id"));
+	}
+
+	private RowMap buildRow(Table table) {
+		RowMap r = new RowMap("insert", "shop", "orders", 1000L, Arrays.asList("id"), position);
+		r.setTableSchema(table);
+		r.putData("id", 42L);
+		r.putData("status", "paid");
+		return r;
+	}
+
+	private DynamicMessage decode(SchemaRegistry registry, byte[] encoded) throws Exception {
+		ByteBuffer buf = ByteBuffer.wrap(encoded);
+		assertEquals(ProtobufRowEncoder.MAGIC_BYTE, buf.get());
+		int id = buf.getInt();
+
+		FileDescriptorProto proto = FileDescriptorProto.parseFrom(registry.lookup(id));
+		Descriptors.FileDescriptor file = Descriptors.FileDescriptor.buildFrom(proto, new Descriptors.FileDescriptor[0]);
+		Descriptors.Descriptor row = file.findMessageTypeByName(ProtobufSchemaBuilder.ROW_MESSAGE);
+		return DynamicMessage.parseFrom(row, Arrays.copyOfRange(encoded, 5, encoded.length));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		SchemaRegistry registry = new FileSchemaRegistry(registryDir);
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig());
+
+		DynamicMessage m = decode(registry, encoder.encode(buildRow(buildTable("status"))));
+		Descriptors.Descriptor d = m.getDescriptorForType();
+		assertEquals("shop", m.getField(d.findFieldByName("database")));
+		assertEquals("insert", m.getField(d.findFieldByName("type")));
+		assertEquals(1L, m.getField(d.findFieldByName("ts")));
+
+		DynamicMessage data = (DynamicMessage) m.getField(d.findFieldByName("data"));
+		Descriptors.Descriptor dataType = data.getDescriptorForType();
+		assertEquals(42L, data.getField(dataType.findFieldByName("id")));
+		assertEquals("paid", data.getField(dataType.findFieldByName("status")));
+	}
+
+	@Test
+	public void testRowsWithoutOutputEncodeToNull() throws Exception {
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(new FileSchemaRegistry(registryDir), new MaxwellOutputConfig());
+
+		// heartbeats have no table definition
+		assertNull(encoder.serializeText(HeartbeatRowMap.valueOf("maxwell", position, position)));
+
+		RowMap suppressed = buildRow(buildTable("status"));
+		suppressed.suppress();
+		assertNull(encoder.serialize(suppressed));
+	}
+
+	@Test
+	public void testSchemaVersionsFollowTableChanges() throws Exception {
+		SchemaRegistry registry = new FileSchemaRegistry(registryDir);
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig());
+
+		Table table = buildTable("status");
+		int first = ByteBuffer.wrap(encoder.encode(buildRow(table)), 1, 4).getInt();
+		int same = ByteBuffer.wrap(encoder.encode(buildRow(table.copy())), 1, 4).getInt();
+		assertEquals(first, same);
+
+		int altered = ByteBuffer.wrap(encoder.encode(buildRow(buildTable("status", "note"))), 1, 4).getInt();
+		assertNotEquals(first, altered);
+
+		// a fresh registry over the same directory sees what was registered before
+		SchemaRegistry reopened = new FileSchemaRegistry(registryDir);
+		assertEquals(altered, reopened.register(ProtobufRowEncoder.subject("shop", "orders"), registry.lookup(altered)));
+		assertFalse(Arrays.equals(reopened.lookup(first), reopened.lookup(altered)));
+	}
+
+	@Test
+	public void testReusesSchemaForUnchangedTableAcrossSchemaVersions() throws Exception {
+		SchemaRegistry files = new FileSchemaRegistry(registryDir);
+		AtomicInteger registrations = new AtomicInteger();
+		SchemaRegistry registry = new SchemaRegistry() {
+			@Override
+			public int register(String subject, byte[] schema) throws IOException {
+				registrations.incrementAndGet();
+				return files.register(subject, schema);
+			}
+
+			@Override
+			public byte[] lookup(int id) throws IOException {
+				return files.lookup(id);
+			}
+		};
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig());
+
+		Table table = buildTable("status");
+		RowMap r = buildRow(table);
+		r.setSchemaId(1L);
+		encoder.encode(r);
+
+		// a later schema version, from some other table's DDL, hands us an identical copy
+		r = buildRow(table.copy());
+		r.setSchemaId(2L);
+		encoder.encode(r);
+		r = buildRow(table.copy());
+		r.setSchemaId(2L);
+		encoder.encode(r);
+		assertEquals(1, registrations.get());
+
+		r = buildRow(buildTable("status", "note"));
+		r.setSchemaId(3L);
+		encoder.encode(r);
+		assertEquals(2, registrations.get());
+	}
+}